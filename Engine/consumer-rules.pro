@@ -0,0 +1,4 @@
+# the deprecated constructors of HttpProxyCacheServer taking a context look up the Android defaults by reflection
+-keep class com.llew.file.cache.engine.android.HttpProxyCacheAndroid {
+    public static *** applyDefaults(...);
+}
@@ -0,0 +1,74 @@
+package com.llew.file.cache.engine.android;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.llew.file.cache.engine.core.HttpProxyCacheServer;
+import com.llew.file.cache.engine.manager.HttpProxyCacheFileManager;
+import com.llew.file.cache.engine.manager.HttpProxyCacheMainHandler;
+import com.llew.file.cache.engine.utils.FileUtils;
+import com.llew.file.cache.engine.utils.Logger;
+
+import java.io.File;
+
+import static com.llew.file.cache.engine.utils.Preconditions.checkNotNull;
+
+/**
+ * the Android adapter of core, the source infos are kept in database, the files are cached in the cache
+ * directory of application and the callbacks run on the main thread.
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/18
+ */
+
+public final class HttpProxyCacheAndroid {
+
+    private HttpProxyCacheAndroid() {
+    }
+
+    /**
+     * Creates a builder for an HttpProxyCacheServer that uses the default value of Android
+     *
+     * @param context the parent context
+     * @return the builder, the defaults can still be replaced by its set methods
+     */
+    public static HttpProxyCacheServer.Builder newBuilder(Context context) {
+        return applyDefaults(new HttpProxyCacheServer.Builder(), context);
+    }
+
+    /**
+     * apply the default value of Android to the builder, it's also called by the deprecated constructors
+     * of HttpProxyCacheServer and its builder which take a context
+     *
+     * @param builder the builder
+     * @param context the parent context
+     * @return the builder
+     */
+    public static HttpProxyCacheServer.Builder applyDefaults(HttpProxyCacheServer.Builder builder, Context context) {
+        Context appContext = checkNotNull(context).getApplicationContext();
+        Logger.setPrinter(new Logger.Printer() {
+            @Override
+            public void print(String tag, String message) {
+                Log.e(tag, message);
+            }
+        });
+        // the root directory is only accepted if it exists
+        File rootDir = HttpProxyCacheFileManager.getCacheDirectory(appContext);
+        FileUtils.createDirs(rootDir);
+        return checkNotNull(builder)
+                .cacheStorage(new HttpProxyDBStorage(appContext))
+                .rootDir(rootDir)
+                .dispatcher(HttpProxyCacheMainHandler.getIMPL());
+    }
+
+    /**
+     * Creates an HttpProxyCacheServer that uses the default value of Android
+     *
+     * @param context the parent context
+     * @return the proxy server
+     */
+    public static HttpProxyCacheServer newServer(Context context) {
+        return newBuilder(context).build();
+    }
+}
@@ -0,0 +1,249 @@
+package com.llew.file.cache.engine.android;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.llew.file.cache.engine.config.HttpProxyCacheStorage;
+import com.llew.file.cache.engine.exception.HttpProxyCacheException;
+import com.llew.file.cache.engine.info.HttpProxyCacheSourceInfo;
+import com.llew.file.cache.engine.utils.Constants;
+import com.llew.file.cache.engine.utils.FileUtils;
+import com.llew.file.cache.engine.utils.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.llew.file.cache.engine.utils.Preconditions.checkNotNull;
+
+/**
+ * the source infos are kept in memory and written to database by a single background writer, the puts
+ * arrived before the writer runs are collapsed by url and written in one transaction. the url column is
+ * unique indexed and the database works in write-ahead logging mode, so the lookups aren't blocked by the writer.
+ * the urls missed by database are remembered too, a url is only queried once until it's put.
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2017/12/31
+ */
+
+class HttpProxyDBStorage extends SQLiteOpenHelper implements HttpProxyCacheStorage {
+
+    private static final String DATABASE = "FileCacheEngine.db";
+    private static final int VERSION = 3;
+    private static final String TABLE = "CachedFileInfo";
+    private static final String COLUMN_ID = "_id";
+    private static final String COLUMN_URL = "url";
+    private static final String COLUMN_LENGTH = "length";
+    private static final String COLUMN_MIME = "mime";
+    private static final String COLUMN_ETAG = "etag";
+    private static final String COLUMN_LAST_MODIFIED = "last_modified";
+    private static final String COLUMN_VALIDATED_TIME = "validated_time";
+    private static final String[] ALL_COLUMNS = new String[]{COLUMN_ID, COLUMN_URL, COLUMN_LENGTH, COLUMN_MIME, COLUMN_ETAG, COLUMN_LAST_MODIFIED, COLUMN_VALIDATED_TIME};
+    private static final String CREATE_SQL =
+            "CREATE TABLE IF NOT EXISTS " + TABLE + " (" +
+                    COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL," +
+                    COLUMN_URL + " TEXT NOT NULL," +
+                    COLUMN_MIME + " TEXT," +
+                    COLUMN_LENGTH + " INTEGER," +
+                    COLUMN_ETAG + " TEXT," +
+                    COLUMN_LAST_MODIFIED + " TEXT," +
+                    COLUMN_VALIDATED_TIME + " INTEGER" +
+                    ");";
+    private static final String INDEX_SQL = "CREATE UNIQUE INDEX IF NOT EXISTS " + TABLE + "_" + COLUMN_URL + " ON " + TABLE + " (" + COLUMN_URL + ");";
+    // the old versions may have inserted a url more than once, the latest row is kept
+    private static final String DISTINCT_SQL = "DELETE FROM " + TABLE + " WHERE " + COLUMN_ID + " NOT IN (SELECT MAX(" + COLUMN_ID + ") FROM " + TABLE + " GROUP BY " + COLUMN_URL + ");";
+    private static final int MAX_MISSED_URLS = 256;
+
+    private final ConcurrentHashMap<String, HttpProxyCacheSourceInfo> infos = new ConcurrentHashMap<>();
+
+    /**
+     * the urls which have no row in database, the least recently missed ones are forgotten
+     */
+    private final Set<String> mMissedUrls = Collections.newSetFromMap(Collections.synchronizedMap(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_MISSED_URLS;
+        }
+    }));
+
+    private final Map<String, HttpProxyCacheSourceInfo> mPendingInfos = new LinkedHashMap<>();
+    private final Object mWriteLock = new Object();
+    private final ExecutorService mWriter = new ThreadPoolExecutor(0, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+    private boolean isScheduled;
+
+    HttpProxyDBStorage(Context context) {
+        super(checkNotNull(context), DATABASE, null, VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        checkNotNull(db);
+        db.execSQL(CREATE_SQL);
+        db.execSQL(INDEX_SQL);
+        Logger.e("database : " + DATABASE + " created");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            // the validators are unknown for the old rows, they are learned by the next response
+            db.execSQL("ALTER TABLE " + TABLE + " ADD COLUMN " + COLUMN_ETAG + " TEXT");
+            db.execSQL("ALTER TABLE " + TABLE + " ADD COLUMN " + COLUMN_LAST_MODIFIED + " TEXT");
+            db.execSQL("ALTER TABLE " + TABLE + " ADD COLUMN " + COLUMN_VALIDATED_TIME + " INTEGER DEFAULT 0");
+        }
+        if (oldVersion < 3) {
+            db.execSQL(DISTINCT_SQL);
+            db.execSQL(INDEX_SQL);
+        }
+        Logger.e("database : " + DATABASE + " upgraded from " + oldVersion + " to " + newVersion);
+    }
+
+    @Override
+    public HttpProxyCacheSourceInfo get(String url) throws HttpProxyCacheException {
+        HttpProxyCacheSourceInfo sourceInfo = infos.get(url);
+        if (null != sourceInfo || mMissedUrls.contains(url)) {
+            return sourceInfo;
+        }
+        Cursor cursor = null;
+        try {
+            cursor = getReadableDatabase().query(TABLE, ALL_COLUMNS, COLUMN_URL + "=?", new String[]{url}, null, null, null, "1");
+            if (null != cursor && cursor.moveToFirst()) {
+                return generateSourceInfo(url, cursor);
+            }
+            // a put while querying has stored the info in memory first, it's still found before the missed url
+            mMissedUrls.add(url);
+            return infos.get(url);
+        } catch (Throwable e) {
+            Logger.e(e);
+        } finally {
+            FileUtils.closeQuietly(cursor);
+        }
+        return null;
+    }
+
+    private HttpProxyCacheSourceInfo generateSourceInfo(String url, Cursor cursor) {
+        HttpProxyCacheSourceInfo sourceInfo = new HttpProxyCacheSourceInfo(
+                cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_URL)),
+                cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_MIME)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_LENGTH)),
+                cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_ETAG)),
+                cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_LAST_MODIFIED)),
+                cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_VALIDATED_TIME)));
+        // a newer info may be put while querying, it isn't replaced by the row
+        HttpProxyCacheSourceInfo newInfo = infos.putIfAbsent(url, sourceInfo);
+        return null == newInfo ? sourceInfo : newInfo;
+    }
+
+    @Override
+    public void put(String url, HttpProxyCacheSourceInfo newInfo) throws HttpProxyCacheException {
+        checkNotNull(url);
+        checkNotNull(newInfo);
+
+        if (!url.contains(Constants.HOST)) {
+            HttpProxyCacheSourceInfo cachedInfo = get(url);
+            if (!newInfo.equals(cachedInfo)) {
+                infos.put(url, newInfo);
+                mMissedUrls.remove(url);
+                schedule(url, newInfo);
+                Logger.e("update source info to memory and database, source info : " + newInfo);
+            }
+        }
+    }
+
+    private void schedule(String url, HttpProxyCacheSourceInfo info) {
+        synchronized (mPendingInfos) {
+            mPendingInfos.put(url, info);
+            if (isScheduled) {
+                return;
+            }
+            isScheduled = true;
+        }
+        try {
+            mWriter.submit(new WriteRunnable());
+        } catch (Throwable e) {
+            Logger.e(e);
+            synchronized (mPendingInfos) {
+                isScheduled = false;
+            }
+        }
+    }
+
+    private List<HttpProxyCacheSourceInfo> pollPendingInfos() {
+        synchronized (mPendingInfos) {
+            if (mPendingInfos.isEmpty()) {
+                isScheduled = false;
+                return null;
+            }
+            List<HttpProxyCacheSourceInfo> pendingInfos = new ArrayList<>(mPendingInfos.values());
+            mPendingInfos.clear();
+            return pendingInfos;
+        }
+    }
+
+    /**
+     * write all of the pending infos, the writer and {@link #release()} are serialized by the write lock
+     */
+    private void writePendingInfos() {
+        synchronized (mWriteLock) {
+            List<HttpProxyCacheSourceInfo> pendingInfos;
+            while (null != (pendingInfos = pollPendingInfos())) {
+                try {
+                    write(pendingInfos);
+                } catch (Throwable e) {
+                    Logger.e(e);
+                }
+            }
+        }
+    }
+
+    private void write(List<HttpProxyCacheSourceInfo> pendingInfos) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (HttpProxyCacheSourceInfo info : pendingInfos) {
+                db.insertWithOnConflict(TABLE, null, getContentValues(info), SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Logger.e("write " + pendingInfos.size() + " source infos to database");
+    }
+
+    private ContentValues getContentValues(HttpProxyCacheSourceInfo info) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_URL, info.url);
+        values.put(COLUMN_MIME, info.mime);
+        values.put(COLUMN_LENGTH, info.length);
+        values.put(COLUMN_ETAG, info.etag);
+        values.put(COLUMN_LAST_MODIFIED, info.lastModified);
+        values.put(COLUMN_VALIDATED_TIME, info.validatedTime);
+        return values;
+    }
+
+    @Override
+    public void release() throws HttpProxyCacheException {
+        writePendingInfos();
+        close();
+    }
+
+    private class WriteRunnable implements Runnable {
+        @Override
+        public void run() {
+            writePendingInfos();
+        }
+    }
+}
@@ -3,14 +3,17 @@ package com.llew.file.cache.engine.manager;
 import android.os.Handler;
 import android.os.Looper;
 
+import com.llew.file.cache.engine.config.HttpProxyCacheDispatcher;
+
 /**
+ * deliver the callbacks to the main thread of Android
  * <br/><br/>
  *
  * @author llew
  * @date 2017/12/30
  */
 
-public final class HttpProxyCacheMainHandler {
+public final class HttpProxyCacheMainHandler implements HttpProxyCacheDispatcher {
 
     private static HttpProxyCacheMainHandler sHandler;
 
@@ -31,6 +34,7 @@ public final class HttpProxyCacheMainHandler {
         return sHandler;
     }
 
+    @Override
     public void post(Runnable runnable) {
         if (null == runnable) return;
         if (Thread.currentThread() == Looper.getMainLooper().getThread()) {
@@ -40,6 +44,7 @@ public final class HttpProxyCacheMainHandler {
         }
     }
 
+    @Override
     public void post(Runnable runnable, long delayMillis) {
         if (null != runnable) {
             mHandler.postDelayed(runnable, delayMillis);
@@ -0,0 +1,47 @@
+package com.llew.file.cache.engine.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * the helpers shared by the benchmarks
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/19
+ */
+
+public final class HttpProxyCacheBenchmarks {
+
+    private HttpProxyCacheBenchmarks() {
+    }
+
+    /**
+     * @param prefix the prefix of directory name
+     * @return a new empty directory in the temporary directory
+     * @throws IOException if the directory can't be created
+     */
+    public static File createTempDir(String prefix) throws IOException {
+        File dir = File.createTempFile("cache-engine-" + prefix, "");
+        if (!dir.delete() || !dir.mkdirs()) {
+            throw new IOException("Error create directory " + dir);
+        }
+        return dir;
+    }
+
+    /**
+     * delete the file or the directory with all of its files
+     */
+    public static void delete(File file) {
+        if (null == file) {
+            return;
+        }
+        File[] files = file.listFiles();
+        if (null != files) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
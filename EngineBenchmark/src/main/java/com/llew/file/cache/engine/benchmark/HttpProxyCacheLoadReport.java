@@ -0,0 +1,103 @@
+package com.llew.file.cache.engine.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * the result of a load test scenario, the players record their requests concurrently
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/19
+ */
+
+public final class HttpProxyCacheLoadReport {
+
+    private final int mPlayers;
+    private final String mPlayback;
+
+    private final ConcurrentLinkedQueue<Long> mFirstByteTimes = new ConcurrentLinkedQueue<>();
+    private final AtomicLong mRequestCount = new AtomicLong();
+    private final AtomicLong mErrorCount = new AtomicLong();
+    private final AtomicLong mServedBytes = new AtomicLong();
+
+    private long mElapsedTime;
+    private long mOriginBytes;
+    private int mPeakThreads;
+    private long mPeakHeap;
+
+    public HttpProxyCacheLoadReport(int players, String playback) {
+        this.mPlayers = players;
+        this.mPlayback = playback;
+    }
+
+    /**
+     * @param firstByteTime the nanoseconds from connecting to the first byte of response
+     */
+    void recordRequest(long firstByteTime) {
+        mRequestCount.incrementAndGet();
+        mFirstByteTimes.add(firstByteTime);
+    }
+
+    void recordServedBytes(long bytes) {
+        mServedBytes.addAndGet(bytes);
+    }
+
+    void recordError(Throwable e) {
+        if (0 == mErrorCount.getAndIncrement()) {
+            System.err.println(mPlayback + " with " + mPlayers + " players, the first error : " + e);
+        }
+    }
+
+    /**
+     * @param elapsedTime the nanoseconds of the scenario
+     * @param originBytes the bytes sent by origin
+     * @param peakThreads the peak number of live threads
+     * @param peakHeap    the peak bytes of used heap
+     */
+    void finish(long elapsedTime, long originBytes, int peakThreads, long peakHeap) {
+        this.mElapsedTime = elapsedTime;
+        this.mOriginBytes = originBytes;
+        this.mPeakThreads = peakThreads;
+        this.mPeakHeap = peakHeap;
+    }
+
+    public long getErrorCount() {
+        return mErrorCount.get();
+    }
+
+    public static String getTitle() {
+        return String.format(Locale.US, "%7s %-10s %8s %6s %9s %9s %9s %9s %10s %8s %10s %10s %6s %8s %8s",
+                "players", "playback", "requests", "errors", "ttfb p50", "ttfb p90", "ttfb p99", "ttfb max",
+                "served MB", "seconds", "MB/s", "origin MB", "ratio", "threads", "heap MB");
+    }
+
+    @Override
+    public String toString() {
+        List<Long> times = new ArrayList<>(mFirstByteTimes);
+        Collections.sort(times);
+        double seconds = mElapsedTime / 1e9;
+        double servedMB = mServedBytes.get() / 1048576.0;
+        double originMB = mOriginBytes / 1048576.0;
+        return String.format(Locale.US, "%7d %-10s %8d %6d %9.2f %9.2f %9.2f %9.2f %10.1f %8.2f %10.1f %10.1f %6.2f %8d %8.1f",
+                mPlayers, mPlayback, mRequestCount.get(), mErrorCount.get(),
+                percentile(times, 50), percentile(times, 90), percentile(times, 99), percentile(times, 100),
+                servedMB, seconds, 0 == seconds ? 0 : servedMB / seconds, originMB, 0 == servedMB ? 0 : originMB / servedMB,
+                mPeakThreads, mPeakHeap / 1048576.0);
+    }
+
+    /**
+     * @return the percentile in milliseconds of the sorted nanoseconds
+     */
+    private static double percentile(List<Long> times, int percent) {
+        if (times.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percent / 100.0 * times.size()) - 1;
+        return times.get(Math.max(0, Math.min(times.size() - 1, index))) / 1e6;
+    }
+}
@@ -0,0 +1,191 @@
+package com.llew.file.cache.engine.benchmark;
+
+import com.llew.file.cache.engine.core.HttpProxyCacheServer;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * an end-to-end load test, the proxy server caches the files of an in-process origin while the players
+ * request them with a scripted playback. every scenario starts with an empty cache and a new server.
+ * <p>
+ * the options are <code>--players 1,10,100 --playbacks sequential,seek,cancel,slow,mixed --length 4194304
+ * --files 4 --latency 20 --bandwidth 0 --ranges true --nio false --connections 1</code>, the bandwidth is
+ * the bytes per second of every origin connection and <code>mixed</code> gives the players the other playbacks in turn.
+ * </p>
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/19
+ */
+
+public final class HttpProxyCacheLoadTest {
+
+    private static final String[] PLAYBACK_NAMES = {"sequential", "seek", "cancel", "slow"};
+    private static final HttpProxyCachePlayback[] PLAYBACKS = {HttpProxyCachePlayback.SEQUENTIAL, HttpProxyCachePlayback.SEEK, HttpProxyCachePlayback.CANCEL, HttpProxyCachePlayback.SLOW};
+
+    private final Map<String, String> mOptions;
+
+    private HttpProxyCacheLoadTest(Map<String, String> options) {
+        this.mOptions = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        options.put("players", "1,10,100");
+        options.put("playbacks", "sequential,seek,cancel,slow,mixed");
+        options.put("length", String.valueOf(4 * 1024 * 1024));
+        options.put("files", "4");
+        options.put("latency", "20");
+        options.put("bandwidth", "0");
+        options.put("ranges", "true");
+        options.put("nio", "false");
+        options.put("connections", "1");
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--") || !options.containsKey(args[i].substring(2))) {
+                throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        System.out.println("options = " + options);
+        System.out.println(HttpProxyCacheLoadReport.getTitle());
+        long errors = new HttpProxyCacheLoadTest(options).run();
+        System.exit(errors > 0 ? 1 : 0);
+    }
+
+    /**
+     * @return the number of errors of all scenarios
+     */
+    private long run() throws Exception {
+        long errors = 0;
+        for (String players : mOptions.get("players").split(",")) {
+            for (String playback : mOptions.get("playbacks").split(",")) {
+                HttpProxyCacheLoadReport report = runScenario(Integer.parseInt(players.trim()), playback.trim());
+                System.out.println(report);
+                errors += report.getErrorCount();
+            }
+        }
+        return errors;
+    }
+
+    private HttpProxyCacheLoadReport runScenario(int players, final String playback) throws Exception {
+        final long length = Long.parseLong(mOptions.get("length"));
+        final int files = Integer.parseInt(mOptions.get("files"));
+        final HttpProxyCacheLoadReport report = new HttpProxyCacheLoadReport(players, playback);
+
+        File rootDir = HttpProxyCacheBenchmarks.createTempDir("load");
+        HttpProxyCacheOriginStub origin = new HttpProxyCacheOriginStub(length);
+        origin.setLatency(Long.parseLong(mOptions.get("latency")));
+        origin.setBandwidth(Long.parseLong(mOptions.get("bandwidth")));
+        origin.setRangeSupported(Boolean.parseBoolean(mOptions.get("ranges")));
+        HttpProxyCacheServer cacheServer = new HttpProxyCacheServer.Builder()
+                .rootDir(rootDir)
+                .nioServerEnabled(Boolean.parseBoolean(mOptions.get("nio")))
+                .downloadConnections(Integer.parseInt(mOptions.get("connections")))
+                .build();
+        ExecutorService executorService = Executors.newFixedThreadPool(players);
+        HeapSampler heapSampler = new HeapSampler();
+        try {
+            final List<URL> proxyUrls = new ArrayList<>(files);
+            for (int i = 0; i < files; i++) {
+                String url = origin.getUrl("video-" + i + ".mp4");
+                String proxyUrl = cacheServer.proxyUrl(url);
+                if (url.equals(proxyUrl)) {
+                    throw new IllegalStateException("proxy server isn't running");
+                }
+                proxyUrls.add(new URL(proxyUrl));
+            }
+            System.gc();
+            ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+            threadBean.resetPeakThreadCount();
+            heapSampler.start();
+
+            final CountDownLatch startLatch = new CountDownLatch(1);
+            final CountDownLatch doneLatch = new CountDownLatch(players);
+            for (int i = 0; i < players; i++) {
+                final int index = i;
+                executorService.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            startLatch.await();
+                            HttpProxyCachePlayer player = new HttpProxyCachePlayer(proxyUrls.get(index % files), length, report, index);
+                            getPlayback(playback, index).play(player);
+                        } catch (Throwable e) {
+                            report.recordError(e);
+                        } finally {
+                            doneLatch.countDown();
+                        }
+                    }
+                });
+            }
+            long startTime = System.nanoTime();
+            startLatch.countDown();
+            doneLatch.await();
+            long elapsedTime = System.nanoTime() - startTime;
+            report.finish(elapsedTime, origin.getSentBytes(), threadBean.getPeakThreadCount(), heapSampler.finish());
+            return report;
+        } finally {
+            heapSampler.finish();
+            executorService.shutdownNow();
+            executorService.awaitTermination(5, TimeUnit.SECONDS);
+            cacheServer.shutdownProxy();
+            origin.close();
+            HttpProxyCacheBenchmarks.delete(rootDir);
+        }
+    }
+
+    private static HttpProxyCachePlayback getPlayback(String name, int index) {
+        if ("mixed".equals(name)) {
+            return PLAYBACKS[index % PLAYBACKS.length];
+        }
+        for (int i = 0; i < PLAYBACK_NAMES.length; i++) {
+            if (PLAYBACK_NAMES[i].equals(name)) {
+                return PLAYBACKS[i];
+            }
+        }
+        throw new IllegalArgumentException("unknown playback " + name);
+    }
+
+    /**
+     * sample the used heap every 10 milliseconds and keep the peak
+     */
+    private static final class HeapSampler extends Thread {
+
+        private volatile boolean isStopped;
+        private volatile long mPeakHeap;
+
+        HeapSampler() {
+            super("HeapSampler");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            Runtime runtime = Runtime.getRuntime();
+            while (!isStopped) {
+                mPeakHeap = Math.max(mPeakHeap, runtime.totalMemory() - runtime.freeMemory());
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        long finish() {
+            isStopped = true;
+            return mPeakHeap;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.llew.file.cache.engine.benchmark;
+
+import com.llew.file.cache.engine.utils.FileUtils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * an in-process HTTP origin which serves a synthetic file for every path, the byte at position <code>p</code>
+ * is {@link #byteAt(long)} so the served bytes can be verified without keeping the file. the latency, the
+ * bandwidth and the support of range can be changed to simulate a slow or a simple origin.
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/19
+ */
+
+public final class HttpProxyCacheOriginStub implements Closeable {
+
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    private final long mLength;
+    private final ServerSocket mServerSocket;
+    private final ExecutorService mExecutorService;
+
+    private volatile long mLatency;
+    private volatile long mBandwidth;
+    private volatile boolean isRangeSupported = true;
+
+    private final AtomicLong mRequestCount = new AtomicLong();
+    private final AtomicLong mSentBytes = new AtomicLong();
+
+    /**
+     * @param length the length of every file
+     * @throws IOException if the server socket can't be bound
+     */
+    public HttpProxyCacheOriginStub(long length) throws IOException {
+        this.mLength = length;
+        this.mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        this.mExecutorService = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "HttpProxyCacheOriginStub");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mExecutorService.submit(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        });
+    }
+
+    /**
+     * the url of a file, the host isn't a loopback address literal so the proxy accepts it
+     *
+     * @param name the name of file, such as <code>video.mp4</code>
+     * @return the url
+     */
+    public String getUrl(String name) {
+        return "http://localhost:" + mServerSocket.getLocalPort() + "/" + name;
+    }
+
+    /**
+     * @param latency the delay in milliseconds before the response header is sent
+     */
+    public void setLatency(long latency) {
+        this.mLatency = latency;
+    }
+
+    /**
+     * @param bandwidth the maximum bytes per second of every connection, <code>0</code> means unlimited
+     */
+    public void setBandwidth(long bandwidth) {
+        this.mBandwidth = bandwidth;
+    }
+
+    /**
+     * @param supported <code>false</code> means the range header is ignored and the whole file is sent
+     */
+    public void setRangeSupported(boolean supported) {
+        this.isRangeSupported = supported;
+    }
+
+    public long getLength() {
+        return mLength;
+    }
+
+    public long getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    public long getSentBytes() {
+        return mSentBytes.get();
+    }
+
+    public static byte byteAt(long position) {
+        return (byte) (position % 251);
+    }
+
+    @Override
+    public void close() {
+        FileUtils.closeQuietly(mServerSocket);
+        mExecutorService.shutdownNow();
+    }
+
+    private void accept() {
+        while (!mServerSocket.isClosed()) {
+            try {
+                final Socket socket = mServerSocket.accept();
+                mExecutorService.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            serve(socket);
+                        } catch (IOException ignore) {
+                            // the client has gone
+                        } finally {
+                            FileUtils.closeQuietly(socket);
+                        }
+                    }
+                });
+            } catch (Throwable ignore) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) throws IOException {
+        String header = readHeader(new BufferedInputStream(socket.getInputStream()));
+        if (null == header) {
+            return;
+        }
+        mRequestCount.incrementAndGet();
+        boolean head = header.startsWith("HEAD ");
+        long start = 0;
+        long end = mLength;
+        String range = isRangeSupported ? getHeader(header, "range") : null;
+        if (null != range && range.startsWith("bytes=")) {
+            String spec = range.substring("bytes=".length()).split(",")[0].trim();
+            int dash = spec.indexOf('-');
+            String last = spec.substring(dash + 1).trim();
+            if (0 == dash) {
+                start = Math.max(0, mLength - Long.parseLong(last));
+            } else if (dash > 0) {
+                start = Long.parseLong(spec.substring(0, dash).trim());
+                end = last.isEmpty() ? mLength : Math.min(mLength, Long.parseLong(last) + 1);
+            }
+        }
+        if (mLatency > 0) {
+            sleep(mLatency);
+        }
+        OutputStream outputStream = socket.getOutputStream();
+        if (start >= end) {
+            outputStream.write(("HTTP/1.1 416 Range Not Satisfiable\r\nContent-Range: bytes */" + mLength + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n").getBytes("US-ASCII"));
+            outputStream.flush();
+            return;
+        }
+        StringBuilder builder = new StringBuilder();
+        builder.append(null != range ? "HTTP/1.1 206 Partial Content\r\n" : "HTTP/1.1 200 OK\r\n");
+        if (null != range) {
+            builder.append("Content-Range: bytes ").append(start).append('-').append(end - 1).append('/').append(mLength).append("\r\n");
+        }
+        builder.append("Content-Type: video/mp4\r\n")
+                .append("Content-Length: ").append(end - start).append("\r\n")
+                .append("Accept-Ranges: bytes\r\n")
+                .append("ETag: \"stub-").append(mLength).append("\"\r\n")
+                .append("Connection: close\r\n\r\n");
+        outputStream.write(builder.toString().getBytes("US-ASCII"));
+        if (!head) {
+            write(outputStream, start, end);
+        }
+        outputStream.flush();
+    }
+
+    private void write(OutputStream outputStream, long start, long end) throws IOException {
+        final long bandwidth = mBandwidth;
+        final long startTime = System.nanoTime();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (long position = start; position < end; ) {
+            if (bandwidth > 0) {
+                // wait until the bytes sent so far are allowed by the bandwidth
+                long sentMillis = (position - start) * 1000 / bandwidth;
+                long elapsedMillis = (System.nanoTime() - startTime) / 1000000;
+                if (sentMillis > elapsedMillis) {
+                    sleep(sentMillis - elapsedMillis);
+                }
+            }
+            // a limited bandwidth is kept smooth by small chunks
+            int chunk = bandwidth > 0 ? (int) Math.min(buffer.length, Math.max(1024, bandwidth / 50)) : buffer.length;
+            int count = (int) Math.min(chunk, end - position);
+            for (int i = 0; i < count; i++) {
+                buffer[i] = byteAt(position + i);
+            }
+            outputStream.write(buffer, 0, count);
+            position += count;
+            mSentBytes.addAndGet(count);
+        }
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private static String readHeader(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        int last = -1;
+        int value;
+        while (-1 != (value = inputStream.read())) {
+            if ('\r' == value) {
+                continue;
+            }
+            if ('\n' == value && '\n' == last) {
+                return header.toString("US-ASCII");
+            }
+            header.write(value);
+            last = value;
+        }
+        return null;
+    }
+
+    private static String getHeader(String header, String name) {
+        for (String line : header.split("\n")) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().toLowerCase(Locale.US).equals(name)) {
+                return line.substring(colon + 1).trim();
+            }
+        }
+        return null;
+    }
+}
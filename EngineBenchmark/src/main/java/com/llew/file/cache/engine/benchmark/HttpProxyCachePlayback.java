@@ -0,0 +1,67 @@
+package com.llew.file.cache.engine.benchmark;
+
+import java.io.IOException;
+
+/**
+ * a scripted pattern of playback, it's played by every player of a load test scenario
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/19
+ */
+
+public interface HttpProxyCachePlayback {
+
+    /**
+     * play the url of player
+     *
+     * @param player the player
+     * @throws IOException if a response is wrong
+     */
+    void play(HttpProxyCachePlayer player) throws IOException;
+
+    /**
+     * play from the beginning to the end without pause
+     */
+    HttpProxyCachePlayback SEQUENTIAL = new HttpProxyCachePlayback() {
+        @Override
+        public void play(HttpProxyCachePlayer player) throws IOException {
+            player.play(0, -1, 0);
+        }
+    };
+
+    /**
+     * play the first 512K, then seek to 3 random offsets and play 512K from each of them
+     */
+    HttpProxyCachePlayback SEEK = new HttpProxyCachePlayback() {
+        @Override
+        public void play(HttpProxyCachePlayer player) throws IOException {
+            player.play(0, 512 * 1024, 0);
+            for (int i = 0; i < 3; i++) {
+                player.play(player.randomOffset(), 512 * 1024, 0);
+            }
+        }
+    };
+
+    /**
+     * start 3 times and close each of them after 64K, like a user who skips the videos of a feed
+     */
+    HttpProxyCachePlayback CANCEL = new HttpProxyCachePlayback() {
+        @Override
+        public void play(HttpProxyCachePlayer player) throws IOException {
+            for (int i = 0; i < 3; i++) {
+                player.play(0, 64 * 1024, 0);
+            }
+        }
+    };
+
+    /**
+     * play the first 2M at 512K per second, like a player on a slow device which holds its connection
+     */
+    HttpProxyCachePlayback SLOW = new HttpProxyCachePlayback() {
+        @Override
+        public void play(HttpProxyCachePlayer player) throws IOException {
+            player.play(0, Math.min(player.getLength(), 2 * 1024 * 1024), 512 * 1024);
+        }
+    };
+}
@@ -0,0 +1,162 @@
+package com.llew.file.cache.engine.benchmark;
+
+import com.llew.file.cache.engine.utils.FileUtils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.URL;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * a player which requests a proxy url like a media player, every request is a new connection. the bytes
+ * of response are verified against the synthetic file of {@link HttpProxyCacheOriginStub}.
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/19
+ */
+
+public final class HttpProxyCachePlayer {
+
+    private final URL mProxyUrl;
+    private final long mLength;
+    private final HttpProxyCacheLoadReport mReport;
+    private final Random mRandom;
+    private final byte[] mBuffer = new byte[32 * 1024];
+
+    HttpProxyCachePlayer(URL proxyUrl, long length, HttpProxyCacheLoadReport report, long seed) {
+        this.mProxyUrl = proxyUrl;
+        this.mLength = length;
+        this.mReport = report;
+        this.mRandom = new Random(seed);
+    }
+
+    public long getLength() {
+        return mLength;
+    }
+
+    /**
+     * @return a random offset to seek, it's aligned to 1K like the offsets of media samples
+     */
+    public long randomOffset() {
+        return (long) (mRandom.nextDouble() * mLength) & ~1023L;
+    }
+
+    /**
+     * request the bytes from the offset and read them
+     *
+     * @param offset         the first byte
+     * @param maxBytes       the number of bytes read before the connection is closed, <code>-1</code> reads to the end
+     * @param bytesPerSecond the rate of reading, <code>0</code> means as fast as possible
+     * @return the number of bytes read
+     * @throws IOException if the response is wrong
+     */
+    public long play(long offset, long maxBytes, long bytesPerSecond) throws IOException {
+        long startTime = System.nanoTime();
+        Socket socket = new Socket(mProxyUrl.getHost(), mProxyUrl.getPort());
+        try {
+            StringBuilder request = new StringBuilder()
+                    .append("GET ").append(mProxyUrl.getFile()).append(" HTTP/1.1\r\n")
+                    .append("Host: ").append(mProxyUrl.getHost()).append(':').append(mProxyUrl.getPort()).append("\r\n")
+                    .append("Connection: close\r\n");
+            if (offset > 0) {
+                request.append("Range: bytes=").append(offset).append("-\r\n");
+            }
+            socket.getOutputStream().write(request.append("\r\n").toString().getBytes("US-ASCII"));
+            InputStream inputStream = new BufferedInputStream(socket.getInputStream());
+            int first = inputStream.read();
+            if (-1 == first) {
+                throw new IOException("no response for offset " + offset);
+            }
+            mReport.recordRequest(System.nanoTime() - startTime);
+            long position = readHeader(first, inputStream, offset);
+            long readBytes = readBody(inputStream, position, maxBytes, bytesPerSecond);
+            mReport.recordServedBytes(readBytes);
+            if (maxBytes < 0 && position + readBytes != mLength) {
+                throw new IOException("the response from " + offset + " is truncated at " + (position + readBytes));
+            }
+            return readBytes;
+        } finally {
+            FileUtils.closeQuietly(socket);
+        }
+    }
+
+    /**
+     * @return the position of the first byte of body
+     */
+    private long readHeader(int first, InputStream inputStream, long offset) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        header.write(first);
+        int last = first;
+        int value;
+        while (-1 != (value = inputStream.read())) {
+            if ('\r' == value) {
+                continue;
+            }
+            if ('\n' == value && '\n' == last) {
+                break;
+            }
+            header.write(value);
+            last = value;
+        }
+        String[] lines = header.toString("US-ASCII").split("\n");
+        String[] status = lines[0].split(" ");
+        int code = status.length > 1 ? Integer.parseInt(status[1]) : -1;
+        long position = 0;
+        if (206 == code) {
+            for (String line : lines) {
+                if (line.toLowerCase(Locale.US).startsWith("content-range:")) {
+                    String range = line.substring(line.indexOf("bytes") + "bytes".length()).trim();
+                    position = Long.parseLong(range.substring(0, range.indexOf('-')));
+                }
+            }
+        } else if (200 != code) {
+            throw new IOException("unexpected response : " + lines[0]);
+        }
+        if (position != offset) {
+            throw new IOException("the response starts at " + position + " instead of " + offset + " : " + lines[0]);
+        }
+        return position;
+    }
+
+    private long readBody(InputStream inputStream, long position, long maxBytes, long bytesPerSecond) throws IOException {
+        final long startTime = System.nanoTime();
+        long readBytes = 0;
+        while (maxBytes < 0 || readBytes < maxBytes) {
+            int length = maxBytes < 0 ? mBuffer.length : (int) Math.min(mBuffer.length, maxBytes - readBytes);
+            if (bytesPerSecond > 0) {
+                // a slow player reads no faster than its rate
+                length = (int) Math.min(length, Math.max(1024, bytesPerSecond / 50));
+                long allowedMillis = readBytes * 1000 / bytesPerSecond;
+                long elapsedMillis = (System.nanoTime() - startTime) / 1000000;
+                if (allowedMillis > elapsedMillis) {
+                    sleep(allowedMillis - elapsedMillis);
+                }
+            }
+            int count = inputStream.read(mBuffer, 0, length);
+            if (-1 == count) {
+                break;
+            }
+            for (int i = 0; i < count; i++) {
+                if (mBuffer[i] != HttpProxyCacheOriginStub.byteAt(position + readBytes + i)) {
+                    throw new IOException("wrong byte at " + (position + readBytes + i));
+                }
+            }
+            readBytes += count;
+        }
+        return readBytes;
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.llew.file.cache.engine.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the rate of generating the cache file names, the urls are distinct so nothing is memoized
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/19
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpProxyCacheNameGeneratorBenchmark {
+
+    private static final int URL_COUNT = 1024;
+
+    @Param({"MURMUR3", "MD5"})
+    public String generator;
+
+    private HttpProxyCacheNameGenerator mNameGenerator;
+    private String[] mUrls;
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        mNameGenerator = "MD5".equals(generator) ? HttpProxyCacheNameGenerator.MD5 : HttpProxyCacheNameGenerator.MURMUR3;
+        mUrls = new String[URL_COUNT];
+        for (int i = 0; i < URL_COUNT; i++) {
+            mUrls[i] = "http://video.example.com/path/to/some/video-" + i + ".mp4?token=0123456789abcdef&expires=1516406400";
+        }
+    }
+
+    @Benchmark
+    public String generateName() {
+        mIndex = (mIndex + 1) & (URL_COUNT - 1);
+        return mNameGenerator.generateName(mUrls[mIndex]);
+    }
+}
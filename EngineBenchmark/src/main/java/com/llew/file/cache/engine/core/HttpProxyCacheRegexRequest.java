@@ -0,0 +1,113 @@
+package com.llew.file.cache.engine.core;
+
+import com.llew.file.cache.engine.utils.Constants;
+import com.llew.file.cache.engine.utils.TextUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * the regex parser of request before it was parsed at byte level, only kept as the baseline of
+ * {@link HttpProxyCacheRequestBenchmark}
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/19
+ */
+
+final class HttpProxyCacheRegexRequest {
+
+    private static final Pattern RANGE_HEADER_PATTERN = Pattern.compile("[R,r]ange:[ ]?bytes=([^\\n]*)");
+    private static final Pattern URL_PATTERN = Pattern.compile("GET /(.*) HTTP");
+    private static final Pattern VERSION_PATTERN = Pattern.compile("GET /.* HTTP/1\\.0\\s*\n");
+    private static final Pattern CONNECTION_HEADER_PATTERN = Pattern.compile("[C,c]onnection:[ ]?(\\S+)");
+
+    final String url;
+    final boolean keepAlive;
+    final List<long[]> ranges;
+
+    static HttpProxyCacheRegexRequest getRequest(InputStream inputStream) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, Constants.CHARSET));
+        StringBuilder sb = new StringBuilder();
+        String line = reader.readLine();
+        while (!TextUtils.isEmpty(line)) {
+            sb.append(line).append('\n');
+            line = reader.readLine();
+        }
+        return new HttpProxyCacheRegexRequest(sb.toString());
+    }
+
+    private HttpProxyCacheRegexRequest(String request) throws UnsupportedEncodingException {
+        this.url = URLDecoder.decode(findUri(request), Constants.CHARSET);
+        this.ranges = findRanges(request);
+        this.keepAlive = isKeepAlive(request);
+    }
+
+    private boolean isKeepAlive(String request) {
+        Matcher matcher = CONNECTION_HEADER_PATTERN.matcher(request);
+        String connection = matcher.find() ? matcher.group(1) : null;
+        if (VERSION_PATTERN.matcher(request).find()) {
+            return "keep-alive".equalsIgnoreCase(connection);
+        }
+        return !"close".equalsIgnoreCase(connection);
+    }
+
+    private List<long[]> findRanges(String request) {
+        if (!TextUtils.isEmpty(request)) {
+            Matcher matcher = RANGE_HEADER_PATTERN.matcher(request);
+            if (matcher.find()) {
+                List<long[]> ranges = new ArrayList<>();
+                for (String spec : matcher.group(1).split(",")) {
+                    long[] range = parseRange(spec.trim());
+                    if (null == range) {
+                        return Collections.emptyList();
+                    }
+                    ranges.add(range);
+                }
+                return ranges;
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private static long[] parseRange(String spec) {
+        int dashIndex = spec.indexOf('-');
+        if (dashIndex < 0) {
+            return null;
+        }
+        String first = spec.substring(0, dashIndex).trim();
+        String last = spec.substring(dashIndex + 1).trim();
+        if (first.isEmpty()) {
+            return isNumber(last) ? new long[]{-1, Long.parseLong(last)} : null;
+        }
+        if (!isNumber(first) || (!last.isEmpty() && !isNumber(last))) {
+            return null;
+        }
+        long start = Long.parseLong(first);
+        long end = last.isEmpty() ? -1 : Long.parseLong(last);
+        return end >= 0 && end < start ? null : new long[]{start, end};
+    }
+
+    private static boolean isNumber(String value) {
+        return !TextUtils.isEmpty(value) && value.length() < 19 && TextUtils.isDigitsOnly(value);
+    }
+
+    private String findUri(String request) {
+        if (!TextUtils.isEmpty(request)) {
+            Matcher matcher = URL_PATTERN.matcher(request);
+            if (matcher.find()) {
+                return matcher.group(1);
+            }
+        }
+        throw new IllegalArgumentException("Invalid request `" + request + "`: url not found!");
+    }
+}
@@ -0,0 +1,106 @@
+package com.llew.file.cache.engine.core;
+
+import com.llew.file.cache.engine.benchmark.HttpProxyCacheBenchmarks;
+import com.llew.file.cache.engine.benchmark.HttpProxyCacheOriginStub;
+import com.llew.file.cache.engine.utils.FileUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the throughput of serving a completely cached file to a player over loopback, every operation is a new
+ * connection which reads the whole file. the bytes per second are the operations per second multiplied by the length.
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/19
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpProxyCacheServeBenchmark {
+
+    @Param({"1048576", "16777216"})
+    public long length;
+
+    @Param({"false", "true"})
+    public boolean nio;
+
+    private File mRootDir;
+    private HttpProxyCacheOriginStub mOrigin;
+    private HttpProxyCacheServer mCacheServer;
+    private URL mProxyUrl;
+    private byte[] mBuffer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        mRootDir = HttpProxyCacheBenchmarks.createTempDir("serve");
+        mOrigin = new HttpProxyCacheOriginStub(length);
+        mCacheServer = new HttpProxyCacheServer.Builder().rootDir(mRootDir).nioServerEnabled(nio).build();
+        String url = mOrigin.getUrl("serve.mp4");
+        String proxyUrl = mCacheServer.proxyUrl(url);
+        if (url.equals(proxyUrl)) {
+            throw new IllegalStateException("proxy server isn't running");
+        }
+        mProxyUrl = new URL(proxyUrl);
+        mBuffer = new byte[64 * 1024];
+        // the first request caches the file, the measured ones are served from cache
+        serve();
+        for (int i = 0; i < 100 && !mCacheServer.isCached(url); i++) {
+            Thread.sleep(50);
+        }
+        if (!mCacheServer.isCached(url)) {
+            throw new IllegalStateException("file isn't cached");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mCacheServer.shutdownProxy();
+        mOrigin.close();
+        HttpProxyCacheBenchmarks.delete(mRootDir);
+    }
+
+    @Benchmark
+    public long serve() throws IOException {
+        Socket socket = new Socket(mProxyUrl.getHost(), mProxyUrl.getPort());
+        try {
+            String request = "GET " + mProxyUrl.getFile() + " HTTP/1.1\r\nHost: " + mProxyUrl.getHost() + "\r\nConnection: close\r\n\r\n";
+            socket.getOutputStream().write(request.getBytes("US-ASCII"));
+            InputStream inputStream = socket.getInputStream();
+            long readBytes = 0;
+            int count;
+            while (-1 != (count = inputStream.read(mBuffer))) {
+                readBytes += count;
+            }
+            if (readBytes < length) {
+                throw new IOException("the response is truncated at " + readBytes);
+            }
+            return readBytes;
+        } finally {
+            FileUtils.closeQuietly(socket);
+        }
+    }
+}
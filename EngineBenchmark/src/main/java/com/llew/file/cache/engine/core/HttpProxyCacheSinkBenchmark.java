@@ -0,0 +1,109 @@
+package com.llew.file.cache.engine.core;
+
+import com.llew.file.cache.engine.config.HttpProxyCacheConfig;
+import com.llew.file.cache.engine.info.HttpProxyCacheSourceInfo;
+import com.llew.file.cache.engine.benchmark.HttpProxyCacheBenchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the throughput of appending to a downloading file and reading from a completed file by the size of buffer,
+ * the bytes per second are the operations per second multiplied by the buffer size.
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/19
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpProxyCacheSinkBenchmark {
+
+    private static final long FILE_LENGTH = 64 * 1024 * 1024;
+    private static final String APPEND_URL = "http://video.example.com/append.mp4";
+    private static final String READ_URL = "http://video.example.com/read.mp4";
+
+    @Param({"4096", "32768", "262144"})
+    public int bufferSize;
+
+    private File mRootDir;
+    private HttpProxyCacheConfig mCacheConfig;
+    private HttpProxyCacheSink mAppendSink;
+    private HttpProxyCacheSink mReadSink;
+    private byte[] mBuffer;
+    private long mAppendedLength;
+    private long mReadOffset;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        mRootDir = HttpProxyCacheBenchmarks.createTempDir("sink");
+        mCacheConfig = new HttpProxyCacheServer.Builder().rootDir(mRootDir).buildConfig();
+        mCacheConfig.getCacheStorage().put(APPEND_URL, new HttpProxyCacheSourceInfo(APPEND_URL, "video/mp4", FILE_LENGTH));
+        mCacheConfig.getCacheStorage().put(READ_URL, new HttpProxyCacheSourceInfo(READ_URL, "video/mp4", FILE_LENGTH));
+        mBuffer = new byte[bufferSize];
+
+        mReadSink = new HttpProxyCacheSink();
+        mReadSink.init(mCacheConfig, READ_URL);
+        while (mReadSink.available(0) < FILE_LENGTH) {
+            mReadSink.append(mBuffer, (int) Math.min(mBuffer.length, FILE_LENGTH - mReadSink.available(0)));
+            mReadSink.flush();
+        }
+        mReadSink.complete();
+    }
+
+    @Setup(Level.Iteration)
+    public void openAppendSink() throws Exception {
+        mAppendSink = new HttpProxyCacheSink();
+        mAppendSink.init(mCacheConfig, APPEND_URL);
+        mAppendedLength = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeAppendSink() throws Exception {
+        mAppendSink.reset();
+        mAppendSink.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        mReadSink.close();
+        HttpProxyCacheBenchmarks.delete(mRootDir);
+    }
+
+    @Benchmark
+    public void append() throws Exception {
+        if (mAppendedLength + bufferSize > FILE_LENGTH) {
+            // start again from an empty file, so the file never grows beyond the source length
+            mAppendSink.reset();
+            mAppendedLength = 0;
+        }
+        mAppendSink.append(mBuffer, bufferSize);
+        mAppendedLength += bufferSize;
+    }
+
+    @Benchmark
+    public int read() throws Exception {
+        int readBytes = mReadSink.read(mBuffer, mReadOffset, bufferSize);
+        mReadOffset = mReadOffset + bufferSize >= FILE_LENGTH ? 0 : mReadOffset + bufferSize;
+        return readBytes;
+    }
+}
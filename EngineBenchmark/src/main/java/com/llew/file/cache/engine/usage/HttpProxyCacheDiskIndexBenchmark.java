@@ -0,0 +1,96 @@
+package com.llew.file.cache.engine.usage;
+
+import com.llew.file.cache.engine.benchmark.HttpProxyCacheBenchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the cost of recording an access and of evicting the least recently used file by the number of cached files.
+ * the files are empty, so the cost of file system is only the lookups, creations and deletions.
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/19
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpProxyCacheDiskIndexBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int fileCount;
+
+    private File mRootDir;
+    private File[] mFiles;
+    private HttpProxyCacheDiskIndex mDiskIndex;
+    private LruFilesCountDiskUsage mDiskUsage;
+    private int mIndex;
+    private long mNextName;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mRootDir = HttpProxyCacheBenchmarks.createTempDir("usage");
+        mFiles = new File[fileCount];
+        for (int i = 0; i < fileCount; i++) {
+            mFiles[i] = createFile(mNextName++);
+        }
+        mDiskIndex = new HttpProxyCacheDiskIndex(mRootDir);
+        // the directory is scanned at the first use, not in the measurement
+        mDiskIndex.getFileCount();
+        mDiskUsage = new LruFilesCountDiskUsage(null, fileCount + 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        HttpProxyCacheBenchmarks.delete(mRootDir);
+    }
+
+    /**
+     * move a cached file to the recently used end of index
+     */
+    @Benchmark
+    public void touch() {
+        mDiskIndex.touch(mFiles[mIndex]);
+        mIndex = mIndex + 1 == mFiles.length ? 0 : mIndex + 1;
+    }
+
+    /**
+     * add a new file and delete the least recently used one, like caching a new url with a full cache
+     */
+    @Benchmark
+    public int touchAndEvict() throws IOException {
+        File file = createFile(mNextName++);
+        mDiskIndex.touch(file);
+        mDiskUsage.trim(mDiskIndex, Collections.singletonList(file));
+        return mDiskIndex.getFileCount();
+    }
+
+    private File createFile(long name) throws IOException {
+        File file = new File(mRootDir, String.format("%032x.mp4", name));
+        if (!file.createNewFile()) {
+            throw new IOException("Error create file " + file);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,167 @@
+package com.llew.file.cache.engine.config;
+
+import com.llew.file.cache.engine.exception.HttpProxyCacheException;
+import com.llew.file.cache.engine.utils.Constants;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * the sink the engine works with. the methods beyond {@link HttpProxyCacheSink} fall back to
+ * {@link #read(byte[], long, int)} and {@link #append(byte[], int)}, so a sink which only appends
+ * to a continuous file works as before: it's downloaded by one connection from the end of its bytes.
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/22
+ */
+
+public abstract class BaseHttpProxyCacheSink implements HttpProxyCacheSink {
+
+    /**
+     * @param sink the sink
+     * @return the sink itself if it extends this class, otherwise a wrapper of it
+     */
+    public static BaseHttpProxyCacheSink wrap(HttpProxyCacheSink sink) {
+        if (null == sink || sink instanceof BaseHttpProxyCacheSink) {
+            return (BaseHttpProxyCacheSink) sink;
+        }
+        return new SinkWrapper(sink);
+    }
+
+    /**
+     * @return <code>true</code> if data can be written at any offset, otherwise it's only appended to the end of
+     * continuous bytes cached from the beginning
+     */
+    public boolean isSparse() {
+        return false;
+    }
+
+    /**
+     * number of continuous bytes has cached from the offset
+     *
+     * @param offset the offset
+     * @return the number of continuous bytes has cached from the offset, <code>0</code> if the offset hasn't cached
+     * @throws HttpProxyCacheException the error
+     */
+    public long available(long offset) throws HttpProxyCacheException {
+        return Math.max(0, available() - offset);
+    }
+
+    /**
+     * transfer data from cached file to the target channel, a sink which can read its file by a channel
+     * should override it, so the data isn't copied through a user buffer
+     *
+     * @param offset the offset
+     * @param count  the max number of bytes to transfer
+     * @param target the target channel, such as the socket of player
+     * @return the number of bytes transferred, <code>0</code> if no data at offset has cached
+     * @throws HttpProxyCacheException the error
+     */
+    public long transferTo(long offset, long count, WritableByteChannel target) throws HttpProxyCacheException {
+        long cachedLength = available(offset);
+        if (cachedLength <= 0) {
+            return 0;
+        }
+        byte[] buffer = new byte[(int) Math.min(Math.min(count, cachedLength), Constants.BUFFER_SIZE)];
+        int readBytes = read(buffer, offset, buffer.length);
+        if (readBytes <= 0) {
+            return 0;
+        }
+        try {
+            ByteBuffer source = ByteBuffer.wrap(buffer, 0, readBytes);
+            while (source.hasRemaining()) {
+                target.write(source);
+            }
+        } catch (IOException e) {
+            throw new HttpProxyCacheException(e);
+        }
+        return readBytes;
+    }
+
+    /**
+     * write data at the offset of cached file, the other parts of cached file are kept. a sink which isn't
+     * sparse only accepts data at the end of its continuous bytes
+     *
+     * @param data   the new data
+     * @param offset the offset of cached file
+     * @param length the really length of data
+     * @throws HttpProxyCacheException the error
+     */
+    public void write(byte[] data, long offset, int length) throws HttpProxyCacheException {
+        long cachedLength = available();
+        if (offset != cachedLength) {
+            throw new HttpProxyCacheException("sink only appends at " + cachedLength + ", can't write at " + offset);
+        }
+        append(data, length);
+    }
+
+    /**
+     * write the buffered data to cached file, the data written by {@link #write(byte[], long, int)} may be
+     * buffered and isn't available until it's flushed. it's called when a download stops
+     *
+     * @throws HttpProxyCacheException the error
+     */
+    public void flush() throws HttpProxyCacheException {
+    }
+
+    /**
+     * discard the cached data because the source has changed, the file is cached again from the beginning.
+     * it's also called for a completed file
+     *
+     * @throws HttpProxyCacheException the error, the default one can't discard the cached data
+     */
+    public void reset() throws HttpProxyCacheException {
+        throw new HttpProxyCacheException("sink can't discard the cached data of a changed source");
+    }
+
+    private static final class SinkWrapper extends BaseHttpProxyCacheSink {
+
+        private final HttpProxyCacheSink mSink;
+
+        SinkWrapper(HttpProxyCacheSink sink) {
+            this.mSink = sink;
+        }
+
+        @Override
+        public void init(HttpProxyCacheConfig config, String url) throws HttpProxyCacheException {
+            mSink.init(config, url);
+        }
+
+        @Override
+        public long available() throws HttpProxyCacheException {
+            return mSink.available();
+        }
+
+        @Override
+        public int read(byte[] buffer, long offset, int length) throws HttpProxyCacheException {
+            return mSink.read(buffer, offset, length);
+        }
+
+        @Override
+        public void append(byte[] data, int length) throws HttpProxyCacheException {
+            mSink.append(data, length);
+        }
+
+        @Override
+        public void complete() throws HttpProxyCacheException {
+            mSink.complete();
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return mSink.isCompleted();
+        }
+
+        @Override
+        public HttpProxyCacheSink clone(HttpProxyCacheConfig config) throws HttpProxyCacheException {
+            return wrap(mSink.clone(config));
+        }
+
+        @Override
+        public void close() throws IOException {
+            mSink.close();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.llew.file.cache.engine.config;
+
+import com.llew.file.cache.engine.exception.HttpProxyCacheException;
+import com.llew.file.cache.engine.info.HttpProxyCacheSourceInfo;
+
+import java.io.IOException;
+
+/**
+ * the source the engine works with. the methods beyond {@link HttpProxyCacheSource} fall back to
+ * {@link #open(long)}, so a source which only knows the offset works as before.
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/22
+ */
+
+public abstract class BaseHttpProxyCacheSource implements HttpProxyCacheSource {
+
+    /**
+     * @param source the source
+     * @return the source itself if it extends this class, otherwise a wrapper of it
+     */
+    public static BaseHttpProxyCacheSource wrap(HttpProxyCacheSource source) {
+        if (null == source || source instanceof BaseHttpProxyCacheSource) {
+            return (BaseHttpProxyCacheSource) source;
+        }
+        return new SourceWrapper(source);
+    }
+
+    /**
+     * open a connection for the bytes from offset to end. the length, mime and validators of response are
+     * put into storage, a range is asked with <code>If-Range</code> if the stored validators are known.
+     * a range is asked if the offset or the end is positive, the response must be a <code>206</code>
+     * whose <code>Content-Range</code> starts at the offset, otherwise its bytes would be cached at the wrong offset.
+     * the default one opens from the offset to the end of source, the engine stops reading at the end
+     *
+     * @param offset the first byte of range
+     * @param end    the end of range (exclusive), negative means the end of source
+     * @throws HttpProxyCacheException the error, {@link com.llew.file.cache.engine.exception.HttpProxyCacheSourceChangedException}
+     *                                 if the validators of response don't match the stored ones,
+     *                                 {@link com.llew.file.cache.engine.exception.HttpProxyCacheRangeIgnoredException}
+     *                                 if a range is asked but the response isn't a <code>206</code> starting at the offset
+     */
+    public void open(long offset, long end) throws HttpProxyCacheException {
+        open(offset);
+    }
+
+    /**
+     * the length and mime of source, the stored ones are returned if both are known, otherwise they are asked
+     * by one request with the timeout of {@link HttpProxyCacheConfig#getSourceTimeout()} and stored.
+     * the default one asks {@link #length()} and {@link #mime()}
+     *
+     * @param url the url of source
+     * @return the info of source
+     * @throws HttpProxyCacheException the error
+     */
+    public HttpProxyCacheSourceInfo sourceInfo(String url) throws HttpProxyCacheException {
+        long length = length();
+        return new HttpProxyCacheSourceInfo(url, mime(), length);
+    }
+
+    /**
+     * ask the source whether it has changed since the stored validators with a conditional request,
+     * the validated time of stored info is updated if it hasn't changed, otherwise the new info is stored
+     *
+     * @return <code>true</code> means the source hasn't changed, the default one can't tell and keeps the cached file
+     * @throws HttpProxyCacheException the error
+     */
+    public boolean revalidate() throws HttpProxyCacheException {
+        return true;
+    }
+
+    private static final class SourceWrapper extends BaseHttpProxyCacheSource {
+
+        private final HttpProxyCacheSource mSource;
+
+        SourceWrapper(HttpProxyCacheSource source) {
+            this.mSource = source;
+        }
+
+        @Override
+        public void init(HttpProxyCacheConfig config, String url) throws HttpProxyCacheException {
+            mSource.init(config, url);
+        }
+
+        @Override
+        public void open() throws HttpProxyCacheException {
+            mSource.open();
+        }
+
+        @Override
+        public void open(long offset) throws HttpProxyCacheException {
+            mSource.open(offset);
+        }
+
+        @Override
+        public long length() throws HttpProxyCacheException {
+            return mSource.length();
+        }
+
+        @Override
+        public String mime() throws HttpProxyCacheException {
+            return mSource.mime();
+        }
+
+        @Override
+        public int read(byte[] buffer) throws HttpProxyCacheException {
+            return mSource.read(buffer);
+        }
+
+        @Override
+        public HttpProxyCacheSource clone(HttpProxyCacheConfig config) throws HttpProxyCacheException {
+            return wrap(mSource.clone(config));
+        }
+
+        @Override
+        public void close() throws IOException {
+            mSource.close();
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package com.llew.file.cache.engine.config;
+
+import com.llew.file.cache.engine.exception.HttpProxyCacheException;
+import com.llew.file.cache.engine.manager.HttpProxyCacheBufferPool;
+import com.llew.file.cache.engine.manager.HttpProxyCacheStats;
+import com.llew.file.cache.engine.usage.HttpProxyCacheDiskIndex;
+import com.llew.file.cache.engine.usage.HttpProxyCacheDiskTrimmer;
+import com.llew.file.cache.engine.usage.LruFilesSizeDiskUsage;
+import com.llew.file.cache.engine.utils.Constants;
+import com.llew.file.cache.engine.utils.FileUtils;
+import com.llew.file.cache.engine.utils.Logger;
+import com.llew.file.cache.engine.utils.TextUtils;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2017/12/28
+ */
+
+public final class HttpProxyCacheConfig {
+
+    private final ConcurrentHashMap<String, HttpProxyCacheCallback> mCallbacks;
+    private final ConcurrentHashMap<String, HttpProxyCacheHeaders> mHeaders;
+
+    /**
+     * the recently generated names, repeated lookups of the same url don't hash again
+     */
+    private final LinkedHashMap<String, String> mCacheNames = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > Constants.CACHE_NAMES;
+        }
+    };
+
+
+    /**
+     * the android.content.Context of the deprecated constructors, see {@link #getContext()}
+     */
+    private final Object mContext;
+    private final HttpProxyCacheDispatcher mDispatcher;
+    private final int  mMaxAttempts;
+    private final int  mMaxTimeouts;
+    private final int  mSourceTimeout;
+    private final long mMaxFileSize;
+    private final long callbackInterval;
+    private final boolean mNioServerEnabled;
+    private final int  mDownloadConnections;
+    private final long mDownloadSegmentSize;
+    private final int  mMaxPreloads;
+    private final long mHealthCheckInterval;
+    private final int  mWriteBufferSize;
+    private final HttpProxyCacheSyncPolicy mSyncPolicy;
+    private final HttpProxyCacheBufferPool mBufferPool;
+    private final HttpProxyCacheStats mStats;
+    private final long mRevalidateInterval;
+    private final boolean mAdminEnabled;
+
+    private final File mHttpProxyCacheRootDir;
+    private final HttpProxyCacheSink mCacheSink;
+    private final HttpProxyCacheSource mCacheSource;
+    private final HttpProxyCacheStorage mCacheStorage;
+    private final HttpProxyCacheHeaders mDependHeaders;
+    private final HttpProxyCacheUrlFilter mUrlFilter;
+    private final List<HttpProxyCacheUsage> mDiskUsages;
+    private final HttpProxyCacheDiskIndex mDiskIndex;
+    private final HttpProxyCacheDiskTrimmer mDiskTrimmer;
+    private final HttpProxyCacheNameGenerator mFileNameGenerator;
+    private ExecutorService mDefaultExecutorService;
+
+
+    public HttpProxyCacheConfig(HttpProxyCacheDispatcher dispatcher, HttpProxyCacheHeaders headers, List<HttpProxyCacheUsage> diskUsage, com.llew.file.cache.engine.config.HttpProxyCacheSource cacheSource, HttpProxyCacheSink cacheSink, HttpProxyCacheStorage storage, HttpProxyCacheNameGenerator nameGenerator, File rootDir, HttpProxyCacheUrlFilter filter, ExecutorService service, long maxFileSize, int maxAttempts, int maxTimeouts, int sourceTimeout, long callbackInterval, boolean nioServerEnabled, int downloadConnections, long downloadSegmentSize, int maxPreloads, long healthCheckInterval, int writeBufferSize, HttpProxyCacheSyncPolicy syncPolicy, int bufferSize, long bufferPoolSize, long revalidateInterval, boolean adminEnabled, Object context) {
+        this.mContext = context;
+        this.mDispatcher = dispatcher;
+        this.mUrlFilter = filter;
+        this.mCacheSink = cacheSink;
+        this.mDiskUsages = diskUsage;
+        this.mCacheStorage = storage;
+        this.mDependHeaders = headers;
+        this.mCacheSource = cacheSource;
+        this.mMaxAttempts = maxAttempts;
+        this.mMaxTimeouts = maxTimeouts;
+        this.mSourceTimeout = sourceTimeout;
+        this.mMaxFileSize = maxFileSize;
+        this.mFileNameGenerator = nameGenerator;
+        this.mHttpProxyCacheRootDir = rootDir;
+        this.mStats = new HttpProxyCacheStats();
+        this.mDiskIndex = new HttpProxyCacheDiskIndex(rootDir, mStats);
+        this.mDiskTrimmer = new HttpProxyCacheDiskTrimmer(this);
+        this.mDefaultExecutorService = service;
+        this.mCallbacks = new ConcurrentHashMap<>();
+        this.mHeaders = new ConcurrentHashMap<>();
+        this.callbackInterval = callbackInterval;
+        this.mNioServerEnabled = nioServerEnabled;
+        this.mDownloadConnections = downloadConnections;
+        this.mDownloadSegmentSize = downloadSegmentSize;
+        this.mMaxPreloads = maxPreloads;
+        this.mHealthCheckInterval = healthCheckInterval;
+        this.mWriteBufferSize = writeBufferSize;
+        this.mSyncPolicy = syncPolicy;
+        this.mBufferPool = new HttpProxyCacheBufferPool(bufferSize, bufferPoolSize);
+        this.mRevalidateInterval = revalidateInterval;
+        this.mAdminEnabled = adminEnabled;
+    }
+
+    /**
+     * @return the android.content.Context the server was built with, <code>null</code> if it's built without one
+     * @deprecated the core doesn't depend on Android, the context is kept by the caller instead
+     */
+    @Deprecated
+    @SuppressWarnings("unchecked")
+    public <T> T getContext() {
+        return (T) mContext;
+    }
+
+    /**
+     * @return the dispatcher which delivers the callbacks
+     */
+    public HttpProxyCacheDispatcher getDispatcher() {
+        return mDispatcher;
+    }
+
+    public HttpProxyCacheUrlFilter getUrlFilter() {
+        return mUrlFilter;
+    }
+
+    public File getCacheRootDir() {
+        return mHttpProxyCacheRootDir;
+    }
+
+    public HttpProxyCacheNameGenerator getFileNameGenerator() {
+        return mFileNameGenerator;
+    }
+
+    public List<HttpProxyCacheUsage> getHttProxyCacheDiskUsages() {
+        if (mDiskUsages.isEmpty()) {
+            mDiskUsages.add(new LruFilesSizeDiskUsage(this, Constants.FILES_SIZE));
+        }
+        return mDiskUsages;
+    }
+
+    public HttpProxyCacheDiskIndex getDiskIndex() {
+        return mDiskIndex;
+    }
+
+    public HttpProxyCacheDiskTrimmer getDiskTrimmer() {
+        return mDiskTrimmer;
+    }
+
+    public ExecutorService getExecutorService() {
+        return mDefaultExecutorService;
+    }
+
+    public com.llew.file.cache.engine.config.HttpProxyCacheSource getCacheSource() {
+        return mCacheSource;
+    }
+
+    public HttpProxyCacheSink getCacheSink() {
+        return mCacheSink;
+    }
+
+    /**
+     * @return a new source for a download, a plain {@link HttpProxyCacheSource} is wrapped into {@link BaseHttpProxyCacheSource}
+     * @throws HttpProxyCacheException the error
+     */
+    public BaseHttpProxyCacheSource newCacheSource() throws HttpProxyCacheException {
+        return BaseHttpProxyCacheSource.wrap(mCacheSource.clone(this));
+    }
+
+    /**
+     * @return a new sink for a url, a plain {@link HttpProxyCacheSink} is wrapped into {@link BaseHttpProxyCacheSink}
+     * @throws HttpProxyCacheException the error
+     */
+    public BaseHttpProxyCacheSink newCacheSink() throws HttpProxyCacheException {
+        return BaseHttpProxyCacheSink.wrap(mCacheSink.clone(this));
+    }
+
+    public HttpProxyCacheStorage getCacheStorage() {
+        return mCacheStorage;
+    }
+
+    public int getMaxAttempts() {
+        return mMaxAttempts;
+    }
+
+    public int getMaxTimeouts() {
+        return mMaxTimeouts;
+    }
+
+    /**
+     * @return the timeout in milliseconds of the request which asks the source for its length and mime
+     */
+    public int getSourceTimeout() {
+        return mSourceTimeout;
+    }
+
+    public long getMaxFileSize() {
+        return mMaxFileSize;
+    }
+
+    public long getTimeInternal() {
+        return callbackInterval;
+    }
+
+    public boolean isNioServerEnabled() {
+        return mNioServerEnabled;
+    }
+
+    public int getDownloadConnections() {
+        return mDownloadConnections;
+    }
+
+    public long getDownloadSegmentSize() {
+        return mDownloadSegmentSize;
+    }
+
+    public int getMaxPreloads() {
+        return mMaxPreloads;
+    }
+
+    public long getHealthCheckInterval() {
+        return mHealthCheckInterval;
+    }
+
+    public int getWriteBufferSize() {
+        return mWriteBufferSize;
+    }
+
+    public HttpProxyCacheSyncPolicy getSyncPolicy() {
+        return mSyncPolicy;
+    }
+
+    public HttpProxyCacheBufferPool getBufferPool() {
+        return mBufferPool;
+    }
+
+    /**
+     * @return the counters of proxy server
+     */
+    public HttpProxyCacheStats getStats() {
+        return mStats;
+    }
+
+    public long getRevalidateInterval() {
+        return mRevalidateInterval;
+    }
+
+    /**
+     * @return <code>true</code> if the admin paths {@link Constants#STATS} and {@link Constants#DEBUG} are served
+     */
+    public boolean isAdminEnabled() {
+        return mAdminEnabled;
+    }
+
+    public HttpProxyCacheHeaders getDependHeaders() {
+        return mDependHeaders;
+    }
+
+    public synchronized File generateCacheFile(String url) {
+        File rootDir = getCacheRootDir();
+        String name = mCacheNames.get(url);
+        if (null == name) {
+            FileUtils.createDirs(rootDir);
+            name = generateCacheName(url);
+            migrateLegacyFiles(rootDir, url, name);
+            mCacheNames.put(url, name);
+        }
+        return new File(rootDir, name);
+    }
+
+    /**
+     * delete the cache directory with all of the cached files, the names are forgotten too,
+     * so the next lookup creates the directory again
+     */
+    public synchronized void clearCaches() {
+        FileUtils.deleteFile(getCacheRootDir());
+        mDiskIndex.clear();
+        mCacheNames.clear();
+    }
+
+    private String generateCacheName(String url) {
+        String name = getFileNameGenerator().generateName(url);
+        if (TextUtils.isEmpty(name)) {
+            name = HttpProxyCacheNameGenerator.MURMUR3.generateName(url);
+        }
+        return name;
+    }
+
+    /**
+     * rename the files cached by old versions to the new name, so they are still used.
+     * it costs nothing once the disk index has no file of old versions left
+     */
+    private void migrateLegacyFiles(File rootDir, String url, String name) {
+        if (!mDiskIndex.hasLegacyFiles()) {
+            return;
+        }
+        String legacyName = HttpProxyCacheNameGenerator.LEGACY.generateName(url);
+        if (legacyName.equals(name)) {
+            mDiskIndex.forgetLegacy(legacyName);
+            mDiskIndex.forgetLegacy(legacyName + Constants.DOWNLOAD_SUFFIX);
+            return;
+        }
+        if (!(mDiskIndex.isLegacy(legacyName) || mDiskIndex.isLegacy(legacyName + Constants.DOWNLOAD_SUFFIX))) {
+            return;
+        }
+        String[] suffixes = {"", Constants.DOWNLOAD_SUFFIX, Constants.DOWNLOAD_SUFFIX + Constants.SEGMENTS_SUFFIX};
+        for (String suffix : suffixes) {
+            File legacyFile = new File(rootDir, legacyName + suffix);
+            File file = new File(rootDir, name + suffix);
+            if (legacyFile.exists() && !file.exists()) {
+                boolean renamed = legacyFile.renameTo(file);
+                Logger.e("migrate " + legacyFile.getName() + " to " + file.getName() + " result = " + renamed);
+                if (renamed) {
+                    mDiskIndex.remove(legacyFile);
+                    mDiskIndex.touch(file);
+                }
+            }
+        }
+    }
+
+    public void addCallback(String url, HttpProxyCacheCallback callback) {
+        if (!TextUtils.isEmpty(url) && null != callback) {
+            mCallbacks.put(url, callback);
+        }
+    }
+
+    public void addHeaders(String url, HttpProxyCacheHeaders headers) {
+        if (!TextUtils.isEmpty(url) && null != headers) {
+            mHeaders.put(url, headers);
+        }
+    }
+
+    public void removeHeaders(String url) {
+        if (!TextUtils.isEmpty(url)) {
+            mHeaders.remove(url);
+        }
+    }
+
+    public void removeCallback(String url) {
+        if (!TextUtils.isEmpty(url)) {
+            mCallbacks.remove(url);
+        }
+    }
+
+    public HttpProxyCacheCallback getCacheCallback(String url) {
+        return TextUtils.isEmpty(url) ? null : mCallbacks.get(url);
+    }
+
+    public HttpProxyCacheHeaders getCacheHeaders(String url) {
+        return TextUtils.isEmpty(url) ? null : mHeaders.get(url);
+    }
+
+    public boolean isPingRequest(String url) {
+        return null != url && url.startsWith(String.format("http://%s", Constants.HOST));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.llew.file.cache.engine.config;
+
+/**
+ * deliver the callbacks to the thread of caller, such as the main thread of Android
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/18
+ */
+
+public interface HttpProxyCacheDispatcher {
+
+    /**
+     * run the runnable on the thread of callbacks
+     *
+     * @param runnable the runnable
+     */
+    void post(Runnable runnable);
+
+    /**
+     * run the runnable on the thread of callbacks after the delay
+     *
+     * @param runnable    the runnable
+     * @param delayMillis the delay in milliseconds
+     */
+    void post(Runnable runnable, long delayMillis);
+}
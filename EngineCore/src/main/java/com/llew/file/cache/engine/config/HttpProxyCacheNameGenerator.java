@@ -0,0 +1,58 @@
+package com.llew.file.cache.engine.config;
+
+import com.llew.file.cache.engine.utils.FileUtils;
+import com.llew.file.cache.engine.utils.TextUtils;
+
+/**
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2017/12/28
+ */
+
+public interface HttpProxyCacheNameGenerator {
+
+    /**
+     * generate cache file name by url, default is {@link HttpProxyCacheNameGenerator#MURMUR3}
+     *
+     * @param url the cache url
+     * @return file name that must be unique
+     */
+    String generateName(String url);
+
+    HttpProxyCacheNameGenerator MD5 = new HttpProxyCacheNameGenerator() {
+
+        @Override
+        public String generateName(String url) {
+            String extension = FileUtils.getExtension(url);
+            String name = FileUtils.getMd5(url);
+            return TextUtils.isEmpty(extension) ? name : String.format("%s.%s", name, extension);
+        }
+    };
+
+    /**
+     * the 128-bit MurmurHash3 of url in 32 hex digits, much faster than {@link #MD5}
+     */
+    HttpProxyCacheNameGenerator MURMUR3 = new HttpProxyCacheNameGenerator() {
+
+        @Override
+        public String generateName(String url) {
+            String extension = FileUtils.getExtension(url);
+            String name = FileUtils.getMurmur3(url);
+            return TextUtils.isEmpty(extension) ? name : String.format("%s.%s", name, extension);
+        }
+    };
+
+    /**
+     * the name generated by old versions with a lossy md5 encoding, it is only used to find the files cached by them
+     */
+    HttpProxyCacheNameGenerator LEGACY = new HttpProxyCacheNameGenerator() {
+
+        @Override
+        public String generateName(String url) {
+            String extension = FileUtils.getExtension(url);
+            String name = FileUtils.getLegacyMd5(url);
+            return TextUtils.isEmpty(extension) ? name : String.format("%s.%s", name, extension);
+        }
+    };
+}
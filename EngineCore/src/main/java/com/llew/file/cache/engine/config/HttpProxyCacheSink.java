@@ -5,6 +5,8 @@ import com.llew.file.cache.engine.exception.HttpProxyCacheException;
 import java.io.Closeable;
 
 /**
+ * the cached file of a url, the engine works with {@link BaseHttpProxyCacheSink} which a plain
+ * implementation of this interface is wrapped into
  * <br/><br/>
  *
  * @author llew
@@ -42,7 +44,7 @@ public interface HttpProxyCacheSink extends Closeable {
     int read(byte[] buffer, long offset, int length) throws HttpProxyCacheException;
 
     /**
-     * append data to the end of cached file
+     * append data to the end of continuous bytes cached from the beginning
      *
      * @param data   the new data
      * @param length the really length of data
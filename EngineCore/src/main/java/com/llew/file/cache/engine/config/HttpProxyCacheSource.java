@@ -5,6 +5,8 @@ import com.llew.file.cache.engine.exception.HttpProxyCacheException;
 import java.io.Closeable;
 
 /**
+ * the origin of a url, the engine works with {@link BaseHttpProxyCacheSource} which a plain
+ * implementation of this interface is wrapped into
  * <br/><br/>
  *
  * @author llew
@@ -25,6 +27,14 @@ public interface HttpProxyCacheSource extends Closeable {
 
     int read(byte[] buffer) throws HttpProxyCacheException;
 
+    /**
+     * create a new instance for another download, every download opens its own clone. the clones should share
+     * the transport of this source, such as the connection pool, so requests to the same host reuse connections
+     *
+     * @param config the global config
+     * @return the new instance
+     * @throws HttpProxyCacheException the error
+     */
     HttpProxyCacheSource clone(HttpProxyCacheConfig config) throws HttpProxyCacheException;
 
 }
\ No newline at end of file
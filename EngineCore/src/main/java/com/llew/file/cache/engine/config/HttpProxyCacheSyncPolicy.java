@@ -0,0 +1,74 @@
+package com.llew.file.cache.engine.config;
+
+/**
+ * determine when the cached bytes are forced to the storage device, the bytes which haven't forced
+ * are kept by the system and may be lost when the device powers off.
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/10
+ */
+
+public interface HttpProxyCacheSyncPolicy {
+
+    /**
+     * determine to force the written bytes of a downloading file or not, it's called after every flush of sink
+     *
+     * @param unsyncedBytes the number of bytes written since last force
+     * @param unsyncedTime  the duration in milliseconds since last force
+     * @return <code>true</code> means force the bytes, otherwise <code>false</code>
+     */
+    boolean shouldSync(long unsyncedBytes, long unsyncedTime);
+
+    /**
+     * determine to force the file before it's marked completed or not
+     *
+     * @return <code>true</code> means force the file, otherwise <code>false</code>
+     */
+    boolean syncOnComplete();
+
+    /**
+     * never force, the bytes are written back by the system, default policy
+     */
+    HttpProxyCacheSyncPolicy NONE = new HttpProxyCacheSyncPolicy() {
+        @Override
+        public boolean shouldSync(long unsyncedBytes, long unsyncedTime) {
+            return false;
+        }
+
+        @Override
+        public boolean syncOnComplete() {
+            return false;
+        }
+    };
+
+    /**
+     * force the file once before it's completed, a completed file is never lost
+     */
+    HttpProxyCacheSyncPolicy ON_COMPLETE = new HttpProxyCacheSyncPolicy() {
+        @Override
+        public boolean shouldSync(long unsyncedBytes, long unsyncedTime) {
+            return false;
+        }
+
+        @Override
+        public boolean syncOnComplete() {
+            return true;
+        }
+    };
+
+    /**
+     * force every 8M bytes or 5 seconds while downloading and once before it's completed
+     */
+    HttpProxyCacheSyncPolicy PERIODIC = new HttpProxyCacheSyncPolicy() {
+        @Override
+        public boolean shouldSync(long unsyncedBytes, long unsyncedTime) {
+            return unsyncedBytes >= 8 * 1024 * 1024 || (unsyncedBytes > 0 && unsyncedTime >= 5 * 1000);
+        }
+
+        @Override
+        public boolean syncOnComplete() {
+            return true;
+        }
+    };
+}
@@ -1,6 +1,6 @@
 package com.llew.file.cache.engine.config;
 
-import android.text.TextUtils;
+import com.llew.file.cache.engine.utils.TextUtils;
 
 /**
  * <br/><br/>
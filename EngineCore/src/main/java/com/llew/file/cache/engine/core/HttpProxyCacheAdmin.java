@@ -0,0 +1,207 @@
+package com.llew.file.cache.engine.core;
+
+import com.llew.file.cache.engine.config.HttpProxyCacheConfig;
+import com.llew.file.cache.engine.exception.HttpProxyCacheException;
+import com.llew.file.cache.engine.manager.HttpProxyCacheBufferPool;
+import com.llew.file.cache.engine.manager.HttpProxyCacheStats;
+import com.llew.file.cache.engine.usage.HttpProxyCacheDiskIndex;
+import com.llew.file.cache.engine.utils.Constants;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * responds the admin paths of proxy server, {@link Constants#STATS} with the counters and {@link Constants#DEBUG}
+ * with the state of every caching url. the JSON is written by hand, so the engine needs no library for it.
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/20
+ */
+
+final class HttpProxyCacheAdmin {
+
+    private final HttpProxyCacheConfig mCacheConfig;
+
+    private final Map<String, HttpProxyCacheClient> mClientMap;
+
+    HttpProxyCacheAdmin(HttpProxyCacheConfig config, Map<String, HttpProxyCacheClient> clientMap) {
+        this.mCacheConfig = config;
+        this.mClientMap = clientMap;
+    }
+
+    /**
+     * @return <code>true</code> if the url is an admin path and the admin paths are enabled
+     */
+    boolean isAdminRequest(String url) {
+        return mCacheConfig.isAdminEnabled() && (Constants.STATS.equals(url) || Constants.DEBUG.equals(url));
+    }
+
+    /**
+     * @param url the admin path
+     * @return the whole response with header
+     */
+    byte[] respond(String url) throws HttpProxyCacheException {
+        try {
+            StringBuilder json = new StringBuilder(1024);
+            if (Constants.STATS.equals(url)) {
+                appendStats(json);
+            } else {
+                appendDebug(json);
+            }
+            byte[] body = json.append('\n').toString().getBytes(Constants.CHARSET);
+            String header = "HTTP/1.1 200 OK\r\n"
+                    + "Content-Type: application/json; charset=utf-8\r\n"
+                    + "Content-Length: " + body.length + "\r\n"
+                    + "Cache-Control: no-cache\r\n"
+                    + "\r\n";
+            byte[] headerBytes = header.getBytes(Constants.CHARSET);
+            byte[] response = new byte[headerBytes.length + body.length];
+            System.arraycopy(headerBytes, 0, response, 0, headerBytes.length);
+            System.arraycopy(body, 0, response, headerBytes.length, body.length);
+            return response;
+        } catch (UnsupportedEncodingException e) {
+            throw new HttpProxyCacheException(e);
+        }
+    }
+
+    private void appendStats(StringBuilder json) {
+        HttpProxyCacheStats stats = mCacheConfig.getStats();
+        HttpProxyCacheBufferPool bufferPool = mCacheConfig.getBufferPool();
+        json.append('{');
+        appendField(json, "hitCount", stats.getHitCount()).append(',');
+        appendField(json, "partialHitCount", stats.getPartialHitCount()).append(',');
+        appendField(json, "missCount", stats.getMissCount()).append(',');
+        appendField(json, "cachedUrlCount", stats.getCachedUrlCount()).append(',');
+        appendName(json, "hitRatio").append(String.format(Locale.US, "%.4f", stats.getHitRatio())).append(',');
+        appendField(json, "diskBytes", stats.getDiskBytes()).append(',');
+        appendField(json, "passThroughBytes", stats.getPassThroughBytes()).append(',');
+        appendField(json, "originBytes", stats.getOriginBytes()).append(',');
+        appendField(json, "upstreamCount", stats.getUpstreamCount()).append(',');
+        appendField(json, "upstreamFailureCount", stats.getUpstreamFailureCount()).append(',');
+        appendField(json, "activeSockets", stats.getActiveSockets()).append(',');
+        appendField(json, "activeDownloads", stats.getActiveDownloads()).append(',');
+        appendName(json, "ttfb");
+        appendHistogram(json, stats.getTtfbHistogram()).append(',');
+        appendName(json, "upstream");
+        appendHistogram(json, stats.getUpstreamHistogram()).append(',');
+        appendName(json, "bufferPool").append('{');
+        appendField(json, "hitCount", bufferPool.getHitCount()).append(',');
+        appendField(json, "missCount", bufferPool.getMissCount()).append("},");
+        appendDiskIndex(json);
+        json.append('}');
+    }
+
+    private void appendDebug(StringBuilder json) {
+        json.append('{');
+        appendName(json, "clients").append('[');
+        boolean first = true;
+        for (Map.Entry<String, HttpProxyCacheClient> entry : mClientMap.entrySet()) {
+            HttpProxyCacheEngine cacheEngine = entry.getValue().getEngine();
+            if (null == cacheEngine) {
+                continue;
+            }
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            appendClient(json, entry.getKey(), entry.getValue(), cacheEngine);
+        }
+        json.append("],");
+        appendDiskIndex(json);
+        json.append('}');
+    }
+
+    private void appendClient(StringBuilder json, String url, HttpProxyCacheClient client, HttpProxyCacheEngine cacheEngine) {
+        long cachedLength;
+        long totalLength;
+        try {
+            cachedLength = cacheEngine.getCachedLength();
+            totalLength = cacheEngine.getTotalLength();
+        } catch (HttpProxyCacheException e) {
+            cachedLength = -1;
+            totalLength = -1;
+        }
+        json.append('{');
+        appendName(json, "url");
+        appendString(json, url).append(',');
+        appendName(json, "file");
+        appendString(json, mCacheConfig.generateCacheFile(url).getName()).append(',');
+        appendName(json, "completed").append(cacheEngine.isCompleted()).append(',');
+        appendName(json, "idle").append(client.isIdle()).append(',');
+        appendField(json, "generation", cacheEngine.getGeneration()).append(',');
+        appendField(json, "cachedLength", cachedLength).append(',');
+        appendField(json, "totalLength", totalLength).append(',');
+        appendName(json, "downloads").append('[');
+        boolean first = true;
+        for (long[] download : cacheEngine.getDownloads()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append('{');
+            appendField(json, "start", download[0]).append(',');
+            appendField(json, "position", download[1]).append(',');
+            appendField(json, "end", download[2]).append(',');
+            appendField(json, "bytesPerSecond", download[3]).append('}');
+        }
+        json.append("]}");
+    }
+
+    private void appendDiskIndex(StringBuilder json) {
+        HttpProxyCacheStats stats = mCacheConfig.getStats();
+        HttpProxyCacheDiskIndex diskIndex = mCacheConfig.getDiskIndex();
+        appendName(json, "diskIndex").append('{');
+        appendField(json, "fileCount", diskIndex.getFileCount()).append(',');
+        appendField(json, "totalSize", diskIndex.getTotalSize()).append(',');
+        appendField(json, "evictionCount", stats.getEvictionCount()).append(',');
+        appendField(json, "evictionBytes", stats.getEvictionBytes()).append('}');
+    }
+
+    /**
+     * the buckets are written as <code>{"le": bound, "count": count}</code>, the bound of the last one is <code>null</code>
+     */
+    private static StringBuilder appendHistogram(StringBuilder json, HttpProxyCacheStats.Histogram histogram) {
+        json.append('{');
+        appendField(json, "count", histogram.getCount()).append(',');
+        appendName(json, "mean").append(String.format(Locale.US, "%.3f", histogram.getMean())).append(',');
+        appendField(json, "p50", histogram.getPercentile(50)).append(',');
+        appendField(json, "p90", histogram.getPercentile(90)).append(',');
+        appendField(json, "p99", histogram.getPercentile(99)).append(',');
+        appendName(json, "buckets").append('[');
+        for (int i = 0; i < histogram.getBucketCount(); i++) {
+            long bound = histogram.getBound(i);
+            json.append(0 == i ? "{" : ",{");
+            appendName(json, "le").append(Long.MAX_VALUE == bound ? "null" : String.valueOf(bound)).append(',');
+            appendField(json, "count", histogram.getBucket(i)).append('}');
+        }
+        return json.append("]}");
+    }
+
+    private static StringBuilder appendField(StringBuilder json, String name, long value) {
+        return appendName(json, name).append(value);
+    }
+
+    private static StringBuilder appendName(StringBuilder json, String name) {
+        return appendString(json, name).append(':');
+    }
+
+    /**
+     * quote the value and escape the characters which aren't allowed in a JSON string, see RFC 8259 section 7
+     */
+    private static StringBuilder appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ('"' == c || '\\' == c) {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format(Locale.US, "\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"');
+    }
+}
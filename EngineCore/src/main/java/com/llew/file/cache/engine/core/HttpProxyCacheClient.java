@@ -0,0 +1,164 @@
+package com.llew.file.cache.engine.core;
+
+import com.llew.file.cache.engine.config.HttpProxyCacheConfig;
+import com.llew.file.cache.engine.exception.HttpProxyCacheException;
+import com.llew.file.cache.engine.utils.Logger;
+
+import java.net.Socket;
+import java.nio.channels.WritableByteChannel;
+
+import static com.llew.file.cache.engine.utils.Preconditions.checkNotNull;
+
+/**
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2017/12/28
+ */
+
+class HttpProxyCacheClient {
+
+    /**
+     * the number of players and preloads which are using this client
+     */
+    private int mClientCount;
+
+    private boolean isShutdown;
+
+    private volatile HttpProxyCacheEngine mCacheEngine;
+    private HttpProxyCacheConfig mCacheConfig;
+    private String mUrl;
+
+    /**
+     * the engine is created by the first {@link #acquire()}, so a client which is never used opens no file
+     */
+    HttpProxyCacheClient(HttpProxyCacheConfig cacheConfig, String url) {
+        this.mUrl = checkNotNull(url);
+        this.mCacheConfig = checkNotNull(cacheConfig);
+    }
+
+    /**
+     * hold this client until {@link #release()}, an idle client may be shut down by a preload
+     *
+     * @return <code>false</code> if this client has shut down, the caller should use a new one
+     */
+    synchronized boolean acquire() throws HttpProxyCacheException {
+        if (isShutdown) {
+            return false;
+        }
+        if (null == mCacheEngine) {
+            mCacheEngine = new HttpProxyCacheEngine(mCacheConfig, mUrl);
+        }
+        mClientCount++;
+        Logger.e("client proxy  count  =  " + mClientCount);
+        return true;
+    }
+
+    synchronized void release() {
+        if (mClientCount > 0) {
+            mClientCount--;
+        }
+    }
+
+    /**
+     * release this client and shut it down if nobody holds it any more
+     *
+     * @return <code>true</code> if this client has shut down
+     */
+    synchronized boolean releaseAndShutdownIfIdle() {
+        release();
+        if (0 == mClientCount && !isShutdown) {
+            shutdown();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return <code>true</code> if the socket can serve the next request
+     */
+    boolean processRequest(final HttpProxyCacheRequest request, final Socket socket) throws HttpProxyCacheException {
+        Logger.e("client start  process...");
+        boolean keepAlive = getEngineOrThrow().process(request, socket);
+        Logger.e("client finish process...");
+        return keepAlive;
+    }
+
+    HttpProxyCacheResponse prepareRequest(final HttpProxyCacheRequest request) throws HttpProxyCacheException {
+        return getEngineOrThrow().prepare(request);
+    }
+
+    void preload(HttpProxyCachePreloader.PreloadTask task) throws HttpProxyCacheException {
+        getEngineOrThrow().preload(task);
+    }
+
+    /**
+     * @return <code>true</code> if no player or preload is using this client
+     */
+    synchronized boolean isIdle() {
+        return 0 == mClientCount;
+    }
+
+    long available(long offset, long end) throws HttpProxyCacheException {
+        HttpProxyCacheEngine cacheEngine = mCacheEngine;
+        return null == cacheEngine ? -1 : cacheEngine.available(offset, end);
+    }
+
+    /**
+     * @return the generation of cached file, <code>-1</code> if the engine has shutdown
+     */
+    int getGeneration() {
+        HttpProxyCacheEngine cacheEngine = mCacheEngine;
+        return null == cacheEngine ? -1 : cacheEngine.getGeneration();
+    }
+
+    long transferTo(long offset, long count, WritableByteChannel target) throws HttpProxyCacheException {
+        HttpProxyCacheEngine cacheEngine = mCacheEngine;
+        return null == cacheEngine ? 0 : cacheEngine.transferTo(offset, count, target);
+    }
+
+    /**
+     * @return the ticket of {@link HttpProxyCacheEngine#getWakeCount()}, <code>-1</code> if the engine has shutdown
+     */
+    int getWakeCount() {
+        HttpProxyCacheEngine cacheEngine = mCacheEngine;
+        return null == cacheEngine ? -1 : cacheEngine.getWakeCount();
+    }
+
+    /**
+     * run the waiter once new bytes are cached, at once if the engine has shutdown
+     */
+    void addWaiter(int ticket, Runnable waiter) {
+        HttpProxyCacheEngine cacheEngine = mCacheEngine;
+        if (null == cacheEngine) {
+            waiter.run();
+        } else {
+            cacheEngine.addWaiter(ticket, waiter);
+        }
+    }
+
+    /**
+     * @return the engine of url, <code>null</code> if it hasn't been acquired or has shutdown
+     */
+    HttpProxyCacheEngine getEngine() {
+        return mCacheEngine;
+    }
+
+    private HttpProxyCacheEngine getEngineOrThrow() throws HttpProxyCacheException {
+        HttpProxyCacheEngine cacheEngine = mCacheEngine;
+        if (null == cacheEngine) {
+            throw new HttpProxyCacheException("client of " + mUrl + " has shutdown");
+        }
+        return cacheEngine;
+    }
+
+    synchronized void shutdown() {
+        isShutdown = true;
+        if (null != mCacheEngine) {
+            Logger.e("client shutdown engine start...");
+            mCacheEngine.shutdown();
+            Logger.e("client shutdown engine stop ...");
+        }
+        mCacheEngine = null;
+    }
+}
@@ -0,0 +1,1204 @@
+package com.llew.file.cache.engine.core;
+
+import com.llew.file.cache.engine.config.BaseHttpProxyCacheSink;
+import com.llew.file.cache.engine.config.BaseHttpProxyCacheSource;
+import com.llew.file.cache.engine.config.HttpProxyCacheConfig;
+import com.llew.file.cache.engine.exception.HttpProxyCacheException;
+import com.llew.file.cache.engine.exception.HttpProxyCacheRangeIgnoredException;
+import com.llew.file.cache.engine.exception.HttpProxyCacheSourceChangedException;
+import com.llew.file.cache.engine.info.HttpProxyCacheSourceInfo;
+import com.llew.file.cache.engine.manager.HttpProxyCacheBufferPool;
+import com.llew.file.cache.engine.manager.HttpProxyCacheStats;
+import com.llew.file.cache.engine.utils.Constants;
+import com.llew.file.cache.engine.utils.FileUtils;
+import com.llew.file.cache.engine.utils.Logger;
+import com.llew.file.cache.engine.utils.TextUtils;
+
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.Socket;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import static com.llew.file.cache.engine.utils.Preconditions.checkNotNull;
+
+/**
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2017/12/29
+ */
+
+class HttpProxyCacheEngine {
+
+    private static final long WAIT_INTERVAL = 1000;
+
+    /**
+     * a request ahead of the download following playback waits for it if it is within this distance
+     */
+    private static final long MAX_WAIT_DISTANCE = 1024 * 1024;
+
+    private static final String MULTIPART_BOUNDARY = "CACHE_ENGINE_BYTE_RANGES";
+    private static final String MULTIPART_END = "\r\n--" + MULTIPART_BOUNDARY + "--\r\n";
+
+    private final String mUrl;
+    private final HttpProxyCacheConfig mCacheConfig;
+
+    /**
+     * guards the running downloads, readers wait on it until the bytes they need are written
+     */
+    private final Object mCacheLock = new Object();
+
+    /**
+     * the running downloads, each one fills a hole of the sparse cached file
+     */
+    private final List<CacheContentRunnable> mCacheRunnables = new ArrayList<>();
+
+    /**
+     * the readers which don't block on {@link #mCacheLock}, each one runs once at the next wake up, guarded by the lock
+     */
+    private final List<Runnable> mWaiters = new ArrayList<>();
+
+    /**
+     * increased by every wake up of readers, guarded by {@link #mCacheLock}
+     */
+    private int mWakeCount;
+
+    private volatile boolean isFileSizeValid;
+
+    /**
+     * cleared once the source has ignored a range, then the file is cached by one download which reads the source
+     * from the beginning, see {@link #openSource(BaseHttpProxyCacheSource, long, long, byte[])}
+     */
+    private volatile boolean isRangeSupported = true;
+    private volatile boolean isShutdownCalled;
+
+    /**
+     * increased when the cached file is discarded because the source has changed, the responses and downloads
+     * of an older generation stop, so the bytes of two versions are never combined
+     */
+    private volatile int mGeneration;
+
+    /**
+     * guards the check of generation and the write of a download
+     */
+    private final Object mWriteLock = new Object();
+    private final Object mRevalidateLock = new Object();
+
+    private int mFailureCount;
+
+    /**
+     * released by {@link #destroyResourcesIfNecessary()}, read each of them into a local once
+     */
+    private volatile BaseHttpProxyCacheSink mCacheSink;
+    private volatile BaseHttpProxyCacheSource mCacheSource;
+
+
+    HttpProxyCacheEngine(HttpProxyCacheConfig config, String url) throws HttpProxyCacheException {
+        this.mUrl = checkNotNull(url);
+        this.mCacheConfig = checkNotNull(config);
+        this.mCacheSource = mCacheConfig.newCacheSource();
+        this.mCacheSink = mCacheConfig.newCacheSink();
+        this.mCacheSource.init(config, url);
+        this.mCacheSink.init(config, url);
+    }
+
+    /**
+     * @return <code>true</code> if the whole response has written and the socket can serve the next request
+     */
+    boolean process(final HttpProxyCacheRequest request, final Socket socket) throws HttpProxyCacheException {
+        try {
+            final long requestTime = System.nanoTime();
+            final BaseHttpProxyCacheSink cacheSink = getCacheSink();
+            revalidateIfNecessary(cacheSink);
+            final int generation = mGeneration;
+            final boolean completed = cacheSink.isCompleted();
+            final long cachedBytes = cacheSink.available();
+            // the header is written at once and the body in large chunks, so the stream isn't buffered
+            OutputStream outputStream = socket.getOutputStream();
+            WritableByteChannel channel = socket.getChannel();
+            HttpProxyCacheSourceInfo sourceInfo = getStorageSourceInfo(cacheSink, request);
+            isFileSizeValid = isFileSizeValid();
+            long realLength = getRealLength(cacheSink, sourceInfo);
+            List<long[]> ranges = request.getRanges(realLength);
+            if (!isFileSizeValid && null != ranges && ranges.size() > 1) {
+                // the source is passed through, only the first range can be served
+                ranges = ranges.subList(0, 1);
+            }
+            recordLookup(cacheSink, ranges, realLength, completed, cachedBytes);
+            long contentLength = getContentLength(ranges, realLength, sourceInfo.mime);
+            boolean keepAlive = isKeepAlive(request, contentLength);
+            String responseHeader = generateResponseHeader(ranges, realLength, sourceInfo.mime, contentLength, keepAlive);
+            outputStream.write(responseHeader.getBytes(Constants.CHARSET));
+
+            boolean responded = false;
+            if (null != ranges && ranges.isEmpty()) {
+                responded = true;
+            } else if (!isFileSizeValid) {
+                long end = getEnd(ranges, realLength);
+                responseWithSource(outputStream, getStart(ranges), realLength > 0 && end >= realLength ? -1 : end, requestTime);
+            } else if (null == ranges || 1 == ranges.size()) {
+                resetFailureCount();
+                long end = getEnd(ranges, realLength);
+                responded = responseWithCache(cacheSink, outputStream, channel, getStart(ranges), end, generation, requestTime) == end;
+            } else {
+                resetFailureCount();
+                responded = responseWithRanges(cacheSink, outputStream, channel, ranges, realLength, sourceInfo.mime, generation, requestTime);
+            }
+            outputStream.flush();
+            return keepAlive && responded;
+        } catch (Throwable e) {
+            throw new HttpProxyCacheException(e);
+        }
+    }
+
+    /**
+     * prepare a response that can be streamed from the cached file without blocking on the network,
+     * the missing parts of the file will be cached in background.
+     *
+     * @param request the request
+     * @return <code>null</code> if the request can't be served from cached file or asks for multiple ranges,
+     * then {@link #process(HttpProxyCacheRequest, Socket)} should be used instead
+     * @throws HttpProxyCacheException the error
+     */
+    HttpProxyCacheResponse prepare(HttpProxyCacheRequest request) throws HttpProxyCacheException {
+        try {
+            final BaseHttpProxyCacheSink cacheSink = getCacheSink();
+            revalidateIfNecessary(cacheSink);
+            final int generation = mGeneration;
+            final boolean completed = cacheSink.isCompleted();
+            final long cachedBytes = cacheSink.available();
+            HttpProxyCacheSourceInfo sourceInfo = getStorageSourceInfo(cacheSink, request);
+            isFileSizeValid = isFileSizeValid();
+            if (!isFileSizeValid) {
+                return null;
+            }
+            long realLength = getRealLength(cacheSink, sourceInfo);
+            List<long[]> ranges = request.getRanges(realLength);
+            if (null != ranges && ranges.size() > 1) {
+                return null;
+            }
+            recordLookup(cacheSink, ranges, realLength, completed, cachedBytes);
+            resetFailureCount();
+            long start = getStart(ranges);
+            if (null == ranges || !ranges.isEmpty()) {
+                // start caching from the offset before the response is written
+                available(start, getEnd(ranges, realLength));
+            }
+            long contentLength = getContentLength(ranges, realLength, sourceInfo.mime);
+            boolean keepAlive = isKeepAlive(request, contentLength);
+            String responseHeader = generateResponseHeader(ranges, realLength, sourceInfo.mime, contentLength, keepAlive);
+            return new HttpProxyCacheResponse(responseHeader.getBytes(Constants.CHARSET), start, contentLength, keepAlive, generation);
+        } catch (HttpProxyCacheException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new HttpProxyCacheException(e);
+        }
+    }
+
+    /**
+     * the number of bytes can be transferred from offset without waiting for the network,
+     * a download is started if the offset hasn't cached and no running download will reach it soon.
+     *
+     * @param offset the offset of cached file
+     * @param end    the end of requested bytes, the download stops there if it's before the end of file. -1 if the request is open
+     * @return <code>0</code> if data at offset is still caching, <code>-1</code> if no more data
+     * @throws HttpProxyCacheException the error
+     */
+    long available(long offset, long end) throws HttpProxyCacheException {
+        BaseHttpProxyCacheSink cacheSink = mCacheSink;
+        if (isShutdownCalled || null == cacheSink) {
+            return -1;
+        }
+        long cachedLength = cacheSink.available(offset);
+        if (cachedLength > 0) {
+            return cachedLength;
+        }
+        if (cacheSink.isCompleted()) {
+            return -1;
+        }
+        long length = getSourceLength();
+        if (length > 0 && offset >= length) {
+            return -1;
+        }
+        return cacheIfNecessary(cacheSink, offset, end) ? 0 : -1;
+    }
+
+    /**
+     * cache the beginning of the file in the caller thread, it stops once a player has started caching the url
+     *
+     * @param task the preload task which pauses while a player is streaming
+     * @throws HttpProxyCacheException the error
+     */
+    void preload(HttpProxyCachePreloader.PreloadTask task) throws HttpProxyCacheException {
+        BaseHttpProxyCacheSink cacheSink = mCacheSink;
+        if (isShutdownCalled || null == cacheSink || cacheSink.isCompleted() || !(isFileSizeValid = isFileSizeValid())) {
+            return;
+        }
+        long sourceLength = getSourceLength();
+        long end = task.mLength > 0 && (sourceLength <= 0 || task.mLength < sourceLength) ? task.mLength : -1;
+        long position = cacheSink.available(0);
+        if (end > 0 && position >= end) {
+            return;
+        }
+        final HttpProxyCacheBufferPool bufferPool = mCacheConfig.getBufferPool();
+        final HttpProxyCacheStats stats = mCacheConfig.getStats();
+        final byte[] buffer = bufferPool.obtain();
+        final int generation = mGeneration;
+        boolean endOfSource = false;
+        BaseHttpProxyCacheSource source = mCacheConfig.newCacheSource();
+        stats.onDownloadStarted();
+        try {
+            int readBytes;
+            source.init(mCacheConfig, mUrl);
+            openSource(source, position, end, buffer);
+            while (true) {
+                if (task.isPaused()) {
+                    // the buffered bytes of a paused preload are written, a player may wait for them
+                    flushQuietly(cacheSink);
+                }
+                if (!task.awaitTurn() || isCacheRunning()) {
+                    break;
+                }
+                if (-1 == (readBytes = source.read(buffer))) {
+                    endOfSource = true;
+                    break;
+                }
+                stats.onOriginBytes(readBytes);
+                if (!write(cacheSink, buffer, position, readBytes, generation)) {
+                    return;
+                }
+                position += readBytes;
+                synchronized (mCacheLock) {
+                    notifyReaders();
+                }
+                if ((end > 0 && position >= end) || cacheSink.available(position) > 0) {
+                    break;
+                }
+            }
+        } catch (HttpProxyCacheSourceChangedException e) {
+            Logger.e(e);
+            onSourceChanged(generation);
+            return;
+        } catch (InterruptedException e) {
+            throw new HttpProxyCacheException(e);
+        } finally {
+            FileUtils.closeQuietly(source);
+            flushQuietly(cacheSink);
+            bufferPool.recycle(buffer);
+            stats.onDownloadFinished();
+        }
+        sourceLength = getSourceLength();
+        if (!isCacheRunning() && (sourceLength > 0 ? cacheSink.available() >= sourceLength : endOfSource && end < 0 && cacheSink.available(0) >= position)) {
+            cacheSink.complete();
+        }
+    }
+
+    /**
+     * write the bytes of a download unless the cached file has been discarded since the download opened
+     *
+     * @return <code>false</code> if the download belongs to an older generation and should stop
+     */
+    private boolean write(BaseHttpProxyCacheSink cacheSink, byte[] buffer, long position, int length, int generation) throws HttpProxyCacheException {
+        synchronized (mWriteLock) {
+            if (generation != mGeneration) {
+                return false;
+            }
+            cacheSink.write(buffer, position, length);
+            return true;
+        }
+    }
+
+    /**
+     * open the source at the offset. once the source has ignored a range, it's opened without range
+     * and the bytes before the offset are skipped, so the bytes read are always the ones at the offset.
+     *
+     * @param buffer the buffer to skip the bytes
+     */
+    private void openSource(BaseHttpProxyCacheSource source, long offset, long end, byte[] buffer) throws HttpProxyCacheException {
+        if (isRangeSupported) {
+            try {
+                openSource(source, offset, end);
+                return;
+            } catch (HttpProxyCacheRangeIgnoredException e) {
+                Logger.e(e);
+                isRangeSupported = false;
+                FileUtils.closeQuietly(source);
+                source.init(mCacheConfig, mUrl);
+            }
+        }
+        openSource(source, 0, -1);
+        long skipped = 0;
+        byte[] skipBuffer = buffer;
+        while (skipped < offset) {
+            if (offset - skipped < skipBuffer.length) {
+                // the last read mustn't go beyond the offset
+                skipBuffer = new byte[(int) (offset - skipped)];
+            }
+            int readBytes = source.read(skipBuffer);
+            if (-1 == readBytes) {
+                throw new HttpProxyCacheException("source ended at " + skipped + " before the offset " + offset);
+            }
+            mCacheConfig.getStats().onOriginBytes(readBytes);
+            skipped += readBytes;
+        }
+    }
+
+    /**
+     * open the source and record how long it takes, see {@link HttpProxyCacheStats#getUpstreamHistogram()}
+     */
+    private void openSource(BaseHttpProxyCacheSource source, long offset, long end) throws HttpProxyCacheException {
+        final HttpProxyCacheStats stats = mCacheConfig.getStats();
+        final long startTime = System.nanoTime();
+        try {
+            source.open(offset, end);
+        } catch (HttpProxyCacheSourceChangedException e) {
+            // the connection has opened, it's the response that tells the change
+            stats.onUpstreamOpened(System.nanoTime() - startTime);
+            throw e;
+        } catch (HttpProxyCacheException e) {
+            stats.onUpstreamFailed();
+            throw e;
+        }
+        stats.onUpstreamOpened(System.nanoTime() - startTime);
+    }
+
+    /**
+     * count the request as a hit, a partial hit or a miss by the bytes cached when it arrived
+     *
+     * @param completed   the cached file had completed when the request arrived
+     * @param cachedBytes the number of bytes had cached when the request arrived
+     */
+    private void recordLookup(BaseHttpProxyCacheSink cacheSink, List<long[]> ranges, long realLength, boolean completed, long cachedBytes) throws HttpProxyCacheException {
+        final HttpProxyCacheStats stats = mCacheConfig.getStats();
+        if (null != ranges && ranges.isEmpty()) {
+            return;
+        }
+        if (completed) {
+            stats.onHit();
+            return;
+        }
+        if (!isFileSizeValid || cachedBytes <= 0) {
+            stats.onMiss();
+            return;
+        }
+        boolean hit = true;
+        boolean missed = true;
+        List<long[]> requested = null != ranges ? ranges : Collections.singletonList(new long[]{0, realLength > 0 ? realLength : -1});
+        for (long[] range : requested) {
+            long cachedLength = cacheSink.available(range[0]);
+            hit &= range[1] >= 0 && range[0] + cachedLength >= range[1];
+            missed &= 0 == cachedLength;
+        }
+        if (hit) {
+            stats.onHit();
+        } else if (missed) {
+            stats.onMiss();
+        } else {
+            stats.onPartialHit();
+        }
+    }
+
+    /**
+     * discard the cached file because the source has changed, the responses and downloads of the generation stop
+     *
+     * @param generation the generation which has found the change, nothing is done if it has been discarded
+     */
+    private void onSourceChanged(int generation) throws HttpProxyCacheException {
+        BaseHttpProxyCacheSink cacheSink = mCacheSink;
+        if (null == cacheSink) {
+            return;
+        }
+        synchronized (mWriteLock) {
+            if (generation != mGeneration) {
+                return;
+            }
+            mGeneration++;
+            cacheSink.reset();
+        }
+        synchronized (mCacheLock) {
+            mFailureCount = 0;
+            notifyReaders();
+        }
+    }
+
+    /**
+     * ask the source whether a completed file has changed once its validators have expired,
+     * see {@link HttpProxyCacheConfig#getRevalidateInterval()}. the cached file is still used if the source can't tell.
+     */
+    private void revalidateIfNecessary(BaseHttpProxyCacheSink cacheSink) throws HttpProxyCacheException {
+        final long interval = mCacheConfig.getRevalidateInterval();
+        if (interval <= 0 || !cacheSink.isCompleted()) {
+            return;
+        }
+        synchronized (mRevalidateLock) {
+            HttpProxyCacheSourceInfo sourceInfo = mCacheConfig.getCacheStorage().get(mUrl);
+            if (null == sourceInfo || !sourceInfo.isExpired(interval)) {
+                return;
+            }
+            final int generation = mGeneration;
+            BaseHttpProxyCacheSource source = mCacheConfig.newCacheSource();
+            final HttpProxyCacheStats stats = mCacheConfig.getStats();
+            final long startTime = System.nanoTime();
+            try {
+                source.init(mCacheConfig, mUrl);
+                boolean unchanged = source.revalidate();
+                stats.onUpstreamOpened(System.nanoTime() - startTime);
+                if (!unchanged) {
+                    onSourceChanged(generation);
+                }
+            } catch (HttpProxyCacheException e) {
+                Logger.e(e);
+                stats.onUpstreamFailed();
+            } finally {
+                FileUtils.closeQuietly(source);
+            }
+        }
+    }
+
+    int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * @return the number of bytes has cached, <code>-1</code> if the engine has shutdown
+     */
+    long getCachedLength() throws HttpProxyCacheException {
+        BaseHttpProxyCacheSink cacheSink = mCacheSink;
+        return null == cacheSink ? -1 : cacheSink.available();
+    }
+
+    /**
+     * @return the length of source, <code>-1</code> if unknown
+     */
+    long getTotalLength() throws HttpProxyCacheException {
+        return getSourceLength();
+    }
+
+    boolean isCompleted() {
+        BaseHttpProxyCacheSink cacheSink = mCacheSink;
+        return null != cacheSink && cacheSink.isCompleted();
+    }
+
+    /**
+     * @return the running downloads, each one is <code>{start, position, end, bytes per second}</code>,
+     * the end is <code>-1</code> for the download which follows playback
+     */
+    List<long[]> getDownloads() {
+        final long nowTime = System.nanoTime();
+        List<long[]> downloads = new ArrayList<>();
+        synchronized (mCacheLock) {
+            for (CacheContentRunnable runnable : mCacheRunnables) {
+                downloads.add(new long[]{runnable.mStart, runnable.mPosition, runnable.isRanged ? runnable.mEnd : -1, runnable.getRate(nowTime)});
+            }
+        }
+        return downloads;
+    }
+
+    /**
+     * write the buffered bytes of a stopped download and wake up the readers waiting for them
+     */
+    private void flushQuietly(BaseHttpProxyCacheSink cacheSink) {
+        try {
+            cacheSink.flush();
+        } catch (Throwable e) {
+            Logger.e(e);
+        }
+        synchronized (mCacheLock) {
+            notifyReaders();
+        }
+    }
+
+    private boolean isCacheRunning() {
+        synchronized (mCacheLock) {
+            return !mCacheRunnables.isEmpty();
+        }
+    }
+
+    long transferTo(long offset, long count, WritableByteChannel target) throws HttpProxyCacheException {
+        BaseHttpProxyCacheSink cacheSink = mCacheSink;
+        return isShutdownCalled || null == cacheSink ? 0 : cacheSink.transferTo(offset, count, target);
+    }
+
+    private boolean isFileSizeValid() throws HttpProxyCacheException {
+        HttpProxyCacheSourceInfo sourceInfo = mCacheConfig.getCacheStorage().get(mUrl);
+        return null == sourceInfo || sourceInfo.length < 0 || sourceInfo.length <= mCacheConfig.getMaxFileSize();
+    }
+
+    private long getSourceLength() throws HttpProxyCacheException {
+        HttpProxyCacheSourceInfo sourceInfo = mCacheConfig.getCacheStorage().get(mUrl);
+        return null == sourceInfo ? -1 : sourceInfo.length;
+    }
+
+    private void resetFailureCount() {
+        synchronized (mCacheLock) {
+            mFailureCount = 0;
+        }
+    }
+
+    /**
+     * @param requestEnd  the end of body, -1 if unknown
+     * @param generation  the generation of cached file when the header was generated
+     * @param requestTime the time when the request arrived, <code>0</code> if its first byte has responded
+     * @return the position after the last written byte
+     */
+    private long responseWithCache(BaseHttpProxyCacheSink cacheSink, OutputStream outputStream, WritableByteChannel channel, long offset, long requestEnd, int generation, long requestTime) throws Exception {
+        Logger.e("engine read cached data start  and offset = " + offset);
+        final long end = requestEnd < 0 ? Long.MAX_VALUE : requestEnd;
+        final HttpProxyCacheStats stats = mCacheConfig.getStats();
+        final HttpProxyCacheBufferPool bufferPool = mCacheConfig.getBufferPool();
+        final byte[] buffer = null == channel ? bufferPool.obtain() : null;
+        long position = offset;
+        if (null != channel) {
+            outputStream.flush();
+        }
+        try {
+            while (!isShutdownCalled && position < end) {
+                long available = awaitAvailable(position, requestEnd);
+                if (generation != mGeneration) {
+                    throw new HttpProxyCacheException("source has changed while responding at " + position);
+                }
+                if (available < 0) {
+                    if (end != Long.MAX_VALUE) {
+                        throw new HttpProxyCacheException("cache stopped at " + position + " before the end " + end);
+                    }
+                    break;
+                }
+                long count = Math.min(available, end - position);
+                long readBytes;
+                if (null != channel) {
+                    readBytes = cacheSink.transferTo(position, Math.min(count, Constants.TRANSFER_SIZE), channel);
+                } else {
+                    readBytes = cacheSink.read(buffer, position, (int) Math.min(count, buffer.length));
+                    if (readBytes > 0) {
+                        outputStream.write(buffer, 0, (int) readBytes);
+                        outputStream.flush();
+                    }
+                }
+                if (readBytes <= 0) {
+                    break;
+                }
+                if (position == offset && requestTime > 0) {
+                    stats.onFirstByte(System.nanoTime() - requestTime);
+                }
+                stats.onDiskBytes(readBytes);
+                position += readBytes;
+            }
+        } finally {
+            bufferPool.recycle(buffer);
+        }
+        Logger.e("engine read cached data finish and offset = " + position);
+        return position;
+    }
+
+    /**
+     * write the parts of a multiple ranges response, see RFC 7233 Appendix A
+     *
+     * @return <code>true</code> if every part has written
+     */
+    private boolean responseWithRanges(BaseHttpProxyCacheSink cacheSink, OutputStream outputStream, WritableByteChannel channel, List<long[]> ranges, long realLength, String mime, int generation, long requestTime) throws Exception {
+        long time = requestTime;
+        for (long[] range : ranges) {
+            outputStream.write(generatePartHeader(range, realLength, mime));
+            if (responseWithCache(cacheSink, outputStream, channel, range[0], range[1], generation, time) != range[1]) {
+                return false;
+            }
+            time = 0;
+        }
+        outputStream.write(MULTIPART_END.getBytes(Constants.CHARSET));
+        return true;
+    }
+
+    private void responseWithSource(OutputStream outputStream, long offset, long end, long requestTime) throws Exception {
+        Logger.e("engine open new connection start...");
+        final HttpProxyCacheStats stats = mCacheConfig.getStats();
+        final HttpProxyCacheBufferPool bufferPool = mCacheConfig.getBufferPool();
+        final byte[] buffer = bufferPool.obtain();
+        BaseHttpProxyCacheSource source = mCacheConfig.newCacheSource();
+        try {
+            int readBytes;
+            boolean firstByte = true;
+            long remaining = end > 0 ? end - offset : Long.MAX_VALUE;
+            source.init(mCacheConfig, mUrl);
+            openSource(source, offset, end, buffer);
+            while (!isShutdownCalled && remaining > 0 && -1 != (readBytes = source.read(buffer))) {
+                // the source read without range goes on after the end
+                readBytes = (int) Math.min(readBytes, remaining);
+                remaining -= readBytes;
+                outputStream.write(buffer, 0, readBytes);
+                outputStream.flush();
+                if (firstByte && readBytes > 0) {
+                    firstByte = false;
+                    stats.onFirstByte(System.nanoTime() - requestTime);
+                }
+                stats.onOriginBytes(readBytes);
+                stats.onPassThroughBytes(readBytes);
+            }
+        } finally {
+            FileUtils.closeQuietly(source);
+            bufferPool.recycle(buffer);
+        }
+        Logger.e("engine open new connection  stop...");
+    }
+
+    private long awaitAvailable(long offset, long end) throws HttpProxyCacheException, InterruptedException {
+        synchronized (mCacheLock) {
+            long available;
+            while (0 == (available = available(offset, end))) {
+                mCacheLock.wait(WAIT_INTERVAL);
+            }
+            return available;
+        }
+    }
+
+    /**
+     * start a download at the first missing byte of the segment which contains the offset,
+     * unless a running download will reach the offset soon. the download of a closed range request stops
+     * at the segment which contains the end of range, and no parallel download is started for it. a sink
+     * which isn't sparse is downloaded by one connection from the end of its bytes.
+     *
+     * @return <code>false</code> if the offset can't be cached any more
+     */
+    private boolean cacheIfNecessary(BaseHttpProxyCacheSink cacheSink, long offset, long end) throws HttpProxyCacheException {
+        synchronized (mCacheLock) {
+            if (!isFileSizeValid) {
+                return false;
+            }
+            for (CacheContentRunnable runnable : mCacheRunnables) {
+                if (runnable.mStart <= offset && offset < runnable.getLimit()) {
+                    return true;
+                }
+            }
+            if (mFailureCount >= mCacheConfig.getMaxAttempts()) {
+                return false;
+            }
+            if (!isRangeSupported || !cacheSink.isSparse()) {
+                // the only download reads the source from the first missing byte, every reader waits for it
+                if (mCacheRunnables.isEmpty()) {
+                    long hole = findHole(cacheSink, 0, null);
+                    if (hole < 0) {
+                        return false;
+                    }
+                    startCacheRunnable(new CacheContentRunnable(cacheSink, hole, Long.MAX_VALUE, false));
+                }
+                return true;
+            }
+            long segmentStart = offset / Constants.SEGMENT_SIZE * Constants.SEGMENT_SIZE;
+            long start = segmentStart + cacheSink.available(segmentStart);
+            long length = getSourceLength();
+            if (end > 0 && (length <= 0 || end < length)) {
+                long rangeEnd = alignSegment(end);
+                startCacheRunnable(new CacheContentRunnable(cacheSink, start, length > 0 ? Math.min(rangeEnd, length) : rangeEnd, true));
+                return true;
+            }
+            startCacheRunnable(new CacheContentRunnable(cacheSink, start, Long.MAX_VALUE, false));
+            cacheRangesIfNecessary(cacheSink, offset);
+            return true;
+        }
+    }
+
+    /**
+     * fetch the ranges after the offset by the rest of the parallel connections
+     */
+    private void cacheRangesIfNecessary(BaseHttpProxyCacheSink cacheSink, long offset) throws HttpProxyCacheException {
+        final long length = getSourceLength();
+        if (length <= 0 || !isRangeSupported || !cacheSink.isSparse()) {
+            return;
+        }
+        while (mCacheRunnables.size() < mCacheConfig.getDownloadConnections()) {
+            long hole = findHole(cacheSink, offset, null);
+            if (hole < 0) {
+                break;
+            }
+            startCacheRunnable(new CacheContentRunnable(cacheSink, hole, getRangeEnd(hole), false));
+        }
+    }
+
+    private void startCacheRunnable(CacheContentRunnable runnable) {
+        mCacheRunnables.add(runnable);
+        mCacheConfig.getExecutorService().submit(runnable);
+    }
+
+    /**
+     * find the first missing byte from the offset which isn't going to be fetched by the running downloads,
+     * the search starts over from the beginning if nothing is missing after the offset.
+     * must be called with {@link #mCacheLock} held.
+     *
+     * @param exclude the download which is looking for a new range
+     * @return <code>-1</code> if every missing byte is going to be fetched
+     */
+    private long findHole(BaseHttpProxyCacheSink cacheSink, long offset, CacheContentRunnable exclude) throws HttpProxyCacheException {
+        final long length = getSourceLength();
+        final boolean parallel = mCacheConfig.getDownloadConnections() > 1 && cacheSink.isSparse();
+        long from = offset;
+        while (true) {
+            long hole = from;
+            boolean claimed = true;
+            while (claimed && (length <= 0 || hole < length)) {
+                claimed = false;
+                hole += cacheSink.available(hole);
+                for (CacheContentRunnable runnable : mCacheRunnables) {
+                    if (runnable != exclude && runnable.mStart <= hole && hole < runnable.getLimit()) {
+                        if (!parallel) {
+                            return -1;
+                        }
+                        hole = runnable.getLimit();
+                        claimed = true;
+                        break;
+                    }
+                }
+            }
+            if (length <= 0 || hole < length) {
+                return hole;
+            }
+            if (0 == from) {
+                return -1;
+            }
+            from = 0;
+        }
+    }
+
+    private long getRangeEnd(long start) {
+        return alignSegment(start + mCacheConfig.getDownloadSegmentSize());
+    }
+
+    private static long alignSegment(long offset) {
+        return (offset + Constants.SEGMENT_SIZE - 1) / Constants.SEGMENT_SIZE * Constants.SEGMENT_SIZE;
+    }
+
+    /**
+     * @param ranges the resolved ranges, see {@link HttpProxyCacheRequest#getRanges(long)}
+     */
+    private String generateResponseHeader(List<long[]> ranges, long realLength, String mime, long contentLength, boolean keepAlive) {
+        boolean partial = null != ranges;
+        boolean satisfiable = !partial || !ranges.isEmpty();
+        boolean multipart = partial && ranges.size() > 1;
+        boolean mimeKnow = !TextUtils.isEmpty(mime);
+        boolean lengthKnow = contentLength >= 0;
+        boolean addRange = partial && satisfiable && !multipart && (realLength > 0 || ranges.get(0)[1] >= 0);
+        StringBuilder header = new StringBuilder()
+                .append(!satisfiable ? "HTTP/1.1 416 RANGE NOT SATISFIABLE" : partial ? "HTTP/1.1 206 PARTIAL CONTENT" : "HTTP/1.1 200 OK").append("\r\n")
+                .append("Accept-Ranges: bytes").append("\r\n")
+                .append(  lengthKnow ? format("Content-Length: %d\r\n", contentLength) : "")
+                .append(    addRange ? format("Content-Range: %s\r\n", getContentRange(ranges.get(0), realLength)) : "")
+                .append(!satisfiable ? format("Content-Range: bytes */%d\r\n", realLength) : "")
+                .append(   multipart ? format("Content-Type: multipart/byteranges; boundary=%s\r\n", MULTIPART_BOUNDARY) : "")
+                .append(  !multipart && satisfiable && mimeKnow ? format("Content-Type: %s\r\n", mime) : "")
+                .append(   keepAlive ? "Connection: keep-alive\r\n" : "Connection: close\r\n")
+                .append("\r\n");
+        return header.toString();
+    }
+
+    private byte[] generatePartHeader(long[] range, long realLength, String mime) throws UnsupportedEncodingException {
+        StringBuilder header = new StringBuilder()
+                .append("\r\n--").append(MULTIPART_BOUNDARY).append("\r\n")
+                .append(!TextUtils.isEmpty(mime) ? format("Content-Type: %s\r\n", mime) : "")
+                .append(format("Content-Range: %s\r\n", getContentRange(range, realLength)))
+                .append("\r\n");
+        return header.toString().getBytes(Constants.CHARSET);
+    }
+
+    private String getContentRange(long[] range, long realLength) {
+        return format("bytes %d-%d/%s", range[0], range[1] - 1, realLength > 0 ? String.valueOf(realLength) : "*");
+    }
+
+    /**
+     * the connection can be kept only if the end of body is known by the player, the response from
+     * source is passed through without a reliable length, so its connection is always closed.
+     */
+    private boolean isKeepAlive(HttpProxyCacheRequest request, long contentLength) {
+        return request.keepAlive && isFileSizeValid && contentLength >= 0;
+    }
+
+    private long getRealLength(BaseHttpProxyCacheSink cacheSink, HttpProxyCacheSourceInfo sourceInfo) throws HttpProxyCacheException {
+        return cacheSink.isCompleted() ? cacheSink.available() : sourceInfo.length;
+    }
+
+    /**
+     * @return the length of body, -1 if unknown
+     */
+    private long getContentLength(List<long[]> ranges, long realLength, String mime) throws UnsupportedEncodingException {
+        if (null == ranges) {
+            return realLength > 0 ? realLength : -1;
+        }
+        if (ranges.isEmpty()) {
+            return 0;
+        }
+        if (1 == ranges.size()) {
+            long[] range = ranges.get(0);
+            return range[1] < 0 ? -1 : range[1] - range[0];
+        }
+        long length = MULTIPART_END.length();
+        for (long[] range : ranges) {
+            length += generatePartHeader(range, realLength, mime).length + range[1] - range[0];
+        }
+        return length;
+    }
+
+    private static long getStart(List<long[]> ranges) {
+        return null == ranges || ranges.isEmpty() ? 0 : ranges.get(0)[0];
+    }
+
+    /**
+     * @return the end of the first range, -1 if unknown
+     */
+    private static long getEnd(List<long[]> ranges, long realLength) {
+        if (null == ranges || ranges.isEmpty()) {
+            return realLength > 0 ? realLength : -1;
+        }
+        return ranges.get(0)[1];
+    }
+
+    private HttpProxyCacheSourceInfo getStorageSourceInfo(BaseHttpProxyCacheSink cacheSink, HttpProxyCacheRequest request) throws HttpProxyCacheException {
+        HttpProxyCacheSourceInfo sourceInfo = mCacheConfig.getCacheStorage().get(mUrl);
+        if (null == sourceInfo && !cacheSink.isCompleted()) {
+            sourceInfo = awaitSourceInfo(cacheSink, request);
+        }
+        if (null == sourceInfo) {
+            // the download can't tell, ask the source with a HEAD request
+            sourceInfo = getCacheSource().sourceInfo(mUrl);
+        }
+        return sourceInfo;
+    }
+
+    /**
+     * start the download for the request and wait until it has learned the length and mime from its response,
+     * so the first byte of an uncached file costs one round-trip to the source.
+     *
+     * @return <code>null</code> if the download can't tell, such as a suffix range or a failed download
+     */
+    private HttpProxyCacheSourceInfo awaitSourceInfo(BaseHttpProxyCacheSink cacheSink, HttpProxyCacheRequest request) throws HttpProxyCacheException {
+        long offset = 0;
+        long end = -1;
+        if (!request.ranges.isEmpty()) {
+            long[] range = request.ranges.get(0);
+            if (range[0] < 0) {
+                // the start of suffix range depends on the length
+                return null;
+            }
+            offset = range[0];
+            end = range[1] < 0 ? -1 : range[1] + 1;
+        }
+        try {
+            synchronized (mCacheLock) {
+                isFileSizeValid = true;
+                if (available(offset, end) != 0) {
+                    return null;
+                }
+                HttpProxyCacheSourceInfo sourceInfo;
+                while (null == (sourceInfo = mCacheConfig.getCacheStorage().get(mUrl)) && !isShutdownCalled && !mCacheRunnables.isEmpty()) {
+                    mCacheLock.wait(WAIT_INTERVAL);
+                }
+                if (null != sourceInfo && end < 0 && isFileSizeValid) {
+                    // the parallel downloads need the length
+                    cacheRangesIfNecessary(cacheSink, offset);
+                }
+                return sourceInfo;
+            }
+        } catch (InterruptedException e) {
+            throw new HttpProxyCacheException(e);
+        }
+    }
+
+    private String format(String pattern, Object... args) {
+        return String.format(Locale.US, pattern, args);
+    }
+
+    /**
+     * @return the ticket which {@link #addWaiter(int, Runnable)} compares, read it before checking the available bytes
+     */
+    int getWakeCount() {
+        synchronized (mCacheLock) {
+            return mWakeCount;
+        }
+    }
+
+    /**
+     * run the waiter once, when new bytes are cached, a download stops or the cached file is discarded.
+     * it runs at once if a wake up has happened since the ticket was taken, so no wake up is missed
+     *
+     * @param ticket the value of {@link #getWakeCount()} before the bytes were checked
+     * @param waiter the waiter which must not block, it runs while the lock is held
+     */
+    void addWaiter(int ticket, Runnable waiter) {
+        synchronized (mCacheLock) {
+            if (isShutdownCalled || ticket != mWakeCount) {
+                waiter.run();
+            } else {
+                mWaiters.add(waiter);
+            }
+        }
+    }
+
+    /**
+     * wake up the readers, the caller must hold {@link #mCacheLock}
+     */
+    private void notifyReaders() {
+        mWakeCount++;
+        mCacheLock.notifyAll();
+        if (!mWaiters.isEmpty()) {
+            List<Runnable> waiters = new ArrayList<>(mWaiters);
+            mWaiters.clear();
+            for (Runnable waiter : waiters) {
+                try {
+                    waiter.run();
+                } catch (Throwable e) {
+                    Logger.e(e);
+                }
+            }
+        }
+    }
+
+    void shutdown() {
+        isShutdownCalled = true;
+        synchronized (mCacheLock) {
+            notifyReaders();
+            if (!mCacheRunnables.isEmpty()) {
+                return;
+            }
+        }
+        destroyResourcesIfNecessary();
+    }
+
+    /**
+     * @throws HttpProxyCacheException if the engine has shut down and released its sink
+     */
+    private BaseHttpProxyCacheSink getCacheSink() throws HttpProxyCacheException {
+        BaseHttpProxyCacheSink cacheSink = mCacheSink;
+        if (null == cacheSink) {
+            throw new HttpProxyCacheException("engine of " + mUrl + " has shut down");
+        }
+        return cacheSink;
+    }
+
+    /**
+     * @throws HttpProxyCacheException if the engine has shut down and released its source
+     */
+    private BaseHttpProxyCacheSource getCacheSource() throws HttpProxyCacheException {
+        BaseHttpProxyCacheSource cacheSource = mCacheSource;
+        if (null == cacheSource) {
+            throw new HttpProxyCacheException("engine of " + mUrl + " has shut down");
+        }
+        return cacheSource;
+    }
+
+    private void destroyResourcesIfNecessary() {
+        if (isShutdownCalled) {
+            Logger.e("engine resources destroy start...");
+            FileUtils.closeQuietly(mCacheSource);
+            FileUtils.closeQuietly(mCacheSink);
+            mCacheSource = null;
+            mCacheSink = null;
+            Logger.e("engine resources destroy  stop...");
+        }
+    }
+
+    /**
+     * a download of the url, it writes to the sink at the real offset and wakes up every reader waiting for new bytes.
+     * it stops when running into cached bytes or the end of its range, and moves on to the next hole,
+     * so the whole file is cached in the end.
+     */
+    private class CacheContentRunnable implements Runnable {
+
+        private final BaseHttpProxyCacheSink mSink;
+        private final boolean isRanged;
+        private final boolean isBounded;
+        private volatile long mStart;
+        private volatile long mPosition;
+        private volatile long mEnd;
+
+        /**
+         * the time when the download started and the number of bytes it has written since then, see {@link #getRate(long)}
+         */
+        private volatile long mStartTime;
+        private volatile long mCachedBytes;
+
+        /**
+         * @param end     the end of range, {@link Long#MAX_VALUE} for the download which follows playback
+         * @param bounded the download is for a closed range request and stops at the end of range
+         */
+        CacheContentRunnable(BaseHttpProxyCacheSink sink, long start, long end, boolean bounded) {
+            this.mSink = sink;
+            this.isRanged = end != Long.MAX_VALUE;
+            this.isBounded = bounded;
+            this.mStart = start;
+            this.mPosition = start;
+            this.mEnd = end;
+        }
+
+        /**
+         * the bytes before the limit are going to be fetched by this download
+         */
+        long getLimit() {
+            return isRanged ? mEnd : alignSegment(mPosition + MAX_WAIT_DISTANCE);
+        }
+
+        /**
+         * @return the average bytes per second since the download started, <code>0</code> if it hasn't started
+         */
+        long getRate(long nowTime) {
+            long startTime = mStartTime;
+            return 0 == startTime || nowTime <= startTime ? 0 : mCachedBytes * 1000000000L / (nowTime - startTime);
+        }
+
+        @Override
+        public void run() {
+            final HttpProxyCacheBufferPool bufferPool = mCacheConfig.getBufferPool();
+            final byte[] buffer = bufferPool.obtain();
+            mCacheConfig.getStats().onDownloadStarted();
+            mStartTime = System.nanoTime();
+            try {
+                Logger.e("engine cache data  start and offset = " + mStart);
+                // the download stops with the last client, the cached bytes are kept for the next one
+                while (!isShutdownCalled) {
+                    final long start = mPosition;
+                    final int generation = mGeneration;
+                    boolean endOfSource;
+                    try {
+                        endOfSource = cacheRange(buffer, generation);
+                    } catch (HttpProxyCacheSourceChangedException e) {
+                        Logger.e(e);
+                        onSourceChanged(generation);
+                        if (!increaseFailureCount()) {
+                            break;
+                        }
+                        continue;
+                    }
+                    if (!isFileSizeValid) {
+                        break;
+                    }
+                    if (isCacheCompleted(endOfSource)) {
+                        mSink.complete();
+                        break;
+                    }
+                    if (start == mPosition && !increaseFailureCount()) {
+                        break;
+                    }
+                    if (!nextRange(endOfSource)) {
+                        break;
+                    }
+                }
+            } catch (Throwable e) {
+                Logger.e(e);
+                increaseFailureCount();
+            } finally {
+                bufferPool.recycle(buffer);
+                mCacheConfig.getStats().onDownloadFinished();
+                boolean destroy;
+                synchronized (mCacheLock) {
+                    mCacheRunnables.remove(this);
+                    destroy = mCacheRunnables.isEmpty();
+                    notifyReaders();
+                }
+                Logger.e("engine cache data finish and offset = " + mPosition);
+                if (destroy) {
+                    destroyResourcesIfNecessary();
+                }
+            }
+        }
+
+        /**
+         * download from the position until the end of source, the end of range, the cached bytes
+         * or the cached file of the generation is discarded
+         *
+         * @return <code>true</code> if the end of source has reached
+         */
+        private boolean cacheRange(byte[] buffer, int generation) throws HttpProxyCacheException {
+            final HttpProxyCacheStats stats = mCacheConfig.getStats();
+            BaseHttpProxyCacheSource source = mCacheConfig.newCacheSource();
+            try {
+                int readBytes;
+                long length = getSourceLength();
+                source.init(mCacheConfig, mUrl);
+                openSource(source, mPosition, isRanged && (length <= 0 || mEnd < length) ? mEnd : -1, buffer);
+                synchronized (mCacheLock) {
+                    // the response may be waiting for the length and mime learned by the source
+                    notifyReaders();
+                }
+                if (length <= 0 && !(isFileSizeValid = isFileSizeValid())) {
+                    // the file turns out to be too large, it's passed through instead
+                    return false;
+                }
+                while (!isShutdownCalled && -1 != (readBytes = source.read(buffer))) {
+                    stats.onOriginBytes(readBytes);
+                    if (!write(mSink, buffer, mPosition, readBytes, generation)) {
+                        return false;
+                    }
+                    synchronized (mCacheLock) {
+                        mPosition += readBytes;
+                        mCachedBytes += readBytes;
+                        mFailureCount = 0;
+                        notifyReaders();
+                    }
+                    if (mPosition >= mEnd || (isRangeSupported && mSink.available(mPosition) > 0)) {
+                        // a source without range support is read through, it can't be reopened at the next hole
+                        return false;
+                    }
+                }
+                // a download stopped by shutdown hasn't reached the end of source
+                return !isShutdownCalled;
+            } finally {
+                FileUtils.closeQuietly(source);
+                flushQuietly(mSink);
+            }
+        }
+
+        private boolean isCacheCompleted(boolean endOfSource) throws HttpProxyCacheException {
+            long length = getSourceLength();
+            if (length > 0) {
+                return mSink.available() >= length;
+            }
+            // the length is unknown, the file is completed if the end of source has reached from the beginning
+            return endOfSource && mSink.available(0) >= mPosition;
+        }
+
+        /**
+         * @return <code>false</code> if the download has failed too many times
+         */
+        private boolean increaseFailureCount() {
+            synchronized (mCacheLock) {
+                return ++mFailureCount < mCacheConfig.getMaxAttempts();
+            }
+        }
+
+        /**
+         * move to the next hole which isn't going to be filled by the other downloads
+         *
+         * @param endOfSource the end of source has reached
+         * @return <code>false</code> if there is nothing left to do for this download
+         */
+        private boolean nextRange(boolean endOfSource) throws HttpProxyCacheException {
+            if (isBounded && (endOfSource || mPosition >= mEnd)) {
+                return false;
+            }
+            if (isRanged && !isRangeSupported) {
+                // every range would read the source from the beginning again, the download following playback reads it through
+                return false;
+            }
+            long length = getSourceLength();
+            long from;
+            if (!endOfSource) {
+                from = mPosition;
+            } else if (length > 0) {
+                // the connection may be broken before the end, otherwise start over from the beginning
+                from = mPosition < length ? mPosition : 0;
+            } else {
+                return false;
+            }
+            synchronized (mCacheLock) {
+                long hole = findHole(mSink, from, this);
+                if (hole < 0 || (isBounded && (hole < from || hole >= mEnd))) {
+                    return false;
+                }
+                mStart = mPosition = hole;
+                if (isRanged && !isBounded) {
+                    mEnd = getRangeEnd(hole);
+                }
+                return true;
+            }
+        }
+    }
+}
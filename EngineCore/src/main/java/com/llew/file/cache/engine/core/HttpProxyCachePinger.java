@@ -0,0 +1,475 @@
+package com.llew.file.cache.engine.core;
+
+import com.llew.file.cache.engine.config.HttpProxyCacheCallback;
+import com.llew.file.cache.engine.config.HttpProxyCacheConfig;
+import com.llew.file.cache.engine.config.HttpProxyCacheSource;
+import com.llew.file.cache.engine.exception.HttpProxyCacheException;
+import com.llew.file.cache.engine.manager.HttpProxyCacheProxyInstaller;
+import com.llew.file.cache.engine.manager.HttpProxyCacheStats;
+import com.llew.file.cache.engine.utils.Constants;
+import com.llew.file.cache.engine.utils.FileUtils;
+import com.llew.file.cache.engine.utils.Logger;
+import com.llew.file.cache.engine.utils.TextUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ServerSocketChannel;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2017/12/28
+ */
+
+class HttpProxyCachePinger {
+
+    static final String PING_RESPONSE = "HTTP/1.1 200 OK\r\nContent-Length: " + Constants.PONG.length() + "\r\n\r\n" + Constants.PONG;
+
+    private final ConcurrentHashMap<String, HttpProxyCacheClient> mClientMap = new ConcurrentHashMap<>();
+
+    private ServerSocket mServerSocket;
+
+    private HttpProxyCacheSelector mCacheSelector;
+
+    private final HttpProxyCachePreloader mCachePreloader;
+
+    private final HttpProxyCacheAdmin mCacheAdmin;
+
+    private Future<?> mCacheFuture;
+
+    private final int mSocketPort;
+
+    private volatile boolean isServerRunning;
+
+    /**
+     * the blocking accept loop is alive
+     */
+    private volatile boolean isAccepting;
+
+    /**
+     * the result of last self-test, see {@link HttpProxyCacheConfig#getHealthCheckInterval()}
+     */
+    private volatile boolean isHealthy = true;
+
+    private Future<?> mHealthCheckFuture;
+
+    private HttpProxyCacheConfig mCacheConfig;
+
+    static HttpProxyCachePinger getPinger(HttpProxyCacheConfig config) throws HttpProxyCacheException {
+        return new HttpProxyCachePinger(config);
+    }
+
+    private HttpProxyCachePinger(HttpProxyCacheConfig config) throws HttpProxyCacheException {
+        try {
+            this.isServerRunning = true;
+            this.mCacheConfig = config;
+            this.mCachePreloader = new HttpProxyCachePreloader(this, config);
+            this.mCacheAdmin = new HttpProxyCacheAdmin(config, mClientMap);
+
+            InetAddress inetAddress = InetAddress.getByName(Constants.HOST);
+            CountDownLatch countDownLatch = new CountDownLatch(1);
+            Runnable serverRunnable;
+            // the server socket is backed by channel, so accepted sockets can be written by FileChannel.transferTo
+            ServerSocketChannel serverChannel = ServerSocketChannel.open();
+            this.mServerSocket = serverChannel.socket();
+            this.mServerSocket.bind(new InetSocketAddress(inetAddress, 0), 8);
+            if (config.isNioServerEnabled()) {
+                serverRunnable = this.mCacheSelector = new HttpProxyCacheSelector(this, config, serverChannel, countDownLatch);
+            } else {
+                serverRunnable = new HttpProxyServerRunnable(countDownLatch);
+            }
+            this.mSocketPort = mServerSocket.getLocalPort();
+            HttpProxyCacheProxyInstaller.install(Constants.HOST, mSocketPort);
+            this.mCacheFuture = mCacheConfig.getExecutorService().submit(serverRunnable);
+            countDownLatch.await();
+            if (config.getHealthCheckInterval() > 0) {
+                this.mHealthCheckFuture = mCacheConfig.getExecutorService().submit(new HealthCheckRunnable(config));
+            }
+            Logger.e("server launched successful...");
+        } catch (Throwable e) {
+            shutDown();
+            throw new HttpProxyCacheException(e);
+        }
+    }
+
+    void shutDown() {
+        try {
+            isServerRunning = false;
+            if (null != mCacheSelector) {
+                mCacheSelector.shutdown();
+            }
+            mCachePreloader.shutdown();
+            FileUtils.closeQuietly(mServerSocket);
+            if (null != mCacheFuture) {
+                mCacheFuture.cancel(true);
+            }
+            if (null != mHealthCheckFuture) {
+                mHealthCheckFuture.cancel(true);
+            }
+            if (null != mClientMap) {
+                Set<Map.Entry<String, HttpProxyCacheClient>> entrySet = mClientMap.entrySet();
+                for (Map.Entry<String, HttpProxyCacheClient> entry : entrySet) {
+                    if (null != entry && null != entry.getValue()) {
+                        entry.getValue().shutdown();
+                    }
+                }
+                mClientMap.clear();
+            }
+            mCacheConfig = null;
+            mCacheFuture = null;
+            mHealthCheckFuture = null;
+            mServerSocket = null;
+            mCacheSelector = null;
+        } catch (Throwable ignore) {
+        }
+    }
+
+    void destroy(String url) {
+        if (null != mClientMap && !TextUtils.isEmpty(url)) {
+            HttpProxyCacheClient client = mClientMap.remove(url);
+            if (null != client) {
+                client.shutdown();
+                client = null;
+            }
+        }
+    }
+
+    int getSocketPort() {
+        return mSocketPort;
+    }
+
+    /**
+     * get the client of url and hold it, the caller must {@link HttpProxyCacheClient#release()} it when done
+     */
+    HttpProxyCacheClient acquireClient(String url) throws HttpProxyCacheException {
+        while (true) {
+            HttpProxyCacheClient client = mClientMap.get(url);
+            if (null == client) {
+                HttpProxyCacheClient newClient = new HttpProxyCacheClient(mCacheConfig, url);
+                client = mClientMap.putIfAbsent(url, newClient);
+                if (null == client) {
+                    client = newClient;
+                } else {
+                    // another thread has put its client first
+                    newClient.shutdown();
+                }
+            }
+            if (client.acquire()) {
+                return client;
+            }
+            // the client has been shut down by a preload, replace it
+            mClientMap.remove(url, client);
+        }
+    }
+
+    boolean preload(String url, long length, int priority) {
+        return mCachePreloader.preload(url, length, priority);
+    }
+
+    void cancelPreload(String url) {
+        mCachePreloader.cancel(url);
+    }
+
+    /**
+     * preload by the client of url, the client is shut down if the preload has created it and nobody holds it at the end.
+     * the check and the shutdown are atomic to {@link HttpProxyCacheClient#acquire()}, so no player gets a dead client
+     */
+    void preload(HttpProxyCachePreloader.PreloadTask task) throws HttpProxyCacheException {
+        boolean created = !mClientMap.containsKey(task.mUrl);
+        HttpProxyCacheClient client = acquireClient(task.mUrl);
+        try {
+            client.preload(task);
+        } finally {
+            if (!created) {
+                client.release();
+            } else if (client.releaseAndShutdownIfIdle()) {
+                mClientMap.remove(task.mUrl, client);
+            }
+        }
+    }
+
+    void onForegroundStart() {
+        mCachePreloader.onForegroundStart();
+    }
+
+    void onForegroundFinish() {
+        mCachePreloader.onForegroundFinish();
+    }
+
+    boolean isPingRequest(String url) {
+        return Constants.PING.equals(url);
+    }
+
+    /**
+     * @return <code>true</code> if the url is an enabled admin path, see {@link HttpProxyCacheAdmin}
+     */
+    boolean isAdminRequest(String url) {
+        return mCacheAdmin.isAdminRequest(url);
+    }
+
+    byte[] getAdminResponse(String url) throws HttpProxyCacheException {
+        return mCacheAdmin.respond(url);
+    }
+
+    /**
+     * process the request parsed by the non-blocking server in blocking mode
+     *
+     * @param pending the bytes read after the request, they belong to the next pipelined request
+     */
+    void processRequest(Socket socket, HttpProxyCacheRequest request, byte[] pending) {
+        mCacheConfig.getExecutorService().submit(new HttpProxyCacheProcessor(socket, request, pending));
+    }
+
+    void notifyError(final String url, final Throwable e) {
+        if (null != mCacheConfig) {
+            final HttpProxyCacheCallback callback = mCacheConfig.getCacheCallback(url);
+            if (null != callback) {
+                mCacheConfig.getDispatcher().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.error(url, new HttpProxyCacheException(e));
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * check the server in process without a loopback request, it is cheap enough for every proxy url
+     *
+     * @return <code>true</code> if the server is accepting sockets and the last self-test has passed
+     */
+    boolean isAlive() {
+        ServerSocket serverSocket = mServerSocket;
+        HttpProxyCacheSelector cacheSelector = mCacheSelector;
+        boolean accepting = null != cacheSelector ? cacheSelector.isRunning() : isAccepting;
+        return isServerRunning && accepting && isHealthy && null != serverSocket && !serverSocket.isClosed();
+    }
+
+    boolean ping() {
+        if (null == mCacheConfig) return false;
+
+        int maxAttempts = mCacheConfig.getMaxAttempts();
+        int maxTimeouts = mCacheConfig.getMaxTimeouts();
+        int attempts = 0;
+        while (attempts < maxAttempts) {
+            Future<Boolean> pingFuture = mCacheConfig.getExecutorService().submit(new PingCallable());
+            try {
+                boolean pinged = pingFuture.get(maxTimeouts, TimeUnit.MILLISECONDS);
+                if (pinged) {
+                    return true;
+                }
+            } catch (Throwable ignore) {
+                Logger.e(ignore);
+            }
+            attempts++;
+            maxTimeouts *= 2;
+        }
+        return false;
+    }
+
+
+    private class HttpProxyServerRunnable implements Runnable {
+
+        private CountDownLatch mLatch;
+
+        HttpProxyServerRunnable(CountDownLatch latch) {
+            this.mLatch = latch;
+        }
+
+        @Override
+        public void run() {
+            isAccepting = true;
+            if (null != mLatch) {
+                mLatch.countDown();
+                mLatch = null;
+            }
+            Logger.e("server  start  launching  ...");
+            try {
+                acceptSocket();
+            } finally {
+                isAccepting = false;
+            }
+        }
+
+        private void acceptSocket() {
+            while (isServerRunning) {
+                ServerSocket serverSocket = mServerSocket;
+                if (null != serverSocket) {
+                    try {
+                        final Socket socket = serverSocket.accept();
+                        mCacheConfig.getExecutorService().submit(new HttpProxyCacheProcessor(socket));
+                    } catch (Throwable e) {
+                        Logger.e(e);
+                        if (serverSocket.isClosed()) {
+                            Logger.e("server socket is closed and quit loop");
+                            break;
+                        }
+                    }
+                } else {
+                    Logger.e("server socket is null and quit loop");
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * request the server over loopback periodically, so a server which accepts but can't respond is detected
+     */
+    private class HealthCheckRunnable implements Runnable {
+
+        private final long mInterval;
+
+        HealthCheckRunnable(HttpProxyCacheConfig config) {
+            this.mInterval = config.getHealthCheckInterval();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (isServerRunning) {
+                    Thread.sleep(mInterval);
+                    boolean healthy = ping();
+                    if (healthy != isHealthy) {
+                        Logger.e("server health changed, healthy = " + healthy);
+                    }
+                    isHealthy = healthy;
+                }
+            } catch (InterruptedException ignore) {
+                Logger.e("health check stopped");
+            }
+        }
+    }
+
+    private class PingCallable implements Callable<Boolean> {
+        @Override
+        public Boolean call() throws Exception {
+            return pingServer();
+        }
+
+        private boolean pingServer() throws HttpProxyCacheException {
+            final byte[] expectedResponse = Constants.PONG.getBytes();
+            final byte[] buffer = new byte[expectedResponse.length];
+            String pingUrl = getPingUrl();
+            HttpProxyCacheSource source = null;
+            try {
+                source = mCacheConfig.getCacheSource().clone(mCacheConfig);
+                source.init(mCacheConfig, pingUrl);
+                source.open();
+                source.read(buffer);
+                return Arrays.equals(expectedResponse, buffer);
+            } catch (Throwable e) {
+                Logger.e(e);
+            } finally {
+                FileUtils.closeQuietly(source);
+            }
+            return false;
+        }
+
+        private String getPingUrl() {
+            return String.format(Locale.US, "http://%s:%d/%s", Constants.HOST, mSocketPort, Constants.PING);
+        }
+    }
+
+
+    private class HttpProxyCacheProcessor implements Runnable {
+
+        private final Socket mSocket;
+        private final HttpProxyCacheStats mStats;
+        private HttpProxyCacheRequest mRequest;
+        private byte[] mPending;
+        private String mUrl;
+
+        HttpProxyCacheProcessor(Socket socket) {
+            this(socket, null, null);
+        }
+
+        HttpProxyCacheProcessor(Socket socket, HttpProxyCacheRequest request, byte[] pending) {
+            this.mSocket = socket;
+            this.mRequest = request;
+            this.mPending = pending;
+            this.mStats = mCacheConfig.getStats();
+        }
+
+        @Override
+        public void run() {
+            mStats.onSocketOpened();
+            try {
+                if (null != mSocket) {
+                    HttpProxyCacheRequest.Reader reader = null;
+                    HttpProxyCacheRequest request = mRequest;
+                    boolean keepAlive = true;
+                    while (keepAlive && isServerRunning) {
+                        if (null == request) {
+                            if (null == reader) {
+                                reader = new HttpProxyCacheRequest.Reader(mSocket.getInputStream(), mPending);
+                                mPending = null;
+                            }
+                            // an idle persistent connection shouldn't hold the thread forever
+                            mSocket.setSoTimeout(Constants.KEEP_ALIVE_TIMEOUT);
+                            request = reader.next();
+                            if (null == request) {
+                                break;
+                            }
+                        }
+                        Logger.e("new request accepted, and " + request);
+                        mUrl = request.url;
+                        if (isPingRequest(mUrl)) {
+                            responseToPing();
+                            keepAlive = request.keepAlive;
+                        } else if (isAdminRequest(mUrl)) {
+                            responseToAdmin(mUrl);
+                            keepAlive = request.keepAlive;
+                        } else {
+                            HttpProxyCacheClient client = acquireClient(mUrl);
+                            onForegroundStart();
+                            try {
+                                keepAlive = client.processRequest(request, mSocket);
+                            } finally {
+                                onForegroundFinish();
+                                client.release();
+                            }
+                        }
+                        request = null;
+                    }
+                }
+            } catch (SocketTimeoutException e) {
+                Logger.e("keep-alive connection timeout and close");
+            } catch (final Throwable e) {
+                Logger.e(e);
+                notifyError(mUrl, e);
+            } finally {
+                FileUtils.closeQuietly(mSocket);
+                mStats.onSocketClosed();
+            }
+        }
+
+        private void responseToPing() throws IOException {
+            OutputStream outputStream = mSocket.getOutputStream();
+            outputStream.write(PING_RESPONSE.getBytes());
+            outputStream.flush();
+        }
+
+        private void responseToAdmin(String url) throws IOException {
+            OutputStream outputStream = mSocket.getOutputStream();
+            outputStream.write(getAdminResponse(url));
+            outputStream.flush();
+        }
+    }
+}
\ No newline at end of file
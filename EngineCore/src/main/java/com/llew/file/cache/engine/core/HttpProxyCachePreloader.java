@@ -0,0 +1,199 @@
+package com.llew.file.cache.engine.core;
+
+import com.llew.file.cache.engine.config.HttpProxyCacheConfig;
+import com.llew.file.cache.engine.utils.Logger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * downloads the beginning of urls into cache before they are played. the urls are kept in a bounded queue
+ * ordered by priority and preloaded one by one, a preload pauses whenever a player is streaming from the proxy
+ * so the foreground playback always wins the bandwidth.
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/12
+ */
+
+class HttpProxyCachePreloader {
+
+    private final HttpProxyCachePinger mCachePinger;
+    private final HttpProxyCacheConfig mCacheConfig;
+
+    private final PriorityQueue<PreloadTask> mPendingTasks = new PriorityQueue<>();
+    private final Map<String, PreloadTask> mTasks = new HashMap<>();
+
+    private PreloadTask mRunningTask;
+    private int mForegroundCount;
+    private long mSequence;
+    private boolean isWorkerRunning;
+    private boolean isShutdownCalled;
+
+    HttpProxyCachePreloader(HttpProxyCachePinger pinger, HttpProxyCacheConfig config) {
+        this.mCachePinger = pinger;
+        this.mCacheConfig = config;
+    }
+
+    /**
+     * @return <code>false</code> if the queue is full of the tasks with higher priority
+     */
+    synchronized boolean preload(String url, long length, int priority) {
+        if (isShutdownCalled) {
+            return false;
+        }
+        PreloadTask task = mTasks.get(url);
+        if (null != task) {
+            if (task == mRunningTask) {
+                return true;
+            }
+            mPendingTasks.remove(task);
+            long mergedLength = length <= 0 || task.mLength <= 0 ? 0 : Math.max(length, task.mLength);
+            task = new PreloadTask(url, mergedLength, Math.max(priority, task.mPriority), task.mSequence);
+        } else {
+            if (mPendingTasks.size() >= mCacheConfig.getMaxPreloads()) {
+                PreloadTask lowest = null;
+                for (PreloadTask pendingTask : mPendingTasks) {
+                    if (null == lowest || pendingTask.compareTo(lowest) > 0) {
+                        lowest = pendingTask;
+                    }
+                }
+                if (null == lowest || lowest.mPriority >= priority) {
+                    Logger.e("preload queue is full, drop " + url);
+                    return false;
+                }
+                mPendingTasks.remove(lowest);
+                mTasks.remove(lowest.mUrl);
+            }
+            task = new PreloadTask(url, length, priority, mSequence++);
+        }
+        mPendingTasks.offer(task);
+        mTasks.put(url, task);
+        if (!isWorkerRunning) {
+            isWorkerRunning = true;
+            mCacheConfig.getExecutorService().submit(new PreloadRunnable());
+        }
+        return true;
+    }
+
+    synchronized void cancel(String url) {
+        PreloadTask task = mTasks.remove(url);
+        if (null != task) {
+            mPendingTasks.remove(task);
+            task.isCancelled = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * a player starts streaming from the proxy, the preload pauses until every player has finished
+     */
+    synchronized void onForegroundStart() {
+        mForegroundCount++;
+    }
+
+    synchronized void onForegroundFinish() {
+        if (mForegroundCount > 0 && 0 == --mForegroundCount) {
+            notifyAll();
+        }
+    }
+
+    synchronized void shutdown() {
+        isShutdownCalled = true;
+        for (PreloadTask task : mTasks.values()) {
+            task.isCancelled = true;
+        }
+        mTasks.clear();
+        mPendingTasks.clear();
+        notifyAll();
+    }
+
+    private synchronized PreloadTask nextTask() {
+        mRunningTask = mPendingTasks.poll();
+        if (null == mRunningTask) {
+            isWorkerRunning = false;
+        }
+        return mRunningTask;
+    }
+
+    private synchronized void finishTask(PreloadTask task) {
+        if (mTasks.get(task.mUrl) == task) {
+            mTasks.remove(task.mUrl);
+        }
+        mRunningTask = null;
+    }
+
+    class PreloadTask implements Comparable<PreloadTask> {
+
+        final String mUrl;
+        final long mLength;
+        final int mPriority;
+        final long mSequence;
+        volatile boolean isCancelled;
+
+        PreloadTask(String url, long length, int priority, long sequence) {
+            this.mUrl = url;
+            this.mLength = length;
+            this.mPriority = priority;
+            this.mSequence = sequence;
+        }
+
+        /**
+         * @return <code>true</code> if a player is streaming from the proxy, the preload waits for its turn then
+         */
+        boolean isPaused() {
+            synchronized (HttpProxyCachePreloader.this) {
+                return mForegroundCount > 0;
+            }
+        }
+
+        /**
+         * wait until no player is streaming from the proxy
+         *
+         * @return <code>false</code> if the preload has cancelled
+         */
+        boolean awaitTurn() throws InterruptedException {
+            synchronized (HttpProxyCachePreloader.this) {
+                while (!isCancelled && mForegroundCount > 0) {
+                    HttpProxyCachePreloader.this.wait();
+                }
+                return !isCancelled;
+            }
+        }
+
+        @Override
+        public int compareTo(PreloadTask another) {
+            if (mPriority != another.mPriority) {
+                return mPriority > another.mPriority ? -1 : 1;
+            }
+            return mSequence < another.mSequence ? -1 : mSequence == another.mSequence ? 0 : 1;
+        }
+
+        @Override
+        public String toString() {
+            return "PreloadTask = { url = " + mUrl + ", length = " + mLength + ", priority = " + mPriority + "}";
+        }
+    }
+
+    private class PreloadRunnable implements Runnable {
+
+        @Override
+        public void run() {
+            PreloadTask task;
+            while (null != (task = nextTask())) {
+                try {
+                    if (task.awaitTurn()) {
+                        Logger.e("preload start  " + task);
+                        mCachePinger.preload(task);
+                        Logger.e("preload finish " + task);
+                    }
+                } catch (Throwable e) {
+                    Logger.e(e);
+                } finally {
+                    finishTask(task);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package com.llew.file.cache.engine.core;
+
+import com.llew.file.cache.engine.exception.HttpProxyCacheException;
+import com.llew.file.cache.engine.utils.Constants;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * a request of the loopback server, the header is parsed at byte level without regex or intermediate strings,
+ * only the url is decoded into a string.
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2017/12/28
+ */
+
+class HttpProxyCacheRequest {
+
+    private static final byte[] METHOD_GET = ascii("GET /");
+    private static final byte[] VERSION_PREFIX = ascii("HTTP/");
+    private static final byte[] VERSION_1_0 = ascii("HTTP/1.0");
+    private static final byte[] RANGE_HEADER = ascii("range");
+    private static final byte[] CONNECTION_HEADER = ascii("connection");
+    private static final byte[] BYTES_UNIT = ascii("bytes=");
+    private static final byte[] CLOSE = ascii("close");
+    private static final byte[] KEEP_ALIVE = ascii("keep-alive");
+
+    private static final int CONNECTION_DEFAULT = 0;
+    private static final int CONNECTION_CLOSE = 1;
+    private static final int CONNECTION_KEEP_ALIVE = 2;
+
+    /**
+     * the value of an empty or invalid number in range spec
+     */
+    private static final long NUMBER_EMPTY = -1;
+    private static final long NUMBER_INVALID = -2;
+    private static final int MAX_NUMBER_LENGTH = 18;
+
+    final String url;
+    final boolean keepAlive;
+
+    /**
+     * the byte range specs in the order of request, <code>{first, last}</code> with the last byte inclusive,
+     * <code>last</code> is -1 for an open range and <code>{-1, suffixLength}</code> for a suffix range.
+     * empty if the request has no range or the range is invalid.
+     */
+    final List<long[]> ranges;
+
+    private HttpProxyCacheRequest(String url, List<long[]> ranges, boolean keepAlive) {
+        this.url = url;
+        this.ranges = ranges;
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * parse a request header, the path is percent-decoded in place so the bytes of header are modified.
+     *
+     * @param buffer the buffer which contains the whole header
+     * @param offset the start of header
+     * @param length the length of header including the empty line
+     * @return the request
+     * @throws IOException if the request is not a valid GET request
+     */
+    static HttpProxyCacheRequest parse(byte[] buffer, int offset, int length) throws IOException {
+        final int limit = offset + length;
+        int lineStart = offset;
+        // an empty line before the request line should be ignored, see RFC 7230 section 3.5
+        while (lineStart < limit && ('\r' == buffer[lineStart] || '\n' == buffer[lineStart])) {
+            lineStart++;
+        }
+        int lineEnd = indexOf(buffer, lineStart, limit, (byte) '\n');
+        int contentEnd = trimEnd(buffer, lineStart, lineEnd);
+        int pathStart = lineStart + METHOD_GET.length;
+        int pathEnd = lastIndexOf(buffer, pathStart, contentEnd, (byte) ' ');
+        if (!regionMatches(buffer, lineStart, contentEnd, METHOD_GET, false) || pathEnd < 0
+                || !regionMatches(buffer, pathEnd + 1, contentEnd, VERSION_PREFIX, false)) {
+            throw new HttpProxyCacheException("Invalid request `" + new String(buffer, offset, length, Constants.CHARSET) + "`: url not found!");
+        }
+        boolean http10 = contentEnd - pathEnd - 1 == VERSION_1_0.length && regionMatches(buffer, pathEnd + 1, contentEnd, VERSION_1_0, false);
+        String url = new String(buffer, pathStart, decode(buffer, pathStart, pathEnd), Constants.CHARSET);
+
+        List<long[]> ranges = Collections.emptyList();
+        int connection = CONNECTION_DEFAULT;
+        for (lineStart = lineEnd + 1; lineStart < limit; lineStart = lineEnd + 1) {
+            lineEnd = indexOf(buffer, lineStart, limit, (byte) '\n');
+            contentEnd = trimEnd(buffer, lineStart, lineEnd);
+            if (contentEnd == lineStart) {
+                break;
+            }
+            int colon = indexOf(buffer, lineStart, contentEnd, (byte) ':');
+            int valueStart = skipSpaces(buffer, colon + 1, contentEnd);
+            if (isHeader(buffer, lineStart, colon, RANGE_HEADER)) {
+                ranges = parseRanges(buffer, valueStart, contentEnd);
+            } else if (isHeader(buffer, lineStart, colon, CONNECTION_HEADER)) {
+                connection = parseConnection(buffer, valueStart, contentEnd);
+            }
+        }
+        // HTTP/1.1 connections are persistent unless `Connection: close`, HTTP/1.0 ones only if `Connection: keep-alive`
+        boolean keepAlive = http10 ? CONNECTION_KEEP_ALIVE == connection : CONNECTION_CLOSE != connection;
+        return new HttpProxyCacheRequest(url, ranges, keepAlive);
+    }
+
+    /**
+     * find the end of a request header in buffer
+     *
+     * @return the position after the empty line, <code>-1</code> if the header is incomplete
+     */
+    static int findHeaderEnd(byte[] buffer, int limit) {
+        return findHeaderEnd(buffer, 0, limit);
+    }
+
+    /**
+     * find the end of a request header in buffer, the bytes before the start have been scanned. a reader resumes
+     * from its previous limit minus 3, so an empty line split by the reads is still found
+     *
+     * @return the position after the empty line, <code>-1</code> if the header is incomplete
+     */
+    static int findHeaderEnd(byte[] buffer, int start, int limit) {
+        for (int i = Math.max(1, start); i < limit; i++) {
+            if ('\n' == buffer[i]) {
+                if ('\n' == buffer[i - 1]) {
+                    return i + 1;
+                }
+                if (i > 1 && '\r' == buffer[i - 1] && '\n' == buffer[i - 2]) {
+                    return i + 1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * resolve the range specs against the length of file, see RFC 7233. overlapped and adjacent ranges are
+     * coalesced, only the first range is served if the length is unknown.
+     *
+     * @param length the length of file, negative if unknown
+     * @return <code>null</code> if the whole file should be sent, empty if no range is satisfiable,
+     * otherwise the sorted <code>{start, end}</code> with the end exclusive and -1 if the end is unknown
+     */
+    List<long[]> getRanges(long length) {
+        if (ranges.isEmpty()) {
+            return null;
+        }
+        if (length <= 0) {
+            long[] range = ranges.get(0);
+            if (range[0] <= 0) {
+                // the start of a suffix range can't be known, and bytes=0- is the whole file
+                return range[0] < 0 || range[1] < 0 ? null : Collections.singletonList(new long[]{0, range[1] + 1});
+            }
+            return Collections.singletonList(new long[]{range[0], range[1] < 0 ? -1 : range[1] + 1});
+        }
+        List<long[]> resolved = new ArrayList<>(ranges.size());
+        for (long[] range : ranges) {
+            long start;
+            long end;
+            if (range[0] < 0) {
+                start = Math.max(0, length - range[1]);
+                end = range[1] > 0 ? length : start;
+            } else {
+                start = range[0];
+                end = range[1] < 0 || range[1] >= length ? length : range[1] + 1;
+            }
+            if (start < end) {
+                resolved.add(new long[]{start, end});
+            }
+        }
+        Collections.sort(resolved, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] first, long[] second) {
+                return first[0] < second[0] ? -1 : first[0] == second[0] ? 0 : 1;
+            }
+        });
+        List<long[]> coalesced = new ArrayList<>(resolved.size());
+        long[] last = null;
+        for (long[] range : resolved) {
+            if (null != last && range[0] <= last[1]) {
+                last[1] = Math.max(last[1], range[1]);
+            } else {
+                coalesced.add(last = range);
+            }
+        }
+        if (1 == coalesced.size() && 0 == coalesced.get(0)[0] && length == coalesced.get(0)[1] && 1 == ranges.size() && ranges.get(0)[1] < 0) {
+            // bytes=0- asks for the whole file
+            return null;
+        }
+        return coalesced;
+    }
+
+    private static List<long[]> parseRanges(byte[] buffer, int start, int end) {
+        if (!regionMatches(buffer, start, end, BYTES_UNIT, true)) {
+            return Collections.emptyList();
+        }
+        List<long[]> ranges = new ArrayList<>(1);
+        for (int specStart = start + BYTES_UNIT.length; specStart <= end; ) {
+            int specEnd = indexOf(buffer, specStart, end, (byte) ',');
+            long[] range = parseRange(buffer, skipSpaces(buffer, specStart, specEnd), trimEnd(buffer, specStart, specEnd));
+            if (null == range) {
+                // a syntactically invalid range header is ignored as a whole
+                return Collections.emptyList();
+            }
+            ranges.add(range);
+            specStart = specEnd + 1;
+        }
+        return ranges;
+    }
+
+    private static long[] parseRange(byte[] buffer, int start, int end) {
+        int dash = indexOf(buffer, start, end, (byte) '-');
+        if (dash == end) {
+            return null;
+        }
+        long first = parseNumber(buffer, start, trimEnd(buffer, start, dash));
+        long last = parseNumber(buffer, skipSpaces(buffer, dash + 1, end), end);
+        if (NUMBER_INVALID == first || NUMBER_INVALID == last) {
+            return null;
+        }
+        if (NUMBER_EMPTY == first) {
+            return NUMBER_EMPTY == last ? null : new long[]{-1, last};
+        }
+        return NUMBER_EMPTY != last && last < first ? null : new long[]{first, last};
+    }
+
+    private static long parseNumber(byte[] buffer, int start, int end) {
+        if (start >= end) {
+            return NUMBER_EMPTY;
+        }
+        // at most 18 digits, so it never overflows a long
+        if (end - start > MAX_NUMBER_LENGTH) {
+            return NUMBER_INVALID;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return NUMBER_INVALID;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static int parseConnection(byte[] buffer, int start, int end) {
+        int connection = CONNECTION_DEFAULT;
+        for (int tokenStart = start; tokenStart < end; ) {
+            int tokenEnd = indexOf(buffer, tokenStart, end, (byte) ',');
+            int valueStart = skipSpaces(buffer, tokenStart, tokenEnd);
+            int valueEnd = trimEnd(buffer, valueStart, tokenEnd);
+            if (valueEnd - valueStart == CLOSE.length && regionMatches(buffer, valueStart, valueEnd, CLOSE, true)) {
+                return CONNECTION_CLOSE;
+            }
+            if (valueEnd - valueStart == KEEP_ALIVE.length && regionMatches(buffer, valueStart, valueEnd, KEEP_ALIVE, true)) {
+                connection = CONNECTION_KEEP_ALIVE;
+            }
+            tokenStart = tokenEnd + 1;
+        }
+        return connection;
+    }
+
+    /**
+     * decode the percent-encoded bytes in place like {@link java.net.URLDecoder}
+     *
+     * @return the length of decoded bytes
+     */
+    private static int decode(byte[] buffer, int start, int end) throws HttpProxyCacheException {
+        int position = start;
+        for (int i = start; i < end; i++) {
+            byte value = buffer[i];
+            if ('+' == value) {
+                value = ' ';
+            } else if ('%' == value) {
+                int high = i + 2 < end ? Character.digit(buffer[i + 1], 16) : -1;
+                int low = i + 2 < end ? Character.digit(buffer[i + 2], 16) : -1;
+                if (high < 0 || low < 0) {
+                    throw new HttpProxyCacheException("Invalid escape in request url at " + (i - start));
+                }
+                value = (byte) ((high << 4) | low);
+                i += 2;
+            }
+            buffer[position++] = value;
+        }
+        return position - start;
+    }
+
+    private static boolean isHeader(byte[] buffer, int start, int colon, byte[] name) {
+        return colon - start == name.length && regionMatches(buffer, start, colon, name, true);
+    }
+
+    /**
+     * @return <code>true</code> if the bytes from start begin with the prefix, the prefix must be lower case if the case is ignored
+     */
+    private static boolean regionMatches(byte[] buffer, int start, int end, byte[] prefix, boolean ignoreCase) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            int value = buffer[start + i];
+            if (ignoreCase && value >= 'A' && value <= 'Z') {
+                value += 'a' - 'A';
+            }
+            if (value != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the index of value, or <code>end</code> if not found
+     */
+    private static int indexOf(byte[] buffer, int start, int end, byte value) {
+        for (int i = start; i < end; i++) {
+            if (value == buffer[i]) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static int lastIndexOf(byte[] buffer, int start, int end, byte value) {
+        for (int i = end - 1; i >= start; i--) {
+            if (value == buffer[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipSpaces(byte[] buffer, int start, int end) {
+        while (start < end && (' ' == buffer[start] || '\t' == buffer[start])) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(byte[] buffer, int start, int end) {
+        while (end > start && (' ' == buffer[end - 1] || '\t' == buffer[end - 1] || '\r' == buffer[end - 1])) {
+            end--;
+        }
+        return end;
+    }
+
+    private static byte[] ascii(String value) {
+        byte[] bytes = new byte[value.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) value.charAt(i);
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (long[] range : ranges) {
+            builder.append(builder.length() > 0 ? "," : "").append(range[0] < 0 ? "" : range[0]).append('-').append(range[1] < 0 ? "" : range[1]);
+        }
+        return "Request = { url = " + url + ", ranges = " + builder + ", keepAlive = " + keepAlive + "}";
+    }
+
+    /**
+     * reads the requests of a persistent connection into a reusable buffer, the bytes after a header are
+     * kept for the next request.
+     */
+    static class Reader {
+
+        private final InputStream mInputStream;
+        private final byte[] mBuffer;
+        private int mLength;
+
+        /**
+         * the bytes before it have been scanned for the end of header
+         */
+        private int mScanned;
+
+        Reader(InputStream inputStream) {
+            this(inputStream, null);
+        }
+
+        /**
+         * @param pending the bytes already read from the stream, such as a pipelined request, they are parsed first.
+         *                the buffer grows to hold all of them
+         */
+        Reader(InputStream inputStream, byte[] pending) {
+            this.mInputStream = inputStream;
+            this.mLength = null == pending ? 0 : pending.length;
+            this.mBuffer = new byte[Math.max(Constants.HEADER_SIZE, mLength)];
+            if (mLength > 0) {
+                System.arraycopy(pending, 0, mBuffer, 0, mLength);
+            }
+        }
+
+        /**
+         * @return <code>null</code> if the connection has closed before a new request
+         * @throws IOException the error
+         */
+        HttpProxyCacheRequest next() throws IOException {
+            int headerEnd;
+            while ((headerEnd = findHeaderEnd(mBuffer, Math.max(0, mScanned - 3), mLength)) < 0) {
+                mScanned = mLength;
+                if (mLength == mBuffer.length) {
+                    throw new HttpProxyCacheException("request header is too large");
+                }
+                int readBytes = mInputStream.read(mBuffer, mLength, mBuffer.length - mLength);
+                if (-1 == readBytes) {
+                    return null;
+                }
+                mLength += readBytes;
+            }
+            HttpProxyCacheRequest request = parse(mBuffer, 0, headerEnd);
+            mLength -= headerEnd;
+            mScanned = 0;
+            System.arraycopy(mBuffer, headerEnd, mBuffer, 0, mLength);
+            return request;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.llew.file.cache.engine.core;
+
+/**
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/8
+ */
+
+class HttpProxyCacheResponse {
+
+    final byte[] header;
+    final long offset;
+    final long length;
+    final boolean keepAlive;
+    final int generation;
+
+    /**
+     * @param header the response header that should be written before body
+     * @param offset the position of the first body byte in cached file
+     * @param length the total number of body bytes, negative if unknown
+     * @param keepAlive whether the connection can serve the next request after body
+     * @param generation the generation of cached file, the body stops if the file is discarded
+     */
+    HttpProxyCacheResponse(byte[] header, long offset, long length, boolean keepAlive, int generation) {
+        this.header = header;
+        this.offset = offset;
+        this.length = length;
+        this.keepAlive = keepAlive;
+        this.generation = generation;
+    }
+
+    @Override
+    public String toString() {
+        return "Response = { offset = " + offset + ", length = " + length + ", keepAlive = " + keepAlive + "}";
+    }
+}
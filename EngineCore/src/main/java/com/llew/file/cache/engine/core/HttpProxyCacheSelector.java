@@ -0,0 +1,479 @@
+package com.llew.file.cache.engine.core;
+
+import com.llew.file.cache.engine.config.HttpProxyCacheConfig;
+import com.llew.file.cache.engine.exception.HttpProxyCacheException;
+import com.llew.file.cache.engine.manager.HttpProxyCacheStats;
+import com.llew.file.cache.engine.utils.Constants;
+import com.llew.file.cache.engine.utils.FileUtils;
+import com.llew.file.cache.engine.utils.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * a non-blocking proxy server, all of the sockets are served by one selector thread.
+ * the request is parsed without blocking and the body is transferred from cached file
+ * whenever the socket is writable, requests that can't be served from cached file
+ * are handed over to {@link HttpProxyCachePinger} and processed in blocking mode.
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/8
+ */
+
+class HttpProxyCacheSelector implements Runnable {
+
+
+    private static final int MAX_WRITE_ROUNDS = 8;
+
+    private final ConcurrentLinkedQueue<Runnable> mPendingTasks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * prepares the requests, it may block on opening the source, so the threads are bounded by {@link Constants#PREPARE_THREADS}
+     */
+    private final ThreadPoolExecutor mPrepareExecutor;
+
+    private final HttpProxyCachePinger mCachePinger;
+
+    private final HttpProxyCacheConfig mCacheConfig;
+
+    private final ServerSocketChannel mServerChannel;
+
+    private final Selector mSelector;
+
+    private CountDownLatch mLatch;
+
+    private volatile boolean isServerRunning;
+
+    private volatile boolean isLooping;
+
+    HttpProxyCacheSelector(HttpProxyCachePinger pinger, HttpProxyCacheConfig config, ServerSocketChannel serverChannel, CountDownLatch latch) throws IOException {
+        this.mCachePinger = pinger;
+        this.mCacheConfig = config;
+        this.mServerChannel = serverChannel;
+        this.mLatch = latch;
+        this.mSelector = Selector.open();
+        this.mPrepareExecutor = new ThreadPoolExecutor(Constants.PREPARE_THREADS, Constants.PREPARE_THREADS, Constants.KEEP_ALIVE_TIMEOUT,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "HttpProxyCachePrepare");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.mPrepareExecutor.allowCoreThreadTimeOut(true);
+        this.mServerChannel.configureBlocking(false);
+        this.mServerChannel.register(mSelector, SelectionKey.OP_ACCEPT);
+        this.isServerRunning = true;
+    }
+
+    @Override
+    public void run() {
+        isLooping = true;
+        if (null != mLatch) {
+            mLatch.countDown();
+            mLatch = null;
+        }
+        Logger.e("selector start  launching  ...");
+        try {
+            loop();
+        } finally {
+            isLooping = false;
+        }
+        closeConnections();
+        Logger.e("selector quit loop");
+    }
+
+    /**
+     * @return <code>true</code> if the selector thread is serving connections
+     */
+    boolean isRunning() {
+        return isServerRunning && isLooping && mServerChannel.isOpen();
+    }
+
+    private void loop() {
+        while (isServerRunning) {
+            try {
+                mSelector.select();
+                runPendingTasks();
+                Iterator<SelectionKey> iterator = mSelector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    dispatch(key);
+                }
+            } catch (Throwable e) {
+                Logger.e(e);
+            }
+        }
+    }
+
+    void shutdown() {
+        isServerRunning = false;
+        mPrepareExecutor.shutdownNow();
+        FileUtils.closeQuietly(mServerChannel);
+        mSelector.wakeup();
+    }
+
+    private void dispatch(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            acceptChannels();
+            return;
+        }
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                connection.read();
+            } else if (key.isWritable()) {
+                connection.write();
+            }
+        } catch (Throwable e) {
+            Logger.e(e);
+            connection.close();
+        }
+    }
+
+    private void acceptChannels() {
+        try {
+            SocketChannel channel;
+            while (null != (channel = mServerChannel.accept())) {
+                channel.configureBlocking(false);
+                SelectionKey key = channel.register(mSelector, SelectionKey.OP_READ);
+                key.attach(new Connection(channel, key));
+            }
+        } catch (Throwable e) {
+            Logger.e(e);
+        }
+    }
+
+    private void runPendingTasks() {
+        Runnable task;
+        while (null != (task = mPendingTasks.poll())) {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                Logger.e(e);
+            }
+        }
+    }
+
+    private void closeConnections() {
+        try {
+            for (SelectionKey key : mSelector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    ((Connection) key.attachment()).release();
+                }
+                FileUtils.closeQuietly(key.channel());
+            }
+        } catch (Throwable e) {
+            Logger.e(e);
+        }
+        FileUtils.closeQuietly(mSelector);
+        mPendingTasks.clear();
+    }
+
+    private void post(Runnable task) {
+        mPendingTasks.offer(task);
+        mSelector.wakeup();
+    }
+
+    private class Connection {
+
+        private final SocketChannel mChannel;
+        private final SelectionKey mKey;
+
+        private ByteBuffer mInput;
+        private ByteBuffer mOutput;
+
+        private HttpProxyCacheRequest mRequest;
+        private HttpProxyCacheClient mClient;
+        private long mPosition;
+        private long mRemaining;
+        private int mGeneration;
+        private boolean isKeepAlive;
+
+        /**
+         * the time when the request arrived, <code>0</code> once the first byte of its body has responded
+         */
+        private long mRequestTime;
+
+        /**
+         * the connection waits for the bytes which aren't cached yet, it's woken up by the engine instead of polling
+         */
+        private boolean isParked;
+
+        private final Runnable mUnparkTask = new Runnable() {
+            @Override
+            public void run() {
+                if (isParked) {
+                    isParked = false;
+                    interest(SelectionKey.OP_WRITE);
+                }
+            }
+        };
+
+        private final Runnable mWaiter = new Runnable() {
+            @Override
+            public void run() {
+                post(mUnparkTask);
+            }
+        };
+
+        /**
+         * the connection has left the selector, it's counted by {@link HttpProxyCacheStats#getActiveSockets()} until then
+         */
+        private boolean isReleased;
+
+        /**
+         * the bytes of input before it have been scanned for the end of header
+         */
+        private int mScanned;
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.mChannel = channel;
+            this.mKey = key;
+            this.mInput = ByteBuffer.allocate(Constants.HEADER_SIZE);
+            mCacheConfig.getStats().onSocketOpened();
+        }
+
+        void read() throws IOException {
+            if (-1 == mChannel.read(mInput)) {
+                close();
+                return;
+            }
+            parse();
+        }
+
+        private void parse() throws IOException {
+            int headerEnd = HttpProxyCacheRequest.findHeaderEnd(mInput.array(), Math.max(0, mScanned - 3), mInput.position());
+            if (headerEnd < 0) {
+                mScanned = mInput.position();
+                if (!mInput.hasRemaining()) {
+                    throw new HttpProxyCacheException("request header is too large");
+                }
+                return;
+            }
+            interest(0);
+            mRequestTime = System.nanoTime();
+            mRequest = HttpProxyCacheRequest.parse(mInput.array(), 0, headerEnd);
+            // keep the bytes of a pipelined request for the next round
+            mInput.flip();
+            mInput.position(headerEnd);
+            mInput.compact();
+            mScanned = 0;
+            Logger.e("new channel accepted, and " + mRequest);
+            mPrepareExecutor.execute(new PrepareRunnable(this));
+        }
+
+        void write() throws IOException {
+            for (int round = 0; round < MAX_WRITE_ROUNDS; round++) {
+                if (null != mOutput && mOutput.hasRemaining()) {
+                    mChannel.write(mOutput);
+                    if (mOutput.hasRemaining()) {
+                        return;
+                    }
+                }
+                if (0 == mRemaining && isKeepAlive) {
+                    finish();
+                    return;
+                }
+                if (0 == mRemaining || null == mClient || mGeneration != mClient.getGeneration()) {
+                    // a body of unknown length has no more bytes, or the cached file has been discarded because the source has changed
+                    close();
+                    return;
+                }
+                int ticket = mClient.getWakeCount();
+                long available = mClient.available(mPosition, mRemaining < 0 ? -1 : mPosition + mRemaining);
+                if (available < 0) {
+                    close();
+                    return;
+                }
+                if (0 == available) {
+                    interest(0);
+                    isParked = true;
+                    mClient.addWaiter(ticket, mWaiter);
+                    return;
+                }
+                long count = Math.min(available, mRemaining < 0 ? Constants.TRANSFER_SIZE : Math.min(mRemaining, Constants.TRANSFER_SIZE));
+                long transferredBytes = mClient.transferTo(mPosition, count, mChannel);
+                if (transferredBytes > 0) {
+                    HttpProxyCacheStats stats = mCacheConfig.getStats();
+                    if (mRequestTime > 0) {
+                        stats.onFirstByte(System.nanoTime() - mRequestTime);
+                        mRequestTime = 0;
+                    }
+                    stats.onDiskBytes(transferredBytes);
+                }
+                mPosition += transferredBytes;
+                if (mRemaining > 0) {
+                    mRemaining -= transferredBytes;
+                }
+                if (transferredBytes < count) {
+                    return;
+                }
+            }
+        }
+
+        void respond(byte[] data) {
+            mOutput = ByteBuffer.wrap(data);
+            mRemaining = 0;
+            isKeepAlive = mRequest.keepAlive;
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    interest(SelectionKey.OP_WRITE);
+                }
+            });
+        }
+
+        void stream(HttpProxyCacheClient client, HttpProxyCacheResponse response) {
+            mClient = client;
+            mOutput = ByteBuffer.wrap(response.header);
+            mPosition = response.offset;
+            mRemaining = response.length;
+            mGeneration = response.generation;
+            isKeepAlive = response.keepAlive;
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    interest(SelectionKey.OP_WRITE);
+                }
+            });
+        }
+
+        void handOff() {
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        // the socket is counted by the blocking processor from now on
+                        release();
+                        mKey.cancel();
+                        mSelector.selectNow();
+                        mChannel.configureBlocking(true);
+                        // the bytes of a pipelined request have been read from the socket, they go along with it
+                        byte[] pending = Arrays.copyOf(mInput.array(), mInput.position());
+                        mCachePinger.processRequest(mChannel.socket(), mRequest, pending);
+                    } catch (Throwable e) {
+                        Logger.e(e);
+                        FileUtils.closeQuietly(mChannel);
+                    }
+                }
+            });
+        }
+
+        void interest(int ops) {
+            if (mKey.isValid()) {
+                mKey.interestOps(ops);
+            }
+        }
+
+        /**
+         * the response has completed on a persistent connection, wait for the next request
+         */
+        private void finish() throws IOException {
+            if (null != mClient) {
+                mCachePinger.onForegroundFinish();
+                mClient.release();
+            }
+            mClient = null;
+            mOutput = null;
+            mRequest = null;
+            isKeepAlive = false;
+            isParked = false;
+            interest(SelectionKey.OP_READ);
+            parse();
+        }
+
+        void release() {
+            if (!isReleased) {
+                isReleased = true;
+                mCacheConfig.getStats().onSocketClosed();
+            }
+        }
+
+        void close() {
+            release();
+            mKey.cancel();
+            FileUtils.closeQuietly(mChannel);
+            if (null != mClient) {
+                mCachePinger.onForegroundFinish();
+                mClient.release();
+            }
+            mClient = null;
+            mOutput = null;
+            isParked = false;
+        }
+
+        void closeLater() {
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    close();
+                }
+            });
+        }
+    }
+
+    private class PrepareRunnable implements Runnable {
+
+        private final Connection mConnection;
+
+        PrepareRunnable(Connection connection) {
+            this.mConnection = connection;
+        }
+
+        @Override
+        public void run() {
+            String url = mConnection.mRequest.url;
+            try {
+                if (mCachePinger.isPingRequest(url)) {
+                    mConnection.respond(HttpProxyCachePinger.PING_RESPONSE.getBytes());
+                    return;
+                }
+                if (mCachePinger.isAdminRequest(url)) {
+                    mConnection.respond(mCachePinger.getAdminResponse(url));
+                    return;
+                }
+                HttpProxyCacheClient client = mCachePinger.acquireClient(url);
+                HttpProxyCacheResponse response;
+                try {
+                    response = client.prepareRequest(mConnection.mRequest);
+                } catch (Throwable e) {
+                    client.release();
+                    throw e;
+                }
+                if (null == response) {
+                    Logger.e("selector hand off request : " + mConnection.mRequest);
+                    // the blocking processor acquires the client by itself
+                    client.release();
+                    mConnection.handOff();
+                } else {
+                    Logger.e("selector stream " + response);
+                    mCachePinger.onForegroundStart();
+                    mConnection.stream(client, response);
+                }
+            } catch (Throwable e) {
+                Logger.e(e);
+                mCachePinger.notifyError(url, e);
+                mConnection.closeLater();
+            }
+        }
+    }
+}
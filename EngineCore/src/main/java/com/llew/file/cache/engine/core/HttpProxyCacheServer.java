@@ -0,0 +1,839 @@
+package com.llew.file.cache.engine.core;
+
+import com.llew.file.cache.engine.config.HttpProxyCacheCallback;
+import com.llew.file.cache.engine.config.HttpProxyCacheConfig;
+import com.llew.file.cache.engine.config.HttpProxyCacheDispatcher;
+import com.llew.file.cache.engine.config.HttpProxyCacheHeaders;
+import com.llew.file.cache.engine.config.HttpProxyCacheNameGenerator;
+import com.llew.file.cache.engine.config.HttpProxyCacheSource;
+import com.llew.file.cache.engine.config.HttpProxyCacheSink;
+import com.llew.file.cache.engine.config.HttpProxyCacheStorage;
+import com.llew.file.cache.engine.config.HttpProxyCacheSyncPolicy;
+import com.llew.file.cache.engine.config.HttpProxyCacheUrlFilter;
+import com.llew.file.cache.engine.config.HttpProxyCacheUsage;
+import com.llew.file.cache.engine.exception.HttpProxyCacheException;
+import com.llew.file.cache.engine.info.HttpProxyCacheSourceInfo;
+import com.llew.file.cache.engine.manager.HttpProxyCacheBufferPool;
+import com.llew.file.cache.engine.manager.HttpProxyCacheStats;
+import com.llew.file.cache.engine.manager.HttpProxyCacheThreadDispatcher;
+import com.llew.file.cache.engine.usage.LruFilesCountDiskUsage;
+import com.llew.file.cache.engine.usage.LruFilesSizeDiskUsage;
+import com.llew.file.cache.engine.usage.LruSingleFileSizeUsage;
+import com.llew.file.cache.engine.utils.Constants;
+import com.llew.file.cache.engine.utils.FileUtils;
+import com.llew.file.cache.engine.utils.Logger;
+import com.llew.file.cache.engine.utils.TextUtils;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.llew.file.cache.engine.utils.Preconditions.checkNotNull;
+
+
+/**
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2017/12/28
+ */
+
+public final class HttpProxyCacheServer {
+
+    private HttpProxyCacheConfig mCacheConfig;
+    private HttpProxyCachePinger mCachePinger;
+
+    /**
+     * Creates an HttpProxyCacheServer that uses the default value of Android
+     *
+     * @param context the android.content.Context, the core doesn't depend on Android
+     * @deprecated use <code>HttpProxyCacheAndroid.newServer(context)</code> of Engine module instead
+     */
+    @Deprecated
+    public HttpProxyCacheServer(Object context) {
+        this(new Builder(context).buildConfig());
+    }
+
+    private HttpProxyCacheServer(HttpProxyCacheConfig config) {
+        this.mCacheConfig = config;
+        try {
+            mCachePinger = HttpProxyCachePinger.getPinger(config);
+        } catch (Throwable e) {
+            Logger.e(e);
+            mCacheConfig = null;
+            mCachePinger = null;
+        }
+    }
+
+    /**
+     * get proxy url, such as <b><code>http://127.0.0.1:9999/originUrl</code></b>
+     *
+     * @param url the cache url
+     * @return get proxy url, such as <code>http://127.0.0.1:9999/originUrl</code>
+     */
+    public String proxyUrl(String url) {
+        return proxyUrl(url, null, null);
+    }
+
+    /**
+     * get proxy url, such as <b><code>http://127.0.0.1:9999/originUrl</code></b>
+     *
+     * @param url     the cache url
+     * @param headers the set of headers that the cache url needs
+     * @return get proxy url, such as <code>http://127.0.0.1:9999/originUrl</code>
+     */
+    public String proxyUrl(String url, HttpProxyCacheHeaders headers) {
+        return proxyUrl(url, headers, null);
+    }
+
+    /**
+     * get proxy url, such as <b><code>http://127.0.0.1:9999/originUrl</code></b>
+     *
+     * @param url      the cache url
+     * @param callback the callback with the cache url
+     * @return get proxy url, such as <code>http://127.0.0.1:9999/originUrl</code>
+     */
+    public String proxyUrl(String url, HttpProxyCacheCallback callback) {
+        return proxyUrl(url, null, callback);
+    }
+
+    /**
+     * get proxy url, such as <b><code>http://127.0.0.1:9999/originUrl</code></b>
+     *
+     * @param url      the cache url
+     * @param headers  the headers with the cache url
+     * @param callback the callback with the cache url
+     * @return get proxy url, such as <code>http://127.0.0.1:9999/originUrl</code>
+     */
+    public String proxyUrl(String url, HttpProxyCacheHeaders headers, HttpProxyCacheCallback callback) {
+        try {
+            if (TextUtils.isEmpty(url)) {
+                return url;
+            }
+
+            if (null == mCacheConfig || !mCacheConfig.getUrlFilter().accept(url)) {
+                return url;
+            }
+
+            File cachedFile = mCacheConfig.generateCacheFile(url);
+            if (isFileCached(cachedFile) && !isExpired(url)) {
+                // only record the access, the disk usages are applied in background
+                mCacheConfig.getDiskTrimmer().touch(cachedFile);
+                mCacheConfig.getStats().onCachedUrl();
+                Logger.e("file = " + cachedFile.getName() + " has cached and cached size = " + cachedFile.length() + ", use it directly ");
+                return new URI("file", "", cachedFile.getAbsolutePath(), null).toString();
+            }
+
+            if (null != callback) {
+                mCacheConfig.addCallback(url, callback);
+            }
+
+            if (null != headers) {
+                mCacheConfig.addHeaders(url, headers);
+            }
+
+            return isActive() ? appendProxyUrl(url) : url;
+        } catch (Throwable ignore) {
+            Logger.e(ignore);
+            // ignore it and return origin url
+            return url;
+        }
+    }
+
+    /**
+     * download the beginning of url into cache in background, so it can be played at once later.
+     *
+     * @param url    the cache url
+     * @param length the number of bytes to preload, <code>0</code> means the whole file
+     * @return <code>true</code> if the url has cached or queued
+     */
+    public boolean preload(String url, long length) {
+        return preload(url, length, 0);
+    }
+
+    /**
+     * download the beginning of url into cache in background, so it can be played at once later.
+     * <p>
+     * <b><font color='red'>NOTE:</font></b> the urls are preloaded one by one in the order of priority,
+     * and the preload pauses while any player is streaming from the proxy.
+     * </p>
+     *
+     * @param url      the cache url
+     * @param length   the number of bytes to preload, <code>0</code> means the whole file
+     * @param priority the url with higher priority is preloaded first
+     * @return <code>true</code> if the url has cached or queued, <code>false</code> if the queue is full of urls with higher priority
+     */
+    public boolean preload(String url, long length, int priority) {
+        try {
+            if (TextUtils.isEmpty(url) || null == mCacheConfig || null == mCachePinger || !mCacheConfig.getUrlFilter().accept(url)) {
+                return false;
+            }
+            return isCached(url) || mCachePinger.preload(url, length, priority);
+        } catch (Throwable ignore) {
+            Logger.e(ignore);
+            return false;
+        }
+    }
+
+    /**
+     * cancel the preload of url, the bytes already downloaded are kept
+     *
+     * @param url the cache url
+     */
+    public void cancelPreload(String url) {
+        if (!TextUtils.isEmpty(url) && null != mCachePinger) {
+            mCachePinger.cancelPreload(url);
+        }
+    }
+
+    /**
+     * get cached file by url, <code>null</code> if not completely cached
+     *
+     * @param url the cache url
+     * @return get the cached file by url, <code>null</code> if not completely cached
+     */
+    public File getCachedFile(String url) {
+        return isCached(url) ? mCacheConfig.generateCacheFile(url) : null;
+    }
+
+    /**
+     * clear all cached files
+     */
+    public void clearCaches() {
+        if (null != mCacheConfig) {
+            mCacheConfig.clearCaches();
+        }
+    }
+
+    /**
+     * clear a cached file by url
+     *
+     * @param url the cache url
+     */
+    public void clearCache(String url) {
+        if (null != mCacheConfig) {
+            File cachedFile = mCacheConfig.generateCacheFile(url);
+            FileUtils.deleteFile(cachedFile);
+            mCacheConfig.getDiskIndex().remove(cachedFile);
+        }
+    }
+
+    /**
+     * check the file is completely cached or not
+     *
+     * @param url the cache url
+     * @return <code>true</code> means completely cached, otherwise <code>false</code>
+     */
+    public boolean isCached(String url) {
+        return null != mCacheConfig && mCacheConfig.generateCacheFile(url).exists();
+    }
+
+    /**
+     * get the buffer pool, its hit and miss counts tell how many buffers have been reused and allocated
+     *
+     * @return the buffer pool, <code>null</code> if proxy server has shutdown
+     */
+    public HttpProxyCacheBufferPool getBufferPool() {
+        return null == mCacheConfig ? null : mCacheConfig.getBufferPool();
+    }
+
+    /**
+     * get the counters of proxy server, such as the hit ratio, the bytes served from cached files and from source,
+     * the time to first byte and the number of active sockets and downloads
+     *
+     * @return the counters, <code>null</code> if proxy server has shutdown
+     */
+    public HttpProxyCacheStats getStats() {
+        return null == mCacheConfig ? null : mCacheConfig.getStats();
+    }
+
+    /**
+     * get the url of an admin path, see {@link Builder#adminEnabled(boolean)}
+     *
+     * @param path the admin path, {@link Constants#STATS} or {@link Constants#DEBUG}
+     * @return the url such as <code>http://127.0.0.1:9999/stats</code>, <code>null</code> if the admin paths are disabled or proxy server isn't active
+     */
+    public String adminUrl(String path) {
+        if (null == mCacheConfig || !mCacheConfig.isAdminEnabled() || !isActive()) {
+            return null;
+        }
+        return String.format(Locale.US, "http://%s:%d/%s", Constants.HOST, mCachePinger.getSocketPort(), path);
+    }
+
+    /**
+     * shutdown proxy server, if called, cache engine will not work anymore
+     */
+    public void shutdownProxy() {
+        if (null != mCachePinger) {
+            mCachePinger.shutDown();
+        }
+        if (null != mCacheConfig) {
+            try {
+                // the pending source infos are written before the storage is closed
+                mCacheConfig.getCacheStorage().release();
+            } catch (Throwable e) {
+                Logger.e(e);
+            }
+        }
+        mCachePinger = null;
+        mCacheConfig = null;
+    }
+
+    /**
+     * destroy resources in case of memory leak, this method should be called before Activity/Fragment destroyed
+     *
+     * @param url the cache url
+     */
+    public void onDestroy(String url) {
+        if (!TextUtils.isEmpty(url)) {
+            onDestroy(Collections.singletonList(url));
+        }
+    }
+
+    /**
+     * destroy resources in case of memory leak, this method should be called before Activity/Fragment destroyed
+     *
+     * @param urls the cache url
+     */
+    public void onDestroy(List<String> urls) {
+        try {
+            if (null != urls) {
+                for (String url : urls) {
+                    if (null != mCacheConfig) {
+                        mCacheConfig.removeCallback(url);
+                        mCacheConfig.removeHeaders(url);
+                    }
+                    if (null != mCachePinger) {
+                        mCachePinger.destroy(url);
+                    }
+                }
+            }
+        } catch (Throwable ignore) {
+        }
+    }
+
+    private String appendProxyUrl(String url) throws UnsupportedEncodingException {
+        return String.format(Locale.US, "http://%s:%d/%s", Constants.HOST, mCachePinger.getSocketPort(), URLEncoder.encode(url, Constants.CHARSET));
+    }
+
+    private boolean isActive() {
+        HttpProxyCachePinger cachePinger = mCachePinger;
+        return null != cachePinger && cachePinger.isAlive();
+    }
+
+    private boolean isFileCached(File file) {
+        return null != file && file.exists();
+    }
+
+    /**
+     * the cached file should be validated by proxy server, see {@link Builder#revalidateInterval(long)}
+     */
+    private boolean isExpired(String url) throws HttpProxyCacheException {
+        if (mCacheConfig.getRevalidateInterval() <= 0 || !isActive()) {
+            return false;
+        }
+        HttpProxyCacheSourceInfo sourceInfo = mCacheConfig.getCacheStorage().get(url);
+        return null != sourceInfo && sourceInfo.isExpired(mCacheConfig.getRevalidateInterval());
+    }
+
+    public static class Builder {
+
+        private int maxAttempts;
+        private int maxTimeouts;
+        private int sourceTimeout;
+        private long maxFileSize;
+        private int maxFileCount;
+        private long maxTotalSize;
+        private long singleFileSize;
+        private long callbackInterval;
+        private boolean nioServerEnabled;
+        private int downloadConnections;
+        private long downloadSegmentSize;
+        private int maxPreloads;
+        private long healthCheckInterval;
+        private int writeBufferSize;
+        private int bufferSize;
+        private long bufferPoolSize;
+        private long revalidateInterval;
+        private boolean adminEnabled;
+        private File mCacheRootFile;
+
+        private ExecutorService mExecutorService;
+        private HttpProxyCacheSink mCacheSink;
+        private HttpProxyCacheSource mCacheSource;
+        private HttpProxyCacheConfig mCacheConfig;
+        private HttpProxyCacheUrlFilter mUrlFilter;
+        private HttpProxyCacheStorage mCacheStorage;
+        private HttpProxyCacheHeaders mDependHeaders;
+        private List<HttpProxyCacheUsage> mDiskUsages;
+        private HttpProxyCacheNameGenerator mFileNameGenerator;
+        private HttpProxyCacheSyncPolicy mSyncPolicy;
+        private HttpProxyCacheDispatcher mDispatcher;
+        private Object mContext;
+
+        /**
+         * Creates a builder for an HttpProxyCacheServer that uses the default value, the source infos are kept
+         * in memory and the files are cached in the temporary directory. on Android the builder is created by
+         * <code>com.llew.file.cache.engine.android.HttpProxyCacheAndroid</code> of Engine module
+         */
+        public Builder() {
+
+            this.maxAttempts = Constants.ATTEMPTS;
+            this.maxTimeouts = Constants.TIMEOUTS;
+            this.sourceTimeout = Constants.SOURCE_TIMEOUT;
+            this.maxFileSize = Integer.MAX_VALUE;
+            this.callbackInterval = Constants.INTERVAL;
+            this.downloadConnections = Constants.DOWNLOAD_CONNECTIONS;
+            this.downloadSegmentSize = Constants.DOWNLOAD_SEGMENT_SIZE;
+            this.maxPreloads = Constants.PRELOADS;
+            this.writeBufferSize = Constants.WRITE_BUFFER_SIZE;
+            this.bufferSize = Constants.BUFFER_SIZE;
+            this.bufferPoolSize = Constants.BUFFER_POOL_SIZE;
+            this.mSyncPolicy = HttpProxyCacheSyncPolicy.NONE;
+
+            this.mDiskUsages = new ArrayList<>();
+            this.mUrlFilter = HttpProxyCacheUrlFilter.ANY;
+            this.mCacheStorage = new HttpProxyMemoryStorage();
+            this.mDispatcher = HttpProxyCacheThreadDispatcher.getIMPL();
+            this.mFileNameGenerator = HttpProxyCacheNameGenerator.MURMUR3;
+            this.mExecutorService = Executors.newCachedThreadPool();
+            this.mCacheRootFile = new File(System.getProperty("java.io.tmpdir"), Constants.CACHE_DIR);
+            this.mCacheSource = new com.llew.file.cache.engine.core.HttpProxyCacheSource();
+            this.mCacheSink = new com.llew.file.cache.engine.core.HttpProxyCacheSink();
+        }
+
+        /**
+         * Creates a builder for an HttpProxyCacheServer that uses the default value of Android
+         *
+         * @param context the android.content.Context, the core doesn't depend on Android
+         * @deprecated use <code>HttpProxyCacheAndroid.newBuilder(context)</code> of Engine module instead
+         */
+        @Deprecated
+        public Builder(Object context) {
+            this();
+            this.mContext = checkNotNull(context);
+            try {
+                // the Android defaults are applied by the Engine module, the core can't refer to it
+                Class<?> contextClass = Class.forName(Constants.ANDROID_CONTEXT);
+                Class.forName(Constants.ANDROID_ADAPTER).getMethod("applyDefaults", Builder.class, contextClass).invoke(null, this, context);
+            } catch (Exception e) {
+                throw new IllegalStateException("building with a context needs the Engine module and an android.content.Context", e);
+            }
+        }
+
+        /**
+         * provide the common HTTP request headers
+         * <p>
+         * <b><font color='red'>NOTE:</font></b> if this method has been called, all of the cache url request will be added header in HTTP-HEADER
+         * </p>
+         *
+         * @param headers the common HTTP request headers
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder appendHeaders(HttpProxyCacheHeaders headers) {
+            this.mDependHeaders = headers;
+            return this;
+        }
+
+        /**
+         * Custom file cache policy.
+         *
+         * @param sink custom file cache policy.
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder cacheSink(HttpProxyCacheSink sink) {
+            this.mCacheSink = sink;
+            return this;
+        }
+
+        /**
+         * Custom network request policy.
+         *
+         * @param cacheSource custom network request policy.
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder cacheSource(HttpProxyCacheSource cacheSource) {
+            this.mCacheSource = cacheSource;
+            return this;
+        }
+
+        /**
+         * set the dispatcher of callbacks, the callbacks run on a daemon thread by default
+         *
+         * @param dispatcher the dispatcher, such as the main thread of Android
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder dispatcher(HttpProxyCacheDispatcher dispatcher) {
+            if (null != dispatcher) {
+                mDispatcher = dispatcher;
+            }
+            return this;
+        }
+
+        /**
+         * Add additional storage rules
+         *
+         * @param storage the storage rules
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder cacheStorage(HttpProxyCacheStorage storage) {
+            if (null != storage) {
+                mCacheStorage = storage;
+            }
+            return this;
+        }
+
+        /**
+         * Add additional filtering rules
+         *
+         * @param filter the filtering rules
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder urlFilter(HttpProxyCacheUrlFilter filter) {
+            if (null != filter) {
+                mUrlFilter = filter;
+            }
+            return this;
+        }
+
+        /**
+         * Set the thread pool for the cache engine
+         *
+         * @param service the thread pool for the cache engine
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder executorService(ExecutorService service) {
+            if (null != service) {
+                mExecutorService = service;
+            }
+            return this;
+        }
+
+        /**
+         * Custom file usage policies.
+         *
+         * @param diskUsage custom file usage policies.
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder diskUsage(HttpProxyCacheUsage diskUsage) {
+            if (null != diskUsage) {
+                mDiskUsages.add(diskUsage);
+            }
+            return this;
+        }
+
+        /**
+         * set the root directory of the cache file
+         *
+         * @param file the root directory of the cache file
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder rootDir(File file) {
+            if (null != file && file.exists() && file.isDirectory()) {
+                mCacheRootFile = file;
+            }
+            return this;
+        }
+
+        /**
+         * set the total number of cached files
+         *
+         * @param count the total number of cached files
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder maxFileCount(int count) {
+            if (count > 0) {
+                this.maxFileCount = count;
+            }
+            return this;
+        }
+
+        /**
+         * set the maximum size of all cached files
+         *
+         * @param size the maximum size of all cached files
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder maxTotalSize(long size) {
+            if (size > 0) {
+                this.maxTotalSize = size;
+            }
+            return this;
+        }
+
+        /**
+         * set the maximum size of a single cache file
+         *
+         * @param size the maximum size of a single cache file
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder singleFileSize(long size) {
+            if (size > 0) {
+                this.maxFileSize = size;
+                this.singleFileSize = size;
+            }
+            return this;
+        }
+
+        /**
+         * Set the maximum number of attempts to request the proxy server.
+         *
+         * @param attempts the maximum number of attempts
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder maxAttempts(int attempts) {
+            if (attempts > 0) {
+                maxAttempts = attempts;
+            }
+            return this;
+        }
+
+        /**
+         * Set the time interval for each callback.
+         *
+         * @param intervalTime the duration in milliseconds
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder callbackInterval(long intervalTime) {
+            if (intervalTime > 0) {
+                this.callbackInterval = intervalTime;
+            }
+            return this;
+        }
+
+        /**
+         * Set the timeout period for the request proxy server.
+         *
+         * @param timeout the duration in milliseconds
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder maxTimeouts(int timeout) {
+            if (timeout > 0) {
+                maxTimeouts = timeout;
+            }
+            return this;
+        }
+
+        /**
+         * Set the timeout of the request which asks the source for its length and mime when no download has told them.
+         *
+         * @param timeout the duration in milliseconds, default is {@link Constants#SOURCE_TIMEOUT}
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder sourceTimeout(int timeout) {
+            if (timeout > 0) {
+                sourceTimeout = timeout;
+            }
+            return this;
+        }
+
+        /**
+         * Custom filename generation policy.
+         *
+         * @param nameGenerator custom filename generation policy.
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder fileNameGenerator(HttpProxyCacheNameGenerator nameGenerator) {
+            if (null != nameGenerator) {
+                this.mFileNameGenerator = nameGenerator;
+            }
+            return this;
+        }
+
+        /**
+         * Serve all of the player sockets by a selector thread instead of one thread per socket.
+         *
+         * @param enabled <code>true</code> use the non-blocking server, otherwise <code>false</code>
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder nioServerEnabled(boolean enabled) {
+            this.nioServerEnabled = enabled;
+            return this;
+        }
+
+        /**
+         * Set the number of connections used to cache a file whose length is known.
+         * one connection follows the playback position, the others fetch the following ranges in parallel.
+         *
+         * @param connections the number of connections, <code>1</code> means cache the file by one connection
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder downloadConnections(int connections) {
+            if (connections > 0) {
+                this.downloadConnections = connections;
+            }
+            return this;
+        }
+
+        /**
+         * Set the size of range fetched by each of the parallel connections, it is rounded up to a multiple of 64KB.
+         *
+         * @param size the size of range in bytes
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder downloadSegmentSize(long size) {
+            if (size > 0) {
+                this.downloadSegmentSize = (size + Constants.SEGMENT_SIZE - 1) / Constants.SEGMENT_SIZE * Constants.SEGMENT_SIZE;
+            }
+            return this;
+        }
+
+        /**
+         * Set the maximum number of urls waiting to be preloaded.
+         *
+         * @param count the maximum number of urls, the one with lowest priority is dropped if exceeded
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder maxPreloads(int count) {
+            if (count > 0) {
+                this.maxPreloads = count;
+            }
+            return this;
+        }
+
+        /**
+         * Set the interval of a background self-test which requests the proxy server over loopback,
+         * the last result is cached and checked by {@link HttpProxyCacheServer#proxyUrl(String)}.
+         * <p>
+         * <b><font color='red'>NOTE:</font></b> the liveness of server is always tracked by the state of accepting loop,
+         * so the self-test is disabled by default.
+         * </p>
+         *
+         * @param intervalTime the duration in milliseconds, <code>0</code> disables the self-test
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder healthCheckInterval(long intervalTime) {
+            if (intervalTime >= 0) {
+                this.healthCheckInterval = intervalTime;
+            }
+            return this;
+        }
+
+        /**
+         * Set the size of write buffer, the downloaded bytes are gathered in it and written to the cache file
+         * when it's full, when it's older than {@link Constants#WRITE_FLUSH_INTERVAL} or when a player waits for them.
+         *
+         * @param size the size in bytes, rounded up to a multiple of {@link Constants#SEGMENT_SIZE}, <code>0</code> writes every downloaded byte directly
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder writeBufferSize(int size) {
+            if (size >= 0) {
+                this.writeBufferSize = (size + Constants.SEGMENT_SIZE - 1) / Constants.SEGMENT_SIZE * Constants.SEGMENT_SIZE;
+            }
+            return this;
+        }
+
+        /**
+         * Set the size of buffer which downloads from the source and responds to the player.
+         *
+         * @param size the size in bytes
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder bufferSize(int size) {
+            if (size > 0) {
+                this.bufferSize = size;
+            }
+            return this;
+        }
+
+        /**
+         * Set the maximum number of bytes kept by the buffer pool, the buffers are reused by
+         * downloads, write buffers and responses instead of being allocated every time.
+         *
+         * @param size the size in bytes, <code>0</code> disables the pool
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder bufferPoolSize(long size) {
+            if (size >= 0) {
+                this.bufferPoolSize = size;
+            }
+            return this;
+        }
+
+        /**
+         * Set the duration a cached file is trusted after the source has validated it. once expired, the url is proxied
+         * instead of the cached file and the source is asked with a conditional request whether it has changed,
+         * the cached file is discarded and cached again if it has.
+         *
+         * @param intervalTime the duration in milliseconds, <code>0</code> trusts a cached file forever, default value
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder revalidateInterval(long intervalTime) {
+            if (intervalTime >= 0) {
+                this.revalidateInterval = intervalTime;
+            }
+            return this;
+        }
+
+        /**
+         * Set the policy of forcing cached bytes to the storage device, default is {@link HttpProxyCacheSyncPolicy#NONE}
+         *
+         * @param policy the policy, see {@link HttpProxyCacheSyncPolicy#ON_COMPLETE} and {@link HttpProxyCacheSyncPolicy#PERIODIC}
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder syncPolicy(HttpProxyCacheSyncPolicy policy) {
+            this.mSyncPolicy = checkNotNull(policy);
+            return this;
+        }
+
+        /**
+         * Serve the admin paths on the port of proxy server, <code>/stats</code> responds the counters of {@link HttpProxyCacheServer#getStats()}
+         * and <code>/debug</code> responds the cached length, the total length and the running downloads of every caching url, both in JSON.
+         * <p>
+         * <b><font color='red'>NOTE:</font></b> the admin paths tell the urls to anyone who can reach the loopback port,
+         * so they are disabled by default and should only be enabled for debugging.
+         * </p>
+         *
+         * @param enabled <code>true</code> serve the admin paths, otherwise <code>false</code>
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder adminEnabled(boolean enabled) {
+            this.adminEnabled = enabled;
+            return this;
+        }
+
+        /**
+         * determine print log or not
+         *
+         * @param enabled <code>true</code> print log, otherwise <code>false</code>
+         * @return This Builder object to allow for chaining of calls to set methods
+         */
+        public Builder logEnabled(boolean enabled) {
+            Logger.enable(enabled);
+            return this;
+        }
+
+        /**
+         * Creates an {@link HttpProxyCacheServer} with the arguments supplied to this
+         * builder.
+         */
+        public HttpProxyCacheServer build() {
+            return new HttpProxyCacheServer(buildConfig());
+        }
+
+        /**
+         * create the config without starting the proxy server, it's also used by the benchmarks of the parts
+         */
+        HttpProxyCacheConfig buildConfig() {
+            mCacheConfig = new HttpProxyCacheConfig(mDispatcher, mDependHeaders, mDiskUsages, mCacheSource, mCacheSink, mCacheStorage, mFileNameGenerator, mCacheRootFile, mUrlFilter, mExecutorService, maxFileSize, maxAttempts, maxTimeouts, sourceTimeout, callbackInterval, nioServerEnabled, downloadConnections, downloadSegmentSize, maxPreloads, healthCheckInterval, writeBufferSize, mSyncPolicy, bufferSize, bufferPoolSize, revalidateInterval, adminEnabled, mContext);
+            // the usages share the disk index of config, so they are created after config
+            if (maxFileCount > 0) {
+                mDiskUsages.add(new LruFilesCountDiskUsage(mCacheConfig, maxFileCount));
+            }
+            if (maxTotalSize > 0) {
+                mDiskUsages.add(new LruFilesSizeDiskUsage(mCacheConfig, maxTotalSize));
+            }
+            if (singleFileSize > 0) {
+                mDiskUsages.add(new LruSingleFileSizeUsage(mCacheConfig, singleFileSize));
+            }
+            return mCacheConfig;
+        }
+    }
+}
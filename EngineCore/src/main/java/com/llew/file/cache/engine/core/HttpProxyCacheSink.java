@@ -0,0 +1,693 @@
+package com.llew.file.cache.engine.core;
+
+import com.llew.file.cache.engine.config.BaseHttpProxyCacheSink;
+import com.llew.file.cache.engine.config.HttpProxyCacheCallback;
+import com.llew.file.cache.engine.config.HttpProxyCacheConfig;
+import com.llew.file.cache.engine.config.HttpProxyCacheSyncPolicy;
+import com.llew.file.cache.engine.exception.HttpProxyCacheException;
+import com.llew.file.cache.engine.info.HttpProxyCacheSourceInfo;
+import com.llew.file.cache.engine.usage.HttpProxyCacheDiskIndex;
+import com.llew.file.cache.engine.utils.Constants;
+import com.llew.file.cache.engine.utils.FileUtils;
+import com.llew.file.cache.engine.utils.Logger;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * a sparse cache file, data can be written at any offset. the file is divided into segments of
+ * {@link Constants#SEGMENT_SIZE} bytes and the completed segments are recorded in a bitmap which
+ * is persisted next to the <code>.download</code> file.
+ * <p>
+ * the writes are serialized by the lock of sink, the reads don't take it: data is read and written by
+ * positional calls of one {@link FileChannel}, and the writer publishes the segments after their bytes
+ * have been written, so a reader only sees the segments it can read.
+ * </p>
+ * <p>
+ * the downloaded bytes are gathered in a write buffer per download and written to the file in large writes,
+ * a buffer is flushed by its download when it's full, when it's older than {@link Constants#WRITE_FLUSH_INTERVAL},
+ * or when the download stops, and the readers are woken up after it. the file is forced by {@link HttpProxyCacheSyncPolicy}.
+ * </p>
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2017/12/30
+ */
+
+class HttpProxyCacheSink extends BaseHttpProxyCacheSink {
+
+    private static final int SEGMENTS_VERSION = 1;
+
+    /**
+     * save the bitmap after this number of segments have completed
+     */
+    private static final int SAVE_SEGMENTS_COUNT = 16;
+
+    /**
+     * flush every buffer when the downloads writing at the same time exceed this number
+     */
+    private static final int MAX_WRITE_BUFFERS = 8;
+
+    private HttpProxyCacheConfig mCacheConfig;
+    private String mUrl;
+    private int mCachedPercent;
+    private NotifyDataSizeChangedRunnable mCallbackRunnable;
+
+    private volatile File mCachedFile;
+    private File mSegmentsFile;
+
+    /**
+     * the file kept from the disk usages while this sink has it open
+     */
+    private File mActiveFile;
+    private RandomAccessFile mAccessFile;
+    private volatile FileChannel mFileChannel;
+    private volatile boolean isCompleted;
+
+    private volatile SegmentBits mSegments = new SegmentBits(0);
+    private final Map<Integer, Integer> mPartialSegments = new ConcurrentHashMap<>();
+    private volatile long mCachedLength;
+
+    /**
+     * the high-water mark of written bytes, nothing after it can be read
+     */
+    private volatile long mFileLength;
+    private int mUnsavedSegments;
+    private long mSourceLength = -1;
+
+    /**
+     * the buffered writes keyed by the offset following their bytes, guarded by the lock of sink
+     */
+    private final Map<Long, WriteBuffer> mWriteBuffers = new HashMap<>();
+    private long mUnsyncedBytes;
+    private long mLastSyncTime;
+
+    HttpProxyCacheSink() {
+    }
+
+    @Override
+    public synchronized void init(HttpProxyCacheConfig config, String url) throws HttpProxyCacheException {
+        this.mCacheConfig = config;
+        this.mUrl = url;
+        File cachedFile = config.generateCacheFile(url);
+        boolean completed = cachedFile.exists();
+        this.mCachedFile = completed ? cachedFile : new File(cachedFile.getParent(), cachedFile.getName() + Constants.DOWNLOAD_SUFFIX);
+        this.mSegmentsFile = new File(cachedFile.getParent(), mCachedFile.getName() + Constants.SEGMENTS_SUFFIX);
+        try {
+            boolean created = false;
+            if (!this.mCachedFile.exists()) {
+                created = this.mCachedFile.createNewFile();
+                if (!created) {
+                    throw new IOException(this.mCachedFile.getName() + " has created failure !!!");
+                }
+            }
+            this.mAccessFile = new RandomAccessFile(this.mCachedFile, completed ? "r" : "rw");
+            this.mFileChannel = mAccessFile.getChannel();
+            this.mFileLength = this.mCachedFile.length();
+            this.mLastSyncTime = System.currentTimeMillis();
+            if (completed) {
+                this.mCachedLength = mFileLength;
+                this.isCompleted = true;
+            } else if (created) {
+                // an empty bitmap tells the file is sparse, a .download file without bitmap is a continuous one
+                saveSegments();
+            } else {
+                loadSegments();
+            }
+            setActiveFile(this.mCachedFile);
+            if (!completed) {
+                // the downloading file is counted by the disk usages as well, it's touched again when completed
+                config.getDiskTrimmer().touch(this.mCachedFile);
+            }
+        } catch (Exception e) {
+            throw new HttpProxyCacheException(e);
+        }
+    }
+
+    @Override
+    public boolean isSparse() {
+        return true;
+    }
+
+    @Override
+    public long available() throws HttpProxyCacheException {
+        return mCachedLength;
+    }
+
+    @Override
+    public long available(long offset) throws HttpProxyCacheException {
+        return getCachedLength(offset);
+    }
+
+    private long getCachedLength(long offset) {
+        if (isCompleted) {
+            return Math.max(0, mFileLength - offset);
+        }
+        final SegmentBits segments = mSegments;
+        long position = offset;
+        int index = getSegmentIndex(offset);
+        while (true) {
+            boolean completedSegment = segments.get(index);
+            long segmentEnd = (long) index * Constants.SEGMENT_SIZE + (completedSegment ? Constants.SEGMENT_SIZE : getPartialLength(index));
+            if (position >= segmentEnd) {
+                break;
+            }
+            position = segmentEnd;
+            if (!completedSegment) {
+                break;
+            }
+            index++;
+        }
+        return Math.max(0, Math.min(position, mFileLength) - offset);
+    }
+
+    @Override
+    public int read(byte[] buffer, long offset, int length) throws HttpProxyCacheException {
+        long cachedLength = available(offset);
+        if (cachedLength <= 0) {
+            return -1;
+        }
+        ByteBuffer target = ByteBuffer.wrap(buffer, 0, (int) Math.min(length, cachedLength));
+        try {
+            return mFileChannel.read(target, offset);
+        } catch (ClosedChannelException e) {
+            // the channel is reopened when cache completes, try again with the new one
+            Logger.e(e);
+            try {
+                target.clear();
+                return mFileChannel.read(target, offset);
+            } catch (Throwable throwable) {
+                throw new HttpProxyCacheException(throwable);
+            }
+        } catch (Throwable e) {
+            throw new HttpProxyCacheException(e);
+        }
+    }
+
+    @Override
+    public long transferTo(long offset, long count, WritableByteChannel target) throws HttpProxyCacheException {
+        try {
+            return transferToInternal(offset, count, target);
+        } catch (ClosedChannelException e) {
+            // the channel is reopened when cache completes, try again with the new one
+            Logger.e(e);
+            try {
+                return transferToInternal(offset, count, target);
+            } catch (Throwable throwable) {
+                throw new HttpProxyCacheException(throwable);
+            }
+        } catch (Throwable e) {
+            throw new HttpProxyCacheException(e);
+        }
+    }
+
+    private long transferToInternal(long offset, long count, WritableByteChannel target) throws IOException {
+        final FileChannel channel = mFileChannel;
+        final long cachedLength = available(offset);
+        return cachedLength > 0 ? channel.transferTo(offset, Math.min(count, cachedLength), target) : 0;
+    }
+
+    @Override
+    public synchronized void append(byte[] data, int length) throws HttpProxyCacheException {
+        write(data, getContinuousEnd(), length);
+    }
+
+    /**
+     * the end of continuous bytes from the beginning, including the buffered bytes which haven't been flushed
+     */
+    private long getContinuousEnd() throws HttpProxyCacheException {
+        long end = available(0);
+        WriteBuffer buffer;
+        while (null != (buffer = findWriteBuffer(end))) {
+            end = buffer.getEnd();
+        }
+        return end;
+    }
+
+    private WriteBuffer findWriteBuffer(long offset) {
+        for (WriteBuffer buffer : mWriteBuffers.values()) {
+            if (buffer.mStart <= offset && offset < buffer.getEnd()) {
+                return buffer;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized void write(byte[] data, long offset, int length) throws HttpProxyCacheException {
+        if (isCompleted()) {
+            throw new HttpProxyCacheException("Error write cache: cache file " + mCachedFile + " is completed!");
+        }
+        if (null == data || length <= 0) {
+            return;
+        }
+        final int bufferSize = mCacheConfig.getWriteBufferSize();
+        if (bufferSize <= 0) {
+            writeInternal(data, offset, length);
+            return;
+        }
+        // the download continues at the end of its buffer
+        WriteBuffer buffer = mWriteBuffers.remove(offset);
+        if (null == buffer) {
+            if (mWriteBuffers.size() >= MAX_WRITE_BUFFERS) {
+                flushInternal();
+            }
+            buffer = new WriteBuffer(mCacheConfig.getBufferPool().obtain(bufferSize), offset);
+        }
+        final long nowTime = System.currentTimeMillis();
+        int position = 0;
+        while (position < length) {
+            if (0 == buffer.mLength) {
+                buffer.mTime = nowTime;
+            }
+            int count = Math.min(length - position, buffer.mData.length - buffer.mLength);
+            System.arraycopy(data, position, buffer.mData, buffer.mLength, count);
+            buffer.mLength += count;
+            position += count;
+            if (buffer.mLength == buffer.mData.length) {
+                flushBuffer(buffer);
+            }
+        }
+        mWriteBuffers.put(buffer.getEnd(), buffer);
+        if (nowTime - buffer.mTime >= Constants.WRITE_FLUSH_INTERVAL) {
+            flushInternal();
+        }
+    }
+
+    @Override
+    public synchronized void flush() throws HttpProxyCacheException {
+        if (!isCompleted) {
+            flushInternal();
+        }
+    }
+
+    private void flushInternal() throws HttpProxyCacheException {
+        Iterator<WriteBuffer> iterator = mWriteBuffers.values().iterator();
+        while (iterator.hasNext()) {
+            WriteBuffer buffer = iterator.next();
+            // a buffer is given back only once, even if its bytes fail to write
+            iterator.remove();
+            try {
+                flushBuffer(buffer);
+            } finally {
+                mCacheConfig.getBufferPool().recycle(buffer.mData);
+            }
+        }
+    }
+
+    private void flushBuffer(WriteBuffer buffer) throws HttpProxyCacheException {
+        if (buffer.mLength > 0) {
+            writeInternal(buffer.mData, buffer.mStart, buffer.mLength);
+            buffer.mStart += buffer.mLength;
+            buffer.mLength = 0;
+        }
+    }
+
+    private void writeInternal(byte[] data, long offset, int length) throws HttpProxyCacheException {
+        try {
+            ByteBuffer source = ByteBuffer.wrap(data, 0, length);
+            long position = offset;
+            while (source.hasRemaining()) {
+                position += mFileChannel.write(source, position);
+            }
+            // publish the bytes before the segments which refer to them
+            mFileLength = Math.max(mFileLength, offset + length);
+            markSegments(offset, offset + length, getSourceLength());
+            mUnsyncedBytes += length;
+            long nowTime = System.currentTimeMillis();
+            if (mCacheConfig.getSyncPolicy().shouldSync(mUnsyncedBytes, nowTime - mLastSyncTime)) {
+                // the bitmap is saved after the bytes it refers to are forced
+                sync(nowTime);
+                saveSegments();
+            } else if (mUnsavedSegments >= SAVE_SEGMENTS_COUNT) {
+                saveSegments();
+            }
+            notifyCachedLengthChanged();
+        } catch (Throwable e) {
+            throw new HttpProxyCacheException(e);
+        }
+    }
+
+    private void sync(long nowTime) throws IOException {
+        mFileChannel.force(false);
+        mUnsyncedBytes = 0;
+        mLastSyncTime = nowTime;
+    }
+
+    @Override
+    public synchronized void close() throws HttpProxyCacheException {
+        if (!isCompleted) {
+            try {
+                flushInternal();
+            } catch (HttpProxyCacheException e) {
+                Logger.e(e);
+            }
+        }
+        if (!isCompleted && mUnsavedSegments > 0) {
+            saveSegments();
+        }
+        FileUtils.closeQuietly(mAccessFile);
+        setActiveFile(null);
+    }
+
+    @Override
+    public synchronized void complete() throws HttpProxyCacheException {
+        if (isCompleted) return;
+        flushInternal();
+        if (mCacheConfig.getSyncPolicy().syncOnComplete()) {
+            try {
+                sync(System.currentTimeMillis());
+            } catch (IOException e) {
+                throw new HttpProxyCacheException(e);
+            }
+        }
+        // the open channel is still readable after the file is renamed or deleted, it is closed once the new one is published
+        RandomAccessFile downloadFile = mAccessFile;
+        File completedFile = mCacheConfig.generateCacheFile(mUrl);
+        boolean renamed = mCachedFile.renameTo(completedFile);
+        if (!renamed) {
+            renamed = FileUtils.copy(mCachedFile, completedFile);
+            Logger.e("copy result = " + renamed);
+            if (!mCachedFile.delete()) {
+                Logger.e("delete failure : " + mCachedFile.getName());
+            }
+        }
+        if (!renamed) {
+            throw new HttpProxyCacheException("Error renaming file " + mCachedFile + " to " + completedFile + " for completion!");
+        }
+        if (!mSegmentsFile.delete()) {
+            Logger.e("delete failure : " + mSegmentsFile.getName());
+        }
+        mCachedFile = completedFile;
+        mFileLength = mCachedLength = completedFile.length();
+        isCompleted = true;
+        mSegments = new SegmentBits(0);
+        mPartialSegments.clear();
+        mCachedPercent = 100;
+        mCacheConfig.getDispatcher().post(mCallbackRunnable);
+        try {
+            mAccessFile = new RandomAccessFile(mCachedFile, "r");
+            mFileChannel = mAccessFile.getChannel();
+            FileUtils.closeQuietly(downloadFile);
+            setActiveFile(mCachedFile);
+            mCacheConfig.getDiskTrimmer().touch(mCachedFile);
+            Logger.e("file : " + completedFile.getName() + " has successfully cached and cache size = " + this.mCachedFile.length());
+        } catch (Throwable e) {
+            throw new HttpProxyCacheException(e);
+        }
+    }
+
+    @Override
+    public synchronized void reset() throws HttpProxyCacheException {
+        for (WriteBuffer buffer : mWriteBuffers.values()) {
+            mCacheConfig.getBufferPool().recycle(buffer.mData);
+        }
+        mWriteBuffers.clear();
+        // hide the bytes from readers before the file is deleted
+        File cachedFile = mCachedFile;
+        boolean completed = isCompleted;
+        isCompleted = false;
+        mSegments = new SegmentBits(0);
+        mPartialSegments.clear();
+        mFileLength = mCachedLength = 0;
+        mUnsavedSegments = 0;
+        mSourceLength = -1;
+        mCachedPercent = 0;
+        FileUtils.closeQuietly(mAccessFile);
+        setActiveFile(null);
+        mCacheConfig.getDiskIndex().remove(cachedFile);
+        if (cachedFile.exists() && !cachedFile.delete()) {
+            Logger.e("delete failure : " + cachedFile.getName());
+        }
+        if (mSegmentsFile.exists() && !mSegmentsFile.delete()) {
+            Logger.e("delete failure : " + mSegmentsFile.getName());
+        }
+        Logger.e("file : " + cachedFile.getName() + " has reset because the source has changed");
+        init(mCacheConfig, mUrl);
+    }
+
+    @Override
+    public boolean isCompleted() {
+        return isCompleted;
+    }
+
+    @Override
+    public synchronized com.llew.file.cache.engine.config.HttpProxyCacheSink clone(HttpProxyCacheConfig config) throws HttpProxyCacheException {
+        return new HttpProxyCacheSink();
+    }
+
+    private static int getSegmentIndex(long offset) {
+        return (int) (offset / Constants.SEGMENT_SIZE);
+    }
+
+    private int getPartialLength(int index) {
+        Integer length = mPartialSegments.get(index);
+        return null == length ? 0 : length;
+    }
+
+    /**
+     * record the range [start, end) has written, a segment only grows from its beginning,
+     * data written after a gap inside a segment is not recorded and will be fetched again.
+     */
+    private void markSegments(long start, long end, long sourceLength) {
+        for (int index = getSegmentIndex(start), last = getSegmentIndex(end - 1); index <= last; index++) {
+            SegmentBits segments = mSegments;
+            if (segments.get(index)) {
+                continue;
+            }
+            long segmentStart = (long) index * Constants.SEGMENT_SIZE;
+            long segmentEnd = segmentStart + Constants.SEGMENT_SIZE;
+            if (sourceLength > 0) {
+                segmentEnd = Math.min(segmentEnd, sourceLength);
+            }
+            int partialLength = getPartialLength(index);
+            if (start > segmentStart + partialLength) {
+                continue;
+            }
+            int length = (int) (Math.min(end, segmentEnd) - segmentStart);
+            if (length <= partialLength) {
+                continue;
+            }
+            mCachedLength += length - partialLength;
+            if (segmentStart + length >= segmentEnd) {
+                if (!segments.canSet(index)) {
+                    mSegments = segments = segments.grow(index);
+                }
+                segments.set(index);
+                mPartialSegments.remove(index);
+                mUnsavedSegments++;
+            } else {
+                mPartialSegments.put(index, length);
+            }
+        }
+    }
+
+    private void loadSegments() {
+        if (!mSegmentsFile.exists()) {
+            // cached by the old version, the bytes are continuous from the beginning
+            if (mFileLength > 0) {
+                markSegments(0, mFileLength, getSourceLength());
+                saveSegments();
+            }
+            return;
+        }
+        DataInputStream inputStream = null;
+        try {
+            inputStream = new DataInputStream(new FileInputStream(mSegmentsFile));
+            if (SEGMENTS_VERSION != inputStream.readInt() || Constants.SEGMENT_SIZE != inputStream.readInt()) {
+                throw new IOException("segments of " + mSegmentsFile.getName() + " is out of date");
+            }
+            byte[] bytes = new byte[inputStream.readInt()];
+            inputStream.readFully(bytes);
+            BitSet bits = BitSet.valueOf(bytes);
+            SegmentBits segments = new SegmentBits(bits.length());
+            long cachedLength = 0;
+            for (int index = bits.nextSetBit(0); index >= 0; index = bits.nextSetBit(index + 1)) {
+                long segmentStart = (long) index * Constants.SEGMENT_SIZE;
+                if (segmentStart >= mFileLength) {
+                    break;
+                }
+                segments.set(index);
+                cachedLength += Math.min(Constants.SEGMENT_SIZE, mFileLength - segmentStart);
+            }
+            mSegments = segments;
+            mCachedLength = cachedLength;
+        } catch (Throwable e) {
+            // the bytes can't be trusted without bitmap, fetch them again
+            Logger.e(e);
+            mSegments = new SegmentBits(0);
+            mCachedLength = 0;
+        } finally {
+            FileUtils.closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * keep the opened file from the disk usages, the previous one is given back
+     */
+    private void setActiveFile(File file) {
+        HttpProxyCacheDiskIndex diskIndex = mCacheConfig.getDiskIndex();
+        if (null != mActiveFile) {
+            diskIndex.release(mActiveFile);
+        }
+        mActiveFile = file;
+        if (null != file) {
+            diskIndex.acquire(file);
+        }
+    }
+
+    private void saveSegments() {
+        DataOutputStream outputStream = null;
+        try {
+            byte[] bytes = mSegments.toBitSet().toByteArray();
+            outputStream = new DataOutputStream(new FileOutputStream(mSegmentsFile));
+            outputStream.writeInt(SEGMENTS_VERSION);
+            outputStream.writeInt(Constants.SEGMENT_SIZE);
+            outputStream.writeInt(bytes.length);
+            outputStream.write(bytes);
+            outputStream.flush();
+            mUnsavedSegments = 0;
+        } catch (Throwable e) {
+            Logger.e(e);
+        } finally {
+            FileUtils.closeQuietly(outputStream);
+        }
+    }
+
+    private long getSourceLength() {
+        if (mSourceLength > 0) {
+            return mSourceLength;
+        }
+        try {
+            HttpProxyCacheSourceInfo sourceInfo = mCacheConfig.getCacheStorage().get(mUrl);
+            return null == sourceInfo ? -1 : (mSourceLength = sourceInfo.length);
+        } catch (Throwable e) {
+            Logger.e(e);
+        }
+        return -1;
+    }
+
+    private void notifyCachedLengthChanged() {
+        try {
+            final long totalLength   = getSourceLength();
+            if (totalLength < 0) {
+                return;
+            }
+            final long currentLength = available();
+            mCachedPercent = 0 == totalLength ? 100 : Math.round(currentLength * 1.0f / totalLength * 100);
+            if (null == mCallbackRunnable) {
+                mCacheConfig.getDispatcher().post(mCallbackRunnable = new NotifyDataSizeChangedRunnable());
+            }
+        } catch (Throwable e) {
+            Logger.e(e);
+        }
+    }
+
+    /**
+     * the completed segments, a bit is only set by the writer after the bytes of segment have written,
+     * and read without lock. a larger copy replaces it when the file grows, a reader holding the old one
+     * sees fewer segments, never a segment which hasn't written.
+     */
+    private static final class SegmentBits {
+
+        private final AtomicLongArray mWords;
+
+        SegmentBits(int count) {
+            this.mWords = new AtomicLongArray(Math.max(1, (count + 63) >>> 6));
+        }
+
+        private SegmentBits(SegmentBits segments, int count) {
+            this(count);
+            for (int i = 0; i < segments.mWords.length(); i++) {
+                mWords.set(i, segments.mWords.get(i));
+            }
+        }
+
+        boolean get(int index) {
+            int word = index >>> 6;
+            return word < mWords.length() && 0 != (mWords.get(word) & (1L << index));
+        }
+
+        boolean canSet(int index) {
+            return (index >>> 6) < mWords.length();
+        }
+
+        /**
+         * only called by the writer
+         */
+        void set(int index) {
+            int word = index >>> 6;
+            mWords.set(word, mWords.get(word) | (1L << index));
+        }
+
+        SegmentBits grow(int index) {
+            // double the capacity, so the copies are amortized while a file of unknown length grows
+            return new SegmentBits(this, Math.max(index + 1, mWords.length() << 7));
+        }
+
+        BitSet toBitSet() {
+            long[] words = new long[mWords.length()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = mWords.get(i);
+            }
+            return BitSet.valueOf(words);
+        }
+    }
+
+    /**
+     * the bytes of one download which haven't written, they are continuous from the start
+     */
+    private static final class WriteBuffer {
+
+        private final byte[] mData;
+        private long mStart;
+        private int mLength;
+        private long mTime;
+
+        WriteBuffer(byte[] data, long start) {
+            this.mData = data;
+            this.mStart = start;
+        }
+
+        long getEnd() {
+            return mStart + mLength;
+        }
+    }
+
+    private class NotifyDataSizeChangedRunnable implements Runnable {
+
+        private long mLastPercent = -1;
+
+        NotifyDataSizeChangedRunnable() {
+        }
+
+        @Override
+        public void run() {
+            if (null != mCacheConfig) {
+                HttpProxyCacheCallback callback = mCacheConfig.getCacheCallback(mUrl);
+                if (null != callback && mLastPercent != mCachedPercent && mCachedPercent <= 100) {
+                    callback.progress(mUrl, mCachedPercent, 100 == mCachedPercent);
+                    if (null != mCallbackRunnable && mCachedPercent < 100) {
+                        mCacheConfig.getDispatcher().post(this, mCacheConfig.getTimeInternal());
+                    }
+                    mLastPercent = mCachedPercent;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package com.llew.file.cache.engine.core;
+
+import com.llew.file.cache.engine.config.BaseHttpProxyCacheSource;
+import com.llew.file.cache.engine.config.HttpProxyCacheConfig;
+import com.llew.file.cache.engine.config.HttpProxyCacheHeaders;
+import com.llew.file.cache.engine.exception.HttpProxyCacheException;
+import com.llew.file.cache.engine.exception.HttpProxyCacheRangeIgnoredException;
+import com.llew.file.cache.engine.exception.HttpProxyCacheSourceChangedException;
+import com.llew.file.cache.engine.info.HttpProxyCacheSourceInfo;
+import com.llew.file.cache.engine.utils.Constants;
+import com.llew.file.cache.engine.utils.FileUtils;
+import com.llew.file.cache.engine.utils.Logger;
+import com.llew.file.cache.engine.utils.TextUtils;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.llew.file.cache.engine.utils.Preconditions.checkNotNull;
+import static java.net.HttpURLConnection.HTTP_MOVED_PERM;
+import static java.net.HttpURLConnection.HTTP_MOVED_TEMP;
+import static java.net.HttpURLConnection.HTTP_MULT_CHOICE;
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
+import static java.net.HttpURLConnection.HTTP_OK;
+import static java.net.HttpURLConnection.HTTP_PARTIAL;
+import static java.net.HttpURLConnection.HTTP_SEE_OTHER;
+
+/**
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2017/12/29
+ */
+
+class HttpProxyCacheSource extends BaseHttpProxyCacheSource {
+
+    private String mUrl;
+
+    private InputStream mInputStream;
+    private HttpURLConnection mConnection;
+
+    /**
+     * the body has read to the end, the connection goes back to the pool of {@link HttpURLConnection} when closed
+     */
+    private boolean isEndOfStream;
+
+    private HttpProxyCacheConfig mCacheConfig;
+
+    @Override
+    public synchronized void init(HttpProxyCacheConfig config, String url) throws HttpProxyCacheException {
+        this.mUrl = checkNotNull(url);
+        this.mCacheConfig = checkNotNull(config);
+    }
+
+    @Override
+    public synchronized void open() throws HttpProxyCacheException {
+        open(0);
+    }
+
+    @Override
+    public synchronized void open(long offset) throws HttpProxyCacheException {
+        open(offset, -1);
+    }
+
+    @Override
+    public synchronized void open(long offset, long end) throws HttpProxyCacheException {
+        try {
+            mConnection = openHttpUrlConnection(offset, end, -1);
+            isEndOfStream = false;
+            // the stream is read by large pooled buffers, it needs no buffer of its own
+            mInputStream = mConnection.getInputStream();
+            if (!mCacheConfig.isPingRequest(mUrl)) {
+                int responseCode = mConnection.getResponseCode();
+                long length = getContentLength(mConnection, offset, end, responseCode);
+                HttpProxyCacheSourceInfo sourceInfo = generateSourceInfo(mConnection, length);
+                HttpProxyCacheSourceInfo storedInfo = mCacheConfig.getCacheStorage().get(mUrl);
+                if (null != storedInfo && storedInfo.isChanged(sourceInfo)) {
+                    mCacheConfig.getCacheStorage().put(mUrl, sourceInfo);
+                    throw new HttpProxyCacheSourceChangedException("source has changed from " + storedInfo + " to " + sourceInfo);
+                }
+                if ((offset > 0 || end > 0) && !(responseCode == HTTP_PARTIAL && FileUtils.getRangeStart(mConnection.getHeaderField("Content-Range")) == offset)) {
+                    if (responseCode == HTTP_OK && length > 0) {
+                        // the whole source is responded, its length is still right
+                        mCacheConfig.getCacheStorage().put(mUrl, null == storedInfo ? sourceInfo : sourceInfo.validatedAt(storedInfo.validatedTime));
+                    }
+                    throw new HttpProxyCacheRangeIgnoredException("source responded " + responseCode + " with Content-Range " + mConnection.getHeaderField("Content-Range") + " for offset " + offset);
+                }
+                if (length < 0 && end > 0) {
+                    // the total length is unknown from a closed range, keep the stored one
+                    return;
+                }
+                // the source is only validated by revalidate()
+                sourceInfo = null == storedInfo ? sourceInfo : sourceInfo.validatedAt(storedInfo.validatedTime);
+                mCacheConfig.getCacheStorage().put(mUrl, sourceInfo);
+                Logger.e("cache source connection has opened with source info : " + sourceInfo.toString() + " and offset = " + offset);
+            }
+        } catch (HttpProxyCacheException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new HttpProxyCacheException(e);
+        }
+    }
+
+    @Override
+    public synchronized boolean revalidate() throws HttpProxyCacheException {
+        HttpProxyCacheSourceInfo storedInfo = mCacheConfig.getCacheStorage().get(mUrl);
+        if (null == storedInfo) {
+            return true;
+        }
+        Map<String, String> conditions = new HashMap<>();
+        if (!TextUtils.isEmpty(storedInfo.etag)) {
+            conditions.put("If-None-Match", storedInfo.etag);
+        }
+        if (!TextUtils.isEmpty(storedInfo.lastModified)) {
+            conditions.put("If-Modified-Since", storedInfo.lastModified);
+        }
+        // only the first byte is asked in case the conditions are ignored by source
+        HttpURLConnection connection = generateConnection(0, 1, -1, "GET", conditions);
+        try {
+            int responseCode = connection.getResponseCode();
+            long nowTime = System.currentTimeMillis();
+            if (HTTP_NOT_MODIFIED != responseCode) {
+                HttpProxyCacheSourceInfo sourceInfo = generateSourceInfo(connection, getContentLength(connection, 0, 1, responseCode));
+                if (storedInfo.isChanged(sourceInfo)) {
+                    mCacheConfig.getCacheStorage().put(mUrl, sourceInfo.validatedAt(nowTime));
+                    Logger.e("cache source has changed, source info : " + sourceInfo.toString());
+                    return false;
+                }
+            }
+            mCacheConfig.getCacheStorage().put(mUrl, storedInfo.validatedAt(nowTime));
+            return true;
+        } catch (HttpProxyCacheException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new HttpProxyCacheException(e);
+        } finally {
+            // the whole body may be responded if the range is ignored, don't read it
+            connection.disconnect();
+        }
+    }
+
+    private HttpProxyCacheSourceInfo generateSourceInfo(HttpURLConnection connection, long length) {
+        return new HttpProxyCacheSourceInfo(mUrl, connection.getContentType(), length, connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"), System.currentTimeMillis());
+    }
+
+    private long getContentLength(HttpURLConnection connection, long offset, long end, int responseCode) {
+        long contentLength = getContentLength(connection);
+        if (responseCode == HTTP_PARTIAL) {
+            long totalLength = getTotalLength(connection);
+            return totalLength > 0 ? totalLength : end > 0 ? Integer.MIN_VALUE : contentLength + offset;
+        }
+        return responseCode == HTTP_OK ? contentLength : Integer.MIN_VALUE;
+    }
+
+    /**
+     * the total length of source in header <code>Content-Range: bytes 0-99/1000</code>
+     */
+    private long getTotalLength(HttpURLConnection connection) {
+        String contentRange = connection.getHeaderField("Content-Range");
+        int index = null == contentRange ? -1 : contentRange.lastIndexOf('/');
+        String totalLength = index < 0 ? null : contentRange.substring(index + 1).trim();
+        return !TextUtils.isEmpty(totalLength) && TextUtils.isDigitsOnly(totalLength) ? Long.parseLong(totalLength) : Integer.MIN_VALUE;
+    }
+
+    private long getContentLength(HttpURLConnection connection) {
+        String contentLength = connection.getHeaderField("Content-Length");
+        return !TextUtils.isEmpty(contentLength) && TextUtils.isDigitsOnly(contentLength) ? Long.parseLong(contentLength) : Integer.MIN_VALUE;
+    }
+
+    @Override
+    public synchronized long length() throws HttpProxyCacheException {
+        if (mCacheConfig.isPingRequest(mUrl)) {
+            return 0;
+        }
+        HttpProxyCacheSourceInfo info = mCacheConfig.getCacheStorage().get(mUrl);
+        long length = null == info ? 0 : info.length;
+        if (length <= 0) {
+            return fetchSourceInfo().length;
+        }
+        return length;
+    }
+
+    @Override
+    public synchronized String mime() throws HttpProxyCacheException {
+        if (mCacheConfig.isPingRequest(mUrl)) {
+            return "";
+        }
+        HttpProxyCacheSourceInfo info = mCacheConfig.getCacheStorage().get(mUrl);
+        String mime = null == info ? null : info.mime;
+
+        if (TextUtils.isEmpty(mime)) {
+            return fetchSourceInfo().mime;
+        }
+        return mime;
+    }
+
+    @Override
+    public synchronized HttpProxyCacheSourceInfo sourceInfo(String url) throws HttpProxyCacheException {
+        if (mCacheConfig.isPingRequest(mUrl)) {
+            return new HttpProxyCacheSourceInfo(mUrl, "", 0);
+        }
+        HttpProxyCacheSourceInfo info = mCacheConfig.getCacheStorage().get(mUrl);
+        if (null != info && info.length > 0 && !TextUtils.isEmpty(info.mime)) {
+            return info;
+        }
+        return fetchSourceInfo();
+    }
+
+    private HttpProxyCacheSourceInfo fetchSourceInfo() throws HttpProxyCacheException {
+        return fetchSourceInfo(fetchHttpUrlConnection(0, mCacheConfig.getSourceTimeout()));
+    }
+
+    private HttpProxyCacheSourceInfo fetchSourceInfo(HttpURLConnection connection) throws HttpProxyCacheException {
+        try {
+            long length = getContentLength(connection);
+            String mime = connection.getContentType();
+            HttpProxyCacheSourceInfo info = new HttpProxyCacheSourceInfo(mUrl, mime, length);
+            mCacheConfig.getCacheStorage().put(mUrl, info);
+
+            Logger.e("cache source fetch source info has successful  info : " + info.toString());
+            return info;
+        } catch (Throwable e) {
+            throw new HttpProxyCacheException(e);
+        } finally {
+            // the response of HEAD has no body, closing its stream gives the connection back to the pool
+            try {
+                FileUtils.closeQuietly(connection.getInputStream());
+            } catch (Exception e) {
+                Logger.e(e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized int read(byte[] buffer) throws HttpProxyCacheException {
+        try {
+            int readBytes = mInputStream.read(buffer, 0, buffer.length);
+            isEndOfStream = -1 == readBytes;
+            return readBytes;
+        } catch (Exception e) {
+            throw new HttpProxyCacheException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws HttpProxyCacheException {
+        FileUtils.closeQuietly(mInputStream);
+        if (null != mConnection) {
+            if (!isEndOfStream) {
+                // the rest of body would be read to reuse the connection, drop it instead
+                mConnection.disconnect();
+            }
+        }
+        mUrl = null;
+        mConnection = null;
+        mInputStream = null;
+        mCacheConfig = null;
+    }
+
+    @Override
+    public synchronized com.llew.file.cache.engine.config.HttpProxyCacheSource clone(HttpProxyCacheConfig config) throws HttpProxyCacheException {
+        return new HttpProxyCacheSource();
+    }
+
+    private HttpURLConnection openHttpUrlConnection(long offset, long end, int timeout) throws HttpProxyCacheException {
+        Map<String, String> conditions = null;
+        HttpProxyCacheSourceInfo storedInfo = offset > 0 || end > 0 ? mCacheConfig.getCacheStorage().get(mUrl) : null;
+        String ifRange = null == storedInfo ? null : storedInfo.getIfRange();
+        if (null != ifRange) {
+            // the whole source is responded instead of the range if it has changed
+            conditions = Collections.singletonMap("If-Range", ifRange);
+        }
+        return generateConnection(offset, end, timeout, "GET", conditions);
+    }
+
+    private HttpURLConnection fetchHttpUrlConnection(long offset, int timeout) throws HttpProxyCacheException {
+        return generateConnection(offset, -1, timeout, "HEAD", null);
+    }
+
+    private HttpURLConnection generateConnection(long offset, long end, int timeout, String method, Map<String, String> conditions) throws HttpProxyCacheException {
+        try {
+            int redirectCount = 0;
+            String sourUrl = mUrl;
+            boolean redirected = false;
+            do {
+                URL url = new URL(sourUrl);
+                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                connection.setRequestMethod(method);
+                appendHttpHeaders(connection, mUrl);
+                if (null != conditions) {
+                    for (Map.Entry<String, String> condition : conditions.entrySet()) {
+                        connection.setRequestProperty(condition.getKey(), condition.getValue());
+                    }
+                }
+                if (end > 0) {
+                    connection.setRequestProperty("Range", "bytes=" + offset + "-" + (end - 1));
+                } else if (offset > 0) {
+                    connection.setRequestProperty("Range", "bytes=" + offset + "-");
+                }
+                if (timeout > 0) {
+                    connection.setConnectTimeout(timeout);
+                    connection.setReadTimeout(timeout);
+                }
+                int resultCode = connection.getResponseCode();
+                redirected = resultCode == HTTP_MOVED_PERM || resultCode == HTTP_MOVED_TEMP || resultCode == HTTP_SEE_OTHER || resultCode == HTTP_MULT_CHOICE;
+                if (redirected) {
+                    sourUrl = connection.getHeaderField("Location");
+                    redirectCount++;
+                    connection.disconnect();
+                } else {
+                    return connection;
+                }
+                if (redirectCount > Constants.REDIRECT_COUNT) {
+                    throw new HttpProxyCacheException("Too many redirects: " + redirectCount);
+                }
+            } while (redirected);
+        } catch (Throwable e) {
+            Logger.e(e);
+        }
+        throw new HttpProxyCacheException("source can't open connection for url : " + mUrl);
+    }
+
+    private void appendHttpHeaders(HttpURLConnection connection, String url) {
+        if (null != mCacheConfig) {
+            appendHttpHeaders(connection, mCacheConfig.getDependHeaders(), url);
+            appendHttpHeaders(connection, mCacheConfig.getCacheHeaders(url), url);
+        }
+    }
+
+    private void appendHttpHeaders(HttpURLConnection connection, HttpProxyCacheHeaders httpHeaders, String url) {
+        if (null != connection && null != httpHeaders && !TextUtils.isEmpty(url)) {
+            Map<String, String> headers = httpHeaders.appendHeaders(url);
+            if (null != headers) {
+                for (Map.Entry<String, String> header : headers.entrySet()) {
+                    if (null != header && null != header.getKey() && null != header.getValue()) {
+                        connection.setRequestProperty(header.getKey(), header.getValue());
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.llew.file.cache.engine.core;
+
+import com.llew.file.cache.engine.config.HttpProxyCacheStorage;
+import com.llew.file.cache.engine.exception.HttpProxyCacheException;
+import com.llew.file.cache.engine.info.HttpProxyCacheSourceInfo;
+import com.llew.file.cache.engine.utils.Constants;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.llew.file.cache.engine.utils.Preconditions.checkNotNull;
+
+/**
+ * the default storage of core, the source infos are lost after restart and learned again from the first response
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/18
+ */
+
+class HttpProxyMemoryStorage implements HttpProxyCacheStorage {
+
+    private final ConcurrentHashMap<String, HttpProxyCacheSourceInfo> infos = new ConcurrentHashMap<>();
+
+    @Override
+    public HttpProxyCacheSourceInfo get(String url) throws HttpProxyCacheException {
+        return null == url ? null : infos.get(url);
+    }
+
+    @Override
+    public void put(String url, HttpProxyCacheSourceInfo info) throws HttpProxyCacheException {
+        checkNotNull(url);
+        checkNotNull(info);
+
+        if (!url.contains(Constants.HOST)) {
+            infos.put(url, info);
+        }
+    }
+
+    @Override
+    public void release() throws HttpProxyCacheException {
+    }
+}
@@ -11,6 +11,8 @@ import java.io.IOException;
 
 public class HttpProxyCacheException extends IOException {
 
+    private static final long serialVersionUID = 1L;
+
     public HttpProxyCacheException() {
         super();
     }
@@ -0,0 +1,19 @@
+package com.llew.file.cache.engine.exception;
+
+/**
+ * the source has ignored the <code>Range</code> of request, its response doesn't start at the asked offset.
+ * the bytes of response can't be written at the offset, the source should be read from the beginning instead.
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/20
+ */
+
+public class HttpProxyCacheRangeIgnoredException extends HttpProxyCacheException {
+
+    private static final long serialVersionUID = 1L;
+
+    public HttpProxyCacheRangeIgnoredException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,19 @@
+package com.llew.file.cache.engine.exception;
+
+/**
+ * the source has changed since it was cached, the validators of response don't match the stored ones.
+ * the cached bytes can't be combined with the new ones and should be discarded.
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/11
+ */
+
+public class HttpProxyCacheSourceChangedException extends HttpProxyCacheException {
+
+    private static final long serialVersionUID = 1L;
+
+    public HttpProxyCacheSourceChangedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,119 @@
+package com.llew.file.cache.engine.info;
+
+import com.llew.file.cache.engine.utils.TextUtils;
+
+/**
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2017/12/29
+ */
+
+public class HttpProxyCacheSourceInfo {
+
+    public final String url;
+    public final String mime;
+    public final long length;
+
+    /**
+     * the validators of source, the value of header <code>ETag</code> and <code>Last-Modified</code>, empty if absent
+     */
+    public final String etag;
+    public final String lastModified;
+
+    /**
+     * the time in milliseconds when the source has confirmed the validators lately
+     */
+    public final long validatedTime;
+
+    public HttpProxyCacheSourceInfo(String url, String mime, long length) {
+        this(url, mime, length, null, null, System.currentTimeMillis());
+    }
+
+    public HttpProxyCacheSourceInfo(String url, String mime, long length, String etag, String lastModified, long validatedTime) {
+        this.url = null == url ? "" : url;
+        this.mime = null == mime ? "" : mime;
+        this.length = length;
+        this.etag = null == etag ? "" : etag;
+        this.lastModified = null == lastModified ? "" : lastModified;
+        this.validatedTime = validatedTime;
+    }
+
+    /**
+     * @return a copy of this info confirmed by the source at the time
+     */
+    public HttpProxyCacheSourceInfo validatedAt(long time) {
+        return new HttpProxyCacheSourceInfo(url, mime, length, etag, lastModified, time);
+    }
+
+    /**
+     * @param ttl the duration in milliseconds the info is trusted after validated, <code>0</code> means forever
+     * @return <code>true</code> if the source should be asked whether it has changed
+     */
+    public boolean isExpired(long ttl) {
+        return ttl > 0 && System.currentTimeMillis() - validatedTime >= ttl;
+    }
+
+    /**
+     * determine the source has changed or not by the info of a new response, the validators
+     * are compared only if both of them are known.
+     *
+     * @param info the info of new response
+     * @return <code>true</code> means the cached bytes can't be combined with the new response
+     */
+    public boolean isChanged(HttpProxyCacheSourceInfo info) {
+        if (null == info) {
+            return false;
+        }
+        if (!TextUtils.isEmpty(etag) && !TextUtils.isEmpty(info.etag)) {
+            if (!TextUtils.equals(etag, info.etag)) {
+                return true;
+            }
+        } else if (!TextUtils.isEmpty(lastModified) && !TextUtils.isEmpty(info.lastModified) && !TextUtils.equals(lastModified, info.lastModified)) {
+            return true;
+        }
+        return length > 0 && info.length > 0 && length != info.length;
+    }
+
+    /**
+     * the validator of header <code>If-Range</code>, a weak etag can't be used, see RFC 7233 section 3.2
+     *
+     * @return <code>null</code> if no validator can be used
+     */
+    public String getIfRange() {
+        if (!TextUtils.isEmpty(etag) && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return TextUtils.isEmpty(lastModified) ? null : lastModified;
+    }
+
+    @Override
+    public int hashCode() {
+        long prime = 0;
+        prime = prime * 31 + (TextUtils.isEmpty(url) ? 0 : url.hashCode());
+        prime = prime * 31 + (TextUtils.isEmpty(mime) ? 0 : mime.hashCode());
+        prime = prime * 31 + length;
+        prime = prime * 31 + (TextUtils.isEmpty(etag) ? 0 : etag.hashCode());
+        prime = prime * 31 + (TextUtils.isEmpty(lastModified) ? 0 : lastModified.hashCode());
+        prime = prime * 31 + validatedTime;
+        return (int) prime;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof HttpProxyCacheSourceInfo)) {
+            return false;
+        }
+        HttpProxyCacheSourceInfo info = (HttpProxyCacheSourceInfo) obj;
+        return this.length == info.length && this.validatedTime == info.validatedTime && TextUtils.equals(this.url, info.url) && TextUtils.equals(this.mime, info.mime)
+                && TextUtils.equals(this.etag, info.etag) && TextUtils.equals(this.lastModified, info.lastModified);
+    }
+
+    @Override
+    public String toString() {
+        return "SourceInfo = { url:" + url + ", mime = " + mime + ", length = " + length + ", etag = " + etag + ", lastModified = " + lastModified + ", validatedTime = " + validatedTime + "}";
+    }
+}
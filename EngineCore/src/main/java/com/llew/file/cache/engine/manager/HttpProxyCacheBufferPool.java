@@ -0,0 +1,107 @@
+package com.llew.file.cache.engine.manager;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * a bounded pool of byte arrays shared by the downloads, the sinks and the responses, the arrays
+ * are kept by their size and dropped when the pool is full.
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/10
+ */
+
+public final class HttpProxyCacheBufferPool {
+
+    private final int mBufferSize;
+    private final long mMaxPoolSize;
+    private final Map<Integer, ArrayDeque<byte[]>> mBuffers = new HashMap<>();
+    private long mPoolSize;
+
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+
+    /**
+     * @param bufferSize  the size of buffer returned by {@link #obtain()}
+     * @param maxPoolSize the maximum number of bytes kept by the pool
+     */
+    public HttpProxyCacheBufferPool(int bufferSize, long maxPoolSize) {
+        this.mBufferSize = bufferSize;
+        this.mMaxPoolSize = maxPoolSize;
+    }
+
+    public int getBufferSize() {
+        return mBufferSize;
+    }
+
+    /**
+     * @return a buffer of {@link #getBufferSize()} bytes, it should be recycled after used
+     */
+    public byte[] obtain() {
+        return obtain(mBufferSize);
+    }
+
+    /**
+     * @param size the size of buffer
+     * @return a buffer of the size, it should be recycled after used
+     */
+    public byte[] obtain(int size) {
+        byte[] buffer = null;
+        synchronized (this) {
+            ArrayDeque<byte[]> buffers = mBuffers.get(size);
+            if (null != buffers && null != (buffer = buffers.pollLast())) {
+                mPoolSize -= size;
+            }
+        }
+        if (null == buffer) {
+            mMissCount.incrementAndGet();
+            return new byte[size];
+        }
+        mHitCount.incrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * give back a buffer, it mustn't be used after recycled
+     *
+     * @param buffer the buffer obtained from pool
+     */
+    public void recycle(byte[] buffer) {
+        if (null == buffer) {
+            return;
+        }
+        synchronized (this) {
+            if (mPoolSize + buffer.length > mMaxPoolSize) {
+                return;
+            }
+            ArrayDeque<byte[]> buffers = mBuffers.get(buffer.length);
+            if (null == buffers) {
+                mBuffers.put(buffer.length, buffers = new ArrayDeque<byte[]>());
+            }
+            buffers.addLast(buffer);
+            mPoolSize += buffer.length;
+        }
+    }
+
+    /**
+     * @return the number of buffers reused from pool
+     */
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * @return the number of buffers allocated because the pool has none
+     */
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "BufferPool = { bufferSize = " + mBufferSize + ", hitCount = " + getHitCount() + ", missCount = " + getMissCount() + "}";
+    }
+}
@@ -1,9 +1,8 @@
 package com.llew.file.cache.engine.manager;
 
-import android.text.TextUtils;
-
 import com.llew.file.cache.engine.exception.HttpProxyCacheException;
 import com.llew.file.cache.engine.utils.Logger;
+import com.llew.file.cache.engine.utils.TextUtils;
 
 import java.io.IOException;
 import java.net.Proxy;
@@ -0,0 +1,315 @@
+package com.llew.file.cache.engine.manager;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * the counters of proxy server, they tell how much traffic is served by the cached files instead of the source.
+ * every counter is updated without lock, so it's cheap enough for the loops which stream the bytes.
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/19
+ */
+
+public final class HttpProxyCacheStats {
+
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mPartialHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+    private final AtomicLong mCachedUrlCount = new AtomicLong();
+
+    private final AtomicLong mDiskBytes = new AtomicLong();
+    private final AtomicLong mPassThroughBytes = new AtomicLong();
+    private final AtomicLong mOriginBytes = new AtomicLong();
+
+    private final AtomicLong mUpstreamCount = new AtomicLong();
+    private final AtomicLong mUpstreamFailureCount = new AtomicLong();
+
+    private final AtomicLong mEvictionCount = new AtomicLong();
+    private final AtomicLong mEvictionBytes = new AtomicLong();
+
+    private final AtomicInteger mActiveSockets = new AtomicInteger();
+    private final AtomicInteger mActiveDownloads = new AtomicInteger();
+
+    private final Histogram mTtfbHistogram = new Histogram();
+    private final Histogram mUpstreamHistogram = new Histogram();
+
+    /**
+     * a request whose bytes have all cached when it arrives
+     */
+    public void onHit() {
+        mHitCount.incrementAndGet();
+    }
+
+    /**
+     * a request whose bytes have partly cached when it arrives, the rest is fetched from source
+     */
+    public void onPartialHit() {
+        mPartialHitCount.incrementAndGet();
+    }
+
+    /**
+     * a request whose bytes haven't cached when it arrives, or which is passed through to source
+     */
+    public void onMiss() {
+        mMissCount.incrementAndGet();
+    }
+
+    /**
+     * a proxy url has been answered with the completely cached file, the player reads it without the proxy server
+     */
+    public void onCachedUrl() {
+        mCachedUrlCount.incrementAndGet();
+    }
+
+    /**
+     * @param bytes the number of bytes responded to a player from cached file
+     */
+    public void onDiskBytes(long bytes) {
+        mDiskBytes.addAndGet(bytes);
+    }
+
+    /**
+     * @param bytes the number of bytes responded to a player straight from source, they aren't cached
+     */
+    public void onPassThroughBytes(long bytes) {
+        mPassThroughBytes.addAndGet(bytes);
+    }
+
+    /**
+     * @param bytes the number of bytes read from source, by downloads, preloads and pass-through responses
+     */
+    public void onOriginBytes(long bytes) {
+        mOriginBytes.addAndGet(bytes);
+    }
+
+    /**
+     * @param nanos the duration of opening the connection to source
+     */
+    public void onUpstreamOpened(long nanos) {
+        mUpstreamCount.incrementAndGet();
+        mUpstreamHistogram.record(nanos);
+    }
+
+    public void onUpstreamFailed() {
+        mUpstreamFailureCount.incrementAndGet();
+    }
+
+    /**
+     * @param bytes the length of the file deleted by disk usages
+     */
+    public void onEvicted(long bytes) {
+        mEvictionCount.incrementAndGet();
+        mEvictionBytes.addAndGet(bytes);
+    }
+
+    /**
+     * @param nanos the duration from a request arrived to the first byte of its body responded
+     */
+    public void onFirstByte(long nanos) {
+        mTtfbHistogram.record(nanos);
+    }
+
+    public void onSocketOpened() {
+        mActiveSockets.incrementAndGet();
+    }
+
+    public void onSocketClosed() {
+        mActiveSockets.decrementAndGet();
+    }
+
+    public void onDownloadStarted() {
+        mActiveDownloads.incrementAndGet();
+    }
+
+    public void onDownloadFinished() {
+        mActiveDownloads.decrementAndGet();
+    }
+
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    public long getPartialHitCount() {
+        return mPartialHitCount.get();
+    }
+
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    public long getCachedUrlCount() {
+        return mCachedUrlCount.get();
+    }
+
+    /**
+     * @return the ratio of requests and cached file urls served without source, <code>0</code> if there is none
+     */
+    public double getHitRatio() {
+        long hits = getHitCount() + getCachedUrlCount();
+        long total = hits + getPartialHitCount() + getMissCount();
+        return 0 == total ? 0 : (double) hits / total;
+    }
+
+    public long getDiskBytes() {
+        return mDiskBytes.get();
+    }
+
+    public long getPassThroughBytes() {
+        return mPassThroughBytes.get();
+    }
+
+    public long getOriginBytes() {
+        return mOriginBytes.get();
+    }
+
+    /**
+     * @return the number of connections opened to source
+     */
+    public long getUpstreamCount() {
+        return mUpstreamCount.get();
+    }
+
+    /**
+     * @return the number of connections failed to open
+     */
+    public long getUpstreamFailureCount() {
+        return mUpstreamFailureCount.get();
+    }
+
+    public long getEvictionCount() {
+        return mEvictionCount.get();
+    }
+
+    public long getEvictionBytes() {
+        return mEvictionBytes.get();
+    }
+
+    /**
+     * @return the number of player sockets opened now
+     */
+    public int getActiveSockets() {
+        return mActiveSockets.get();
+    }
+
+    /**
+     * @return the number of downloads and preloads running now
+     */
+    public int getActiveDownloads() {
+        return mActiveDownloads.get();
+    }
+
+    /**
+     * @return the time to first byte of the responses
+     */
+    public Histogram getTtfbHistogram() {
+        return mTtfbHistogram;
+    }
+
+    /**
+     * @return the duration of opening the connections to source
+     */
+    public Histogram getUpstreamHistogram() {
+        return mUpstreamHistogram;
+    }
+
+    @Override
+    public String toString() {
+        return "Stats = { hitCount = " + getHitCount() + ", partialHitCount = " + getPartialHitCount() + ", missCount = " + getMissCount()
+                + ", cachedUrlCount = " + getCachedUrlCount() + ", diskBytes = " + getDiskBytes() + ", passThroughBytes = " + getPassThroughBytes()
+                + ", originBytes = " + getOriginBytes() + ", upstreamCount = " + getUpstreamCount() + ", upstreamFailureCount = " + getUpstreamFailureCount()
+                + ", evictionCount = " + getEvictionCount() + ", evictionBytes = " + getEvictionBytes() + ", activeSockets = " + getActiveSockets()
+                + ", activeDownloads = " + getActiveDownloads() + ", ttfb = " + mTtfbHistogram + ", upstream = " + mUpstreamHistogram + "}";
+    }
+
+    /**
+     * a histogram of durations in milliseconds, the bound of each bucket doubles the previous one,
+     * so a percentile is accurate to the bucket it falls in.
+     */
+    public static final class Histogram {
+
+        private static final int BUCKETS = 17;
+
+        private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKETS + 1);
+        private final AtomicLong mCount = new AtomicLong();
+        private final AtomicLong mTotalNanos = new AtomicLong();
+
+        /**
+         * @param nanos the duration in nanoseconds
+         */
+        public void record(long nanos) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(Math.max(0, nanos));
+            int index = 0;
+            while (index < BUCKETS && millis >= getBound(index)) {
+                index++;
+            }
+            mBuckets.incrementAndGet(index);
+            mCount.incrementAndGet();
+            mTotalNanos.addAndGet(nanos);
+        }
+
+        public long getCount() {
+            return mCount.get();
+        }
+
+        /**
+         * @return the mean duration in milliseconds, <code>0</code> if nothing has recorded
+         */
+        public double getMean() {
+            long count = getCount();
+            return 0 == count ? 0 : mTotalNanos.get() / 1e6 / count;
+        }
+
+        /**
+         * @return the number of buckets
+         */
+        public int getBucketCount() {
+            return BUCKETS + 1;
+        }
+
+        /**
+         * @param index the index of bucket
+         * @return the exclusive upper bound of bucket in milliseconds, {@link Long#MAX_VALUE} for the last one
+         */
+        public long getBound(int index) {
+            return index < BUCKETS ? 1L << index : Long.MAX_VALUE;
+        }
+
+        /**
+         * @param index the index of bucket
+         * @return the number of durations recorded in the bucket
+         */
+        public long getBucket(int index) {
+            return mBuckets.get(index);
+        }
+
+        /**
+         * @param percent the percent, such as <code>99</code>
+         * @return the upper bound in milliseconds of the bucket which the percentile falls in, <code>0</code> if nothing has recorded
+         */
+        public long getPercentile(double percent) {
+            long[] buckets = new long[getBucketCount()];
+            long count = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                count += buckets[i] = getBucket(i);
+            }
+            long rank = (long) Math.ceil(count * percent / 100);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen > 0 && seen >= rank) {
+                    return getBound(i);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return "{ count = " + getCount() + ", p50 = " + getPercentile(50) + ", p90 = " + getPercentile(90) + ", p99 = " + getPercentile(99) + " }";
+        }
+    }
+}
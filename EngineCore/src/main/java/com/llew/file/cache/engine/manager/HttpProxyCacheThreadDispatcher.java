@@ -0,0 +1,84 @@
+package com.llew.file.cache.engine.manager;
+
+import com.llew.file.cache.engine.config.HttpProxyCacheDispatcher;
+import com.llew.file.cache.engine.utils.Logger;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the default dispatcher without a main thread, the callbacks run one by one on a daemon thread
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/18
+ */
+
+public final class HttpProxyCacheThreadDispatcher implements HttpProxyCacheDispatcher {
+
+    private static HttpProxyCacheThreadDispatcher sDispatcher;
+
+    private final ScheduledExecutorService mExecutor;
+
+    private HttpProxyCacheThreadDispatcher() {
+        mExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "HttpProxyCacheCallback");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public static HttpProxyCacheThreadDispatcher getIMPL() {
+        if (null == sDispatcher) {
+            synchronized (HttpProxyCacheThreadDispatcher.class) {
+                if (null == sDispatcher) {
+                    sDispatcher = new HttpProxyCacheThreadDispatcher();
+                }
+            }
+        }
+        return sDispatcher;
+    }
+
+    @Override
+    public void post(Runnable runnable) {
+        post(runnable, 0);
+    }
+
+    @Override
+    public void post(Runnable runnable, long delayMillis) {
+        if (null == runnable) {
+            return;
+        }
+        try {
+            mExecutor.schedule(new SafeRunnable(runnable), Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+        } catch (Throwable e) {
+            Logger.e(e);
+        }
+    }
+
+    /**
+     * an error of callback mustn't stop the thread of callbacks
+     */
+    private static class SafeRunnable implements Runnable {
+
+        private final Runnable mRunnable;
+
+        SafeRunnable(Runnable runnable) {
+            this.mRunnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            try {
+                mRunnable.run();
+            } catch (Throwable e) {
+                Logger.e(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.llew.file.cache.engine.usage;
+
+import com.llew.file.cache.engine.config.HttpProxyCacheConfig;
+import com.llew.file.cache.engine.config.HttpProxyCacheUsage;
+import com.llew.file.cache.engine.exception.HttpProxyCacheException;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2017/12/28
+ */
+
+abstract class BaseCommonDiskUsage implements HttpProxyCacheUsage {
+
+    private HttpProxyCacheConfig mCacheConfig;
+
+    BaseCommonDiskUsage(HttpProxyCacheConfig cacheConfig) {
+        this.mCacheConfig = cacheConfig;
+    }
+
+    @Override
+    public void touch(File file) throws HttpProxyCacheException {
+        try {
+            HttpProxyCacheDiskIndex diskIndex = getDiskIndex();
+            HttpProxyCacheDiskTrimmer.recordAccess(diskIndex, file);
+            trim(diskIndex, Collections.singletonList(file));
+        } catch (Throwable ignore) {
+            throw new HttpProxyCacheException(ignore);
+        }
+    }
+
+    /**
+     * remove files from the least recently used end of index until the rest are accepted
+     *
+     * @param diskIndex the index of cache directory
+     * @param files     the files touched since last trim
+     */
+    void trim(HttpProxyCacheDiskIndex diskIndex, List<File> files) {
+        diskIndex.trim(this);
+    }
+
+    HttpProxyCacheDiskIndex getDiskIndex() {
+        return mCacheConfig.getDiskIndex();
+    }
+
+    /**
+     * delete current file or not
+     *
+     * @param file           the file that determine to keep or delete
+     * @param totalFileCount total number of cached file
+     * @param totalFileSize  total size of cached file
+     * @return <code>true</code> means keep this file, otherwise delete it
+     */
+    public abstract boolean accept(File file, long totalFileCount, long totalFileSize);
+
+}
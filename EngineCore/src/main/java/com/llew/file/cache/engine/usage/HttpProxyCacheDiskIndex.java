@@ -0,0 +1,312 @@
+package com.llew.file.cache.engine.usage;
+
+import com.llew.file.cache.engine.manager.HttpProxyCacheStats;
+import com.llew.file.cache.engine.utils.Constants;
+import com.llew.file.cache.engine.utils.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * an access ordered index of the files in cache directory, the directory is scanned once at the first use,
+ * after that the total size and count are kept incrementally and the least recently used file is always
+ * at the head of the index.
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/15
+ */
+
+public final class HttpProxyCacheDiskIndex {
+
+    private final File mRootDir;
+
+    private final HttpProxyCacheStats mStats;
+
+    /**
+     * file name to file length, in the order of access
+     */
+    private final LinkedHashMap<String, Long> mFiles = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * the files cached by old versions which may need a rename, they are the ones found in a directory
+     * without the {@link Constants#MIGRATED_FILE} marker, <code>null</code> after all of them are gone
+     */
+    private Set<String> mLegacyNames;
+
+    /**
+     * the files opened by a sink, keyed by name with the number of sinks, they are never evicted
+     */
+    private final Map<String, Integer> mActiveFiles = new HashMap<>();
+
+    private long mTotalSize;
+
+    private boolean isLoaded;
+
+    private boolean isMigrated;
+
+    public HttpProxyCacheDiskIndex(File rootDir) {
+        this(rootDir, new HttpProxyCacheStats());
+    }
+
+    /**
+     * @param rootDir the cache directory
+     * @param stats   the counters which record the files evicted by disk usages
+     */
+    public HttpProxyCacheDiskIndex(File rootDir, HttpProxyCacheStats stats) {
+        this.mRootDir = rootDir;
+        this.mStats = stats;
+    }
+
+    /**
+     * record an access of the file, it becomes the most recently used one
+     *
+     * @param file the file in cache directory
+     */
+    public synchronized void touch(File file) {
+        loadIfNecessary();
+        if (null != file) {
+            // the file is renamed from the downloading one when cache completes
+            removeEntry(file.getName() + Constants.DOWNLOAD_SUFFIX);
+            removeEntry(file.getName());
+            if (file.exists()) {
+                long length = file.length();
+                mFiles.put(file.getName(), length);
+                mTotalSize += length;
+                markMigratedIfNecessary();
+            }
+        }
+    }
+
+    /**
+     * the file is opened by a sink, it is kept from the disk usages until {@link #release(File)}
+     *
+     * @param file the file in cache directory
+     */
+    public synchronized void acquire(File file) {
+        if (null != file) {
+            Integer count = mActiveFiles.get(file.getName());
+            mActiveFiles.put(file.getName(), null == count ? 1 : count + 1);
+        }
+    }
+
+    /**
+     * the file is closed by a sink
+     *
+     * @param file the file in cache directory
+     */
+    public synchronized void release(File file) {
+        if (null != file) {
+            Integer count = mActiveFiles.remove(file.getName());
+            if (null != count && count > 1) {
+                mActiveFiles.put(file.getName(), count - 1);
+            }
+        }
+    }
+
+    /**
+     * @param file the file in cache directory
+     * @return <code>true</code> if the file is opened by a sink
+     */
+    public synchronized boolean isActive(File file) {
+        return null != file && mActiveFiles.containsKey(file.getName());
+    }
+
+    /**
+     * the file has deleted outside of the index
+     *
+     * @param file the file in cache directory
+     */
+    public synchronized void remove(File file) {
+        if (null != file) {
+            removeEntry(file.getName());
+        }
+    }
+
+    /**
+     * all of the files have deleted outside of the index
+     */
+    public synchronized void clear() {
+        mFiles.clear();
+        mLegacyNames = null;
+        mTotalSize = 0;
+        isLoaded = false;
+        isMigrated = false;
+    }
+
+    public synchronized boolean contains(String name) {
+        loadIfNecessary();
+        return mFiles.containsKey(name);
+    }
+
+    /**
+     * @return <code>true</code> if some files cached by old versions haven't been renamed or deleted
+     */
+    public synchronized boolean hasLegacyFiles() {
+        loadIfNecessary();
+        return null != mLegacyNames;
+    }
+
+    /**
+     * @param name the file name generated by old versions
+     * @return <code>true</code> if the file is cached by old versions and still waits for a rename
+     */
+    public synchronized boolean isLegacy(String name) {
+        loadIfNecessary();
+        return null != mLegacyNames && mLegacyNames.contains(name);
+    }
+
+    /**
+     * the file cached by old versions keeps its name, it needn't a rename any more
+     *
+     * @param name the file name generated by old versions
+     */
+    public synchronized void forgetLegacy(String name) {
+        loadIfNecessary();
+        removeLegacy(name);
+    }
+
+    public synchronized long getTotalSize() {
+        loadIfNecessary();
+        return mTotalSize;
+    }
+
+    public synchronized int getFileCount() {
+        loadIfNecessary();
+        return mFiles.size();
+    }
+
+    /**
+     * delete the least recently used files until the usage accepts the rest, the files opened by a sink are skipped
+     */
+    synchronized void trim(BaseCommonDiskUsage usage) {
+        loadIfNecessary();
+        Iterator<Map.Entry<String, Long>> iterator = mFiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            File file = new File(mRootDir, entry.getKey());
+            if (usage.accept(file, mFiles.size(), mTotalSize)) {
+                break;
+            }
+            if (mActiveFiles.containsKey(entry.getKey())) {
+                continue;
+            }
+            if (deleteFile(file)) {
+                iterator.remove();
+                mTotalSize -= entry.getValue();
+                removeLegacy(entry.getKey());
+                mStats.onEvicted(entry.getValue());
+            } else {
+                break;
+            }
+        }
+    }
+
+    /**
+     * delete the file evicted by a usage and remove it from index, a file opened by a sink isn't deleted
+     */
+    synchronized boolean delete(File file) {
+        loadIfNecessary();
+        if (null != file && !mActiveFiles.containsKey(file.getName()) && deleteFile(file)) {
+            Long length = mFiles.get(file.getName());
+            removeEntry(file.getName());
+            mStats.onEvicted(null == length ? 0 : length);
+            return true;
+        }
+        return false;
+    }
+
+    private void removeEntry(String name) {
+        Long length = mFiles.remove(name);
+        if (null != length) {
+            mTotalSize -= length;
+        }
+        removeLegacy(name);
+    }
+
+    private void removeLegacy(String name) {
+        if (null != mLegacyNames && mLegacyNames.remove(name)) {
+            markMigratedIfNecessary();
+        }
+    }
+
+    /**
+     * write the marker once no file cached by old versions is left, the next scans skip the migration for good
+     */
+    private void markMigratedIfNecessary() {
+        if (isMigrated || (null != mLegacyNames && !mLegacyNames.isEmpty())) {
+            return;
+        }
+        mLegacyNames = null;
+        if (null == mRootDir || !mRootDir.exists()) {
+            return;
+        }
+        try {
+            File marker = new File(mRootDir, Constants.MIGRATED_FILE);
+            isMigrated = marker.exists() || marker.createNewFile();
+        } catch (IOException e) {
+            Logger.e(e);
+        }
+    }
+
+    private static boolean deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            Logger.e("delete failure : " + file.getName());
+            return false;
+        }
+        // the bitmap belongs to a downloading file, it is removed together with that file
+        File segmentsFile = new File(file.getParent(), file.getName() + Constants.SEGMENTS_SUFFIX);
+        if (segmentsFile.exists() && !segmentsFile.delete()) {
+            Logger.e("delete failure : " + segmentsFile.getName());
+        }
+        return true;
+    }
+
+    private void loadIfNecessary() {
+        if (isLoaded) {
+            return;
+        }
+        isLoaded = true;
+        File[] files = null == mRootDir ? null : mRootDir.listFiles();
+        if (null == files) {
+            return;
+        }
+        isMigrated = new File(mRootDir, Constants.MIGRATED_FILE).exists();
+        Set<String> legacyNames = new HashSet<>();
+        // stat each file once, the comparator would call lastModified() O(n log n) times
+        final Map<File, Long> times = new HashMap<>(files.length);
+        for (File file : files) {
+            times.put(file, file.lastModified());
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File firstFile, File secondFile) {
+                long first = times.get(firstFile);
+                long second = times.get(secondFile);
+                return first < second ? -1 : first == second ? 0 : 1;
+            }
+        });
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isFile() && !name.endsWith(Constants.SEGMENTS_SUFFIX) && !Constants.MIGRATED_FILE.equals(name)) {
+                long length = file.length();
+                mFiles.put(name, length);
+                mTotalSize += length;
+                if (!isMigrated) {
+                    legacyNames.add(name);
+                }
+            }
+        }
+        mLegacyNames = legacyNames.isEmpty() ? null : legacyNames;
+        markMigratedIfNecessary();
+        Logger.e("disk index loaded, count = " + mFiles.size() + ", size = " + mTotalSize + ", legacy = " + legacyNames.size());
+    }
+}
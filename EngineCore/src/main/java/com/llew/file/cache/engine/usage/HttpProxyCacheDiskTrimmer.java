@@ -0,0 +1,163 @@
+package com.llew.file.cache.engine.usage;
+
+import com.llew.file.cache.engine.config.HttpProxyCacheConfig;
+import com.llew.file.cache.engine.config.HttpProxyCacheUsage;
+import com.llew.file.cache.engine.utils.Constants;
+import com.llew.file.cache.engine.utils.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * applies the disk usages in background, the caller only records the touched file. the touches
+ * arrived before the worker runs are collapsed into one batch and the index is trimmed once for the batch.
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/16
+ */
+
+public final class HttpProxyCacheDiskTrimmer {
+
+    private final HttpProxyCacheConfig mCacheConfig;
+
+    private final Set<File> mPendingFiles = new LinkedHashSet<>();
+
+    private boolean isScheduled;
+
+    public HttpProxyCacheDiskTrimmer(HttpProxyCacheConfig config) {
+        this.mCacheConfig = config;
+    }
+
+    /**
+     * record the file has been accessed or added, the usages are applied later in background
+     *
+     * @param file the file in cache directory
+     */
+    public void touch(File file) {
+        if (null == file) {
+            return;
+        }
+        synchronized (this) {
+            mPendingFiles.remove(file);
+            mPendingFiles.add(file);
+            if (isScheduled) {
+                return;
+            }
+            isScheduled = true;
+        }
+        try {
+            mCacheConfig.getExecutorService().submit(new TrimRunnable());
+        } catch (Throwable e) {
+            Logger.e(e);
+            synchronized (this) {
+                isScheduled = false;
+            }
+        }
+    }
+
+    private synchronized List<File> pollPendingFiles() {
+        if (mPendingFiles.isEmpty()) {
+            isScheduled = false;
+            return null;
+        }
+        List<File> files = new ArrayList<>(mPendingFiles);
+        mPendingFiles.clear();
+        return files;
+    }
+
+    private void trim(List<File> files) {
+        HttpProxyCacheDiskIndex diskIndex = mCacheConfig.getDiskIndex();
+        for (File file : files) {
+            recordAccess(diskIndex, file);
+        }
+        List<HttpProxyCacheUsage> usages = mCacheConfig.getHttProxyCacheDiskUsages();
+        for (HttpProxyCacheUsage usage : usages) {
+            try {
+                if (usage instanceof BaseCommonDiskUsage) {
+                    ((BaseCommonDiskUsage) usage).trim(diskIndex, files);
+                } else if (null != usage) {
+                    for (File file : files) {
+                        usage.touch(file);
+                    }
+                }
+            } catch (Throwable e) {
+                Logger.e(e);
+            }
+        }
+    }
+
+    /**
+     * update file time, so the order of access is kept after restart, then move file to the recently used end of index.
+     * a file opened by a sink is only indexed: the fallback of updating time rewrites its bytes or recreates it under
+     * the open channel, and a downloading file keeps its time until it completes.
+     */
+    static void recordAccess(HttpProxyCacheDiskIndex diskIndex, File file) {
+        try {
+            if (!diskIndex.isActive(file)) {
+                updateLastModifiedTime(file);
+            } else if (null != file && !file.getName().endsWith(Constants.DOWNLOAD_SUFFIX) && !file.setLastModified(System.currentTimeMillis())) {
+                Logger.e("modify time failure of opened file : " + file.getName());
+            }
+        } catch (Throwable e) {
+            Logger.e(e);
+        }
+        diskIndex.touch(file);
+    }
+
+    private static void updateLastModifiedTime(File file) throws IOException {
+        if (null != file && file.exists()) {
+            long nowTime = System.currentTimeMillis();
+            boolean success = file.setLastModified(nowTime);
+            if (!success) {
+                updateLastModifiedTimeInternal(file);
+                if (file.lastModified() < nowTime) {
+                    // NOTE: apparently this is a known issue (see: http://stackoverflow.com/questions/6633748/file-lastmodified-is-never-what-was-set-with-file-setlastmodified)
+                    Logger.e("modify time failure : http://stackoverflow.com/questions/6633748/file-lastmodified-is-never-what-was-set-with-file-setlastmodified");
+                }
+            }
+        }
+    }
+
+    private static void recreateEmptyFile(File file) throws IOException {
+        if (null != file) {
+            if (!file.delete() || !file.createNewFile()) {
+                throw new IOException("Error recreate zero-size file " + file);
+            }
+        }
+    }
+
+    private static void updateLastModifiedTimeInternal(File file) throws IOException {
+        if (null != file) {
+            long size = file.length();
+            if (0 == size) {
+                recreateEmptyFile(file);
+                return;
+            }
+
+            RandomAccessFile accessFile = new RandomAccessFile(file, "rwd");
+            accessFile.seek(size - 1);
+            byte lastByte = accessFile.readByte();
+            accessFile.seek(size - 1);
+            accessFile.write(lastByte);
+            accessFile.close();
+        }
+    }
+
+    private class TrimRunnable implements Runnable {
+
+        @Override
+        public void run() {
+            List<File> files;
+            while (null != (files = pollPendingFiles())) {
+                Logger.e("disk trimmer start, touched files = " + files.size());
+                trim(files);
+            }
+        }
+    }
+}
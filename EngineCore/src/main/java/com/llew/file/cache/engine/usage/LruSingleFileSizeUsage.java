@@ -3,6 +3,7 @@ package com.llew.file.cache.engine.usage;
 import com.llew.file.cache.engine.config.HttpProxyCacheConfig;
 
 import java.io.File;
+import java.util.List;
 
 /**
  * <br/><br/>
@@ -20,6 +21,18 @@ public class LruSingleFileSizeUsage extends BaseCommonDiskUsage {
         this.mMaxFileSize = maxFileSize;
     }
 
+    /**
+     * only the touched files may exceed the limit, the others have been checked when they were touched
+     */
+    @Override
+    void trim(HttpProxyCacheDiskIndex diskIndex, List<File> files) {
+        for (File file : files) {
+            if (!accept(file, diskIndex.getFileCount(), diskIndex.getTotalSize())) {
+                diskIndex.delete(file);
+            }
+        }
+    }
+
     @Override
     public boolean accept(File file, long totalFileCount, long totalFileSize) {
         return null != file && file.length() < this.mMaxFileSize;
@@ -0,0 +1,94 @@
+package com.llew.file.cache.engine.utils;
+
+/**
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2017/12/30
+ */
+
+public interface Constants {
+
+    String HOST = "127.0.0.1";
+
+    String CHARSET = "UTF-8";
+
+    String PING = "ping";
+
+    String PONG = "ping ok";
+
+    /**
+     * the admin path which responds the counters of proxy server in JSON
+     */
+    String STATS = "stats";
+
+    /**
+     * the admin path which responds the state of caching urls in JSON
+     */
+    String DEBUG = "debug";
+
+    /**
+     * the name of default cache directory
+     */
+    String CACHE_DIR = "file_cache";
+
+    /**
+     * the Android adapter of Engine module which the deprecated constructors taking a context delegate to
+     */
+    String ANDROID_ADAPTER = "com.llew.file.cache.engine.android.HttpProxyCacheAndroid";
+
+    String ANDROID_CONTEXT = "android.content.Context";
+
+    int BUFFER_SIZE = 32 * 1024;
+
+    int BUFFER_POOL_SIZE = 2 * 1024 * 1024;
+
+    int TRANSFER_SIZE = 512 * 1024;
+
+    int SEGMENT_SIZE = 64 * 1024;
+
+    int DOWNLOAD_CONNECTIONS = 1;
+
+    int DOWNLOAD_SEGMENT_SIZE = 1024 * 1024;
+
+    int PRELOADS = 32;
+
+    int CACHE_NAMES = 64;
+
+    int KEEP_ALIVE_TIMEOUT = 15 * 1000;
+
+    /**
+     * the threads which prepare the requests of non-blocking proxy server
+     */
+    int PREPARE_THREADS = 4;
+
+    int HEADER_SIZE = 8 * 1024;
+
+    int WRITE_BUFFER_SIZE = 256 * 1024;
+
+    int WRITE_FLUSH_INTERVAL = 200;
+
+    String DOWNLOAD_SUFFIX = ".download";
+
+    String SEGMENTS_SUFFIX = ".bitmap";
+
+    /**
+     * the marker in cache directory which tells no file there is named by old versions
+     */
+    String MIGRATED_FILE = ".migrated";
+
+    int FILES_SIZE = 512 * 1024 * 1024;
+
+    int INTERVAL = 1000;
+
+    int ATTEMPTS = 3;
+
+    int TIMEOUTS = 70;
+
+    /**
+     * the timeout of the request which asks the source for its length and mime
+     */
+    int SOURCE_TIMEOUT = 10000;
+
+    int REDIRECT_COUNT = 5;
+}
@@ -1,8 +1,5 @@
 package com.llew.file.cache.engine.utils;
 
-import android.text.TextUtils;
-import android.webkit.MimeTypeMap;
-
 import com.llew.file.cache.engine.exception.HttpProxyCacheException;
 
 import java.io.Closeable;
@@ -10,6 +7,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.net.Socket;
+import java.net.URLConnection;
 import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 
@@ -22,6 +20,8 @@ import java.security.MessageDigest;
 
 public class FileUtils {
 
+    private static final int MAX_EXTENSION_LENGTH = 4;
+
     public static void createDirs(File file) {
         if (null != file && !file.exists()) {
             boolean success = file.mkdirs();
@@ -44,6 +44,33 @@ public class FileUtils {
         return "";
     }
 
+    /**
+     * the md5 in the lossy hex encoding of the old versions, it is only used to find the files cached by them
+     */
+    public static String getLegacyMd5(String string) {
+        try {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            StringBuilder sb = new StringBuilder();
+            for (byte b : md5.digest(string.getBytes())) {
+                sb.append(Integer.toHexString(0xff & b));
+            }
+            return sb.toString();
+        } catch (Exception e) {
+            Logger.e(e);
+        }
+        return "";
+    }
+
+    public static String getMurmur3(String string) {
+        try {
+            long[] hash = Murmur3.hash128(string.getBytes(Constants.CHARSET), 0);
+            return convertToHexString(hash[0]) + convertToHexString(hash[1]);
+        } catch (Exception e) {
+            Logger.e(e);
+        }
+        return "";
+    }
+
     public static String getMd5(File file) {
         FileInputStream fileInputStream = null;
         try {
@@ -62,12 +89,34 @@ public class FileUtils {
         }
     }
 
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     private static String convertToHexString(byte[] data) {
-        StringBuilder sb = new StringBuilder();
-        for (byte b : data) {
-            sb.append(Integer.toHexString(0xff & b));
+        char[] chars = new char[data.length * 2];
+        for (int i = 0; i < data.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(data[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX_DIGITS[data[i] & 0xf];
         }
-        return sb.toString();
+        return new String(chars);
+    }
+
+    private static String convertToHexString(long data) {
+        char[] chars = new char[16];
+        for (int i = chars.length - 1; i >= 0; i--) {
+            chars[i] = HEX_DIGITS[(int) (data & 0xf)];
+            data >>>= 4;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * the extension of url, such as <code>mp4</code>, empty if the url has no short extension
+     */
+    public static String getExtension(String url) {
+        int dotIndex = url.lastIndexOf('.');
+        int slashIndex = url.lastIndexOf('/');
+        return dotIndex != -1 && dotIndex > slashIndex && dotIndex + 2 + MAX_EXTENSION_LENGTH > url.length() ?
+                url.substring(dotIndex + 1, url.length()) : "";
     }
 
     public static void closeQuietly(Closeable closeable) {
@@ -154,8 +203,24 @@ public class FileUtils {
     }
 
     public static String getSupposablyMime(String url) {
-        MimeTypeMap mimes = MimeTypeMap.getSingleton();
-        String extension = MimeTypeMap.getFileExtensionFromUrl(url);
-        return TextUtils.isEmpty(extension) ? null : mimes.getMimeTypeFromExtension(extension);
+        String extension = getExtension(url);
+        return TextUtils.isEmpty(extension) ? null : URLConnection.guessContentTypeFromName("file." + extension);
+    }
+
+    /**
+     * the first byte of range in header <code>Content-Range: bytes 0-99/1000</code>
+     *
+     * @param contentRange the value of header
+     * @return <code>-1</code> if the header is missing or malformed
+     */
+    public static long getRangeStart(String contentRange) {
+        if (TextUtils.isEmpty(contentRange)) {
+            return -1;
+        }
+        String value = contentRange.trim();
+        int start = value.startsWith("bytes") ? "bytes".length() : 0;
+        int end = value.indexOf('-', start);
+        String first = end < 0 ? null : value.substring(start, end).trim();
+        return !TextUtils.isEmpty(first) && TextUtils.isDigitsOnly(first) ? Long.parseLong(first) : -1;
     }
 }
@@ -0,0 +1,69 @@
+package com.llew.file.cache.engine.utils;
+
+/**
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2017/12/29
+ */
+
+public class Logger {
+
+    private static String TAG = "CacheEngine";
+
+    private static boolean logEnable;
+
+    private static Printer sPrinter = Printer.SYSTEM;
+
+    public static void enable(boolean enable) {
+        logEnable = enable;
+    }
+
+    /**
+     * replace the printer, such as the printer of <code>android.util.Log</code>
+     *
+     * @param printer the printer, it's ignored if <code>null</code>
+     */
+    public static void setPrinter(Printer printer) {
+        if (null != printer) {
+            sPrinter = printer;
+        }
+    }
+
+    public static void e(String message) {
+        e(TAG, message);
+    }
+
+    public static void e(String tag, String message) {
+        if (logEnable) {
+            sPrinter.print(tag, "Thread : " + Thread.currentThread() + " || message = 【" + message + "】");
+        }
+    }
+
+    public static void e(Throwable e) {
+        if (logEnable && null != e) {
+            e.printStackTrace();
+        }
+    }
+
+    public interface Printer {
+
+        /**
+         * print the message
+         *
+         * @param tag     the tag
+         * @param message the message
+         */
+        void print(String tag, String message);
+
+        /**
+         * print to the standard error stream, default printer
+         */
+        Printer SYSTEM = new Printer() {
+            @Override
+            public void print(String tag, String message) {
+                System.err.println(tag + " : " + message);
+            }
+        };
+    }
+}
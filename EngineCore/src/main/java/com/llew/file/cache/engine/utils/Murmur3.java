@@ -0,0 +1,145 @@
+package com.llew.file.cache.engine.utils;
+
+/**
+ * the x64 128-bit variant of MurmurHash3, a fast non-cryptographic hash for generating cache file names.
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/17
+ */
+
+public final class Murmur3 {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private Murmur3() {
+    }
+
+    /**
+     * @param data the data to hash
+     * @param seed the seed
+     * @return the 128-bit hash as two longs, the lower half first
+     */
+    @SuppressWarnings("fallthrough")
+    public static long[] hash128(byte[] data, int seed) {
+        final int length = data.length;
+        final int blocks = length >> 4;
+        long h1 = seed & 0xffffffffL;
+        long h2 = seed & 0xffffffffL;
+
+        for (int i = 0; i < blocks; i++) {
+            long k1 = getLong(data, i << 4);
+            long k2 = getLong(data, (i << 4) + 8);
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        long k1 = 0;
+        long k2 = 0;
+        int tail = blocks << 4;
+        switch (length & 15) {
+            case 15:
+                k2 ^= (data[tail + 14] & 0xffL) << 48;
+                // fall through
+            case 14:
+                k2 ^= (data[tail + 13] & 0xffL) << 40;
+                // fall through
+            case 13:
+                k2 ^= (data[tail + 12] & 0xffL) << 32;
+                // fall through
+            case 12:
+                k2 ^= (data[tail + 11] & 0xffL) << 24;
+                // fall through
+            case 11:
+                k2 ^= (data[tail + 10] & 0xffL) << 16;
+                // fall through
+            case 10:
+                k2 ^= (data[tail + 9] & 0xffL) << 8;
+                // fall through
+            case 9:
+                k2 ^= (data[tail + 8] & 0xffL);
+                h2 ^= mixK2(k2);
+                // fall through
+            case 8:
+                k1 ^= (data[tail + 7] & 0xffL) << 56;
+                // fall through
+            case 7:
+                k1 ^= (data[tail + 6] & 0xffL) << 48;
+                // fall through
+            case 6:
+                k1 ^= (data[tail + 5] & 0xffL) << 40;
+                // fall through
+            case 5:
+                k1 ^= (data[tail + 4] & 0xffL) << 32;
+                // fall through
+            case 4:
+                k1 ^= (data[tail + 3] & 0xffL) << 24;
+                // fall through
+            case 3:
+                k1 ^= (data[tail + 2] & 0xffL) << 16;
+                // fall through
+            case 2:
+                k1 ^= (data[tail + 1] & 0xffL) << 8;
+                // fall through
+            case 1:
+                k1 ^= (data[tail] & 0xffL);
+                h1 ^= mixK1(k1);
+                break;
+            default:
+                break;
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+        return new long[]{h1, h2};
+    }
+
+    private static long getLong(byte[] data, int index) {
+        return (data[index] & 0xffL)
+                | (data[index + 1] & 0xffL) << 8
+                | (data[index + 2] & 0xffL) << 16
+                | (data[index + 3] & 0xffL) << 24
+                | (data[index + 4] & 0xffL) << 32
+                | (data[index + 5] & 0xffL) << 40
+                | (data[index + 6] & 0xffL) << 48
+                | (data[index + 7] & 0xffL) << 56;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
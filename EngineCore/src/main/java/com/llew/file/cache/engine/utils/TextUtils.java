@@ -0,0 +1,43 @@
+package com.llew.file.cache.engine.utils;
+
+/**
+ * the same checks as <code>android.text.TextUtils</code>, so the core doesn't depend on Android
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/18
+ */
+
+public class TextUtils {
+
+    public static boolean isEmpty(CharSequence str) {
+        return null == str || 0 == str.length();
+    }
+
+    public static boolean equals(CharSequence a, CharSequence b) {
+        if (a == b) {
+            return true;
+        }
+        if (null != a && null != b && a.length() == b.length()) {
+            if (a instanceof String && b instanceof String) {
+                return a.equals(b);
+            }
+            for (int i = 0; i < a.length(); i++) {
+                if (a.charAt(i) != b.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    public static boolean isDigitsOnly(CharSequence str) {
+        for (int i = 0; i < str.length(); i++) {
+            if (!Character.isDigit(str.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,262 @@
+package com.llew.file.cache.engine.core;
+
+import com.llew.file.cache.engine.utils.Constants;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * the admin paths respond valid JSON, and they aren't served unless enabled
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/20
+ */
+
+public class HttpProxyCacheAdminTest {
+
+    private static final int LENGTH = 100 * 1024;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private HttpProxyCacheOrigin mOrigin;
+
+    private HttpProxyCacheServer mCacheServer;
+
+    @Before
+    public void setUp() throws Exception {
+        mOrigin = new HttpProxyCacheOrigin(LENGTH);
+        mCacheServer = new HttpProxyCacheServer.Builder().rootDir(mFolder.getRoot()).adminEnabled(true).build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mCacheServer.shutdownProxy();
+        mOrigin.shutdown();
+    }
+
+    @Test
+    public void statsAreValidJson() throws Exception {
+        // some traffic, so the counters and histograms aren't empty
+        HttpURLConnection connection = (HttpURLConnection) new URL(mCacheServer.proxyUrl(mOrigin.getUrl("video.mp4"))).openConnection();
+        assertEquals(LENGTH, read(connection).length());
+
+        String stats = read((HttpURLConnection) new URL(mCacheServer.adminUrl(Constants.STATS)).openConnection());
+        new JsonChecker(stats).check();
+        assertTrue(stats, stats.contains("\"missCount\":1"));
+        assertTrue(stats, stats.contains("\"originBytes\":" + LENGTH));
+    }
+
+    @Test
+    public void debugIsValidJson() throws Exception {
+        String debug = read((HttpURLConnection) new URL(mCacheServer.adminUrl(Constants.DEBUG)).openConnection());
+        new JsonChecker(debug).check();
+        assertTrue(debug, debug.contains("\"clients\":["));
+    }
+
+    @Test
+    public void adminIsDisabledByDefault() throws Exception {
+        HttpProxyCacheServer cacheServer = new HttpProxyCacheServer.Builder().rootDir(mFolder.newFolder()).build();
+        try {
+            assertNull(cacheServer.adminUrl(Constants.STATS));
+        } finally {
+            cacheServer.shutdownProxy();
+        }
+    }
+
+    private static String read(HttpURLConnection connection) throws IOException {
+        assertEquals(200, connection.getResponseCode());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        InputStream inputStream = connection.getInputStream();
+        try {
+            byte[] buffer = new byte[8 * 1024];
+            int readBytes;
+            while (-1 != (readBytes = inputStream.read(buffer))) {
+                outputStream.write(buffer, 0, readBytes);
+            }
+        } finally {
+            inputStream.close();
+        }
+        return outputStream.toString("UTF-8");
+    }
+
+    /**
+     * a strict checker of the JSON grammar in RFC 8259, the admin paths mustn't depend on a JSON library
+     */
+    private static class JsonChecker {
+
+        private final String mJson;
+        private int mPosition;
+
+        JsonChecker(String json) {
+            this.mJson = json;
+        }
+
+        void check() {
+            value();
+            skipSpaces();
+            if (mPosition != mJson.length()) {
+                error("trailing characters");
+            }
+        }
+
+        private void value() {
+            skipSpaces();
+            char c = peek();
+            if ('{' == c) {
+                object();
+            } else if ('[' == c) {
+                array();
+            } else if ('"' == c) {
+                string();
+            } else if ('-' == c || Character.isDigit(c)) {
+                number();
+            } else if (!literal("true") && !literal("false") && !literal("null")) {
+                error("unexpected value");
+            }
+        }
+
+        private void object() {
+            expect('{');
+            skipSpaces();
+            if (peek() == '}') {
+                mPosition++;
+                return;
+            }
+            do {
+                skipSpaces();
+                string();
+                skipSpaces();
+                expect(':');
+                value();
+                skipSpaces();
+            } while (accept(','));
+            expect('}');
+        }
+
+        private void array() {
+            expect('[');
+            skipSpaces();
+            if (peek() == ']') {
+                mPosition++;
+                return;
+            }
+            do {
+                value();
+                skipSpaces();
+            } while (accept(','));
+            expect(']');
+        }
+
+        private void string() {
+            expect('"');
+            while (true) {
+                char c = next();
+                if ('"' == c) {
+                    return;
+                }
+                if (c < 0x20) {
+                    error("control character in string");
+                }
+                if ('\\' == c) {
+                    char escaped = next();
+                    if ('u' == escaped) {
+                        for (int i = 0; i < 4; i++) {
+                            if (Character.digit(next(), 16) < 0) {
+                                error("bad unicode escape");
+                            }
+                        }
+                    } else if ("\"\\/bfnrt".indexOf(escaped) < 0) {
+                        error("bad escape");
+                    }
+                }
+            }
+        }
+
+        private void number() {
+            accept('-');
+            if (!accept('0')) {
+                digits();
+            }
+            if (accept('.')) {
+                digits();
+            }
+            if (accept('e') || accept('E')) {
+                if (!accept('+')) {
+                    accept('-');
+                }
+                digits();
+            }
+        }
+
+        private void digits() {
+            int start = mPosition;
+            while (mPosition < mJson.length() && Character.isDigit(mJson.charAt(mPosition))) {
+                mPosition++;
+            }
+            if (start == mPosition) {
+                error("digit expected");
+            }
+        }
+
+        private boolean literal(String literal) {
+            if (mJson.startsWith(literal, mPosition)) {
+                mPosition += literal.length();
+                return true;
+            }
+            return false;
+        }
+
+        private void skipSpaces() {
+            while (mPosition < mJson.length() && " \t\r\n".indexOf(mJson.charAt(mPosition)) >= 0) {
+                mPosition++;
+            }
+        }
+
+        private boolean accept(char c) {
+            if (mPosition < mJson.length() && mJson.charAt(mPosition) == c) {
+                mPosition++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!accept(c)) {
+                error("'" + c + "' expected");
+            }
+        }
+
+        private char peek() {
+            if (mPosition >= mJson.length()) {
+                error("unexpected end");
+            }
+            return mJson.charAt(mPosition);
+        }
+
+        private char next() {
+            char c = peek();
+            mPosition++;
+            return c;
+        }
+
+        private void error(String message) {
+            fail(message + " at " + mPosition + " of " + mJson);
+        }
+    }
+}
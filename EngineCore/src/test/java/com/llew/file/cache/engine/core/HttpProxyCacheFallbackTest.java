@@ -0,0 +1,259 @@
+package com.llew.file.cache.engine.core;
+
+import com.llew.file.cache.engine.config.HttpProxyCacheConfig;
+import com.llew.file.cache.engine.config.HttpProxyCacheSink;
+import com.llew.file.cache.engine.config.HttpProxyCacheSource;
+import com.llew.file.cache.engine.exception.HttpProxyCacheException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * a sink and a source which only implement the plain interfaces are served through the proxy, the sink is
+ * appended by one download and the ranges are read from its continuous bytes
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/22
+ */
+
+public class HttpProxyCacheFallbackTest {
+
+    private static final int LENGTH = 300 * 1024;
+
+    private static final int OFFSET = 100 * 1024;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private HttpProxyCacheOrigin mOrigin;
+
+    private HttpProxyCacheServer mCacheServer;
+
+    private MemorySink mCacheSink;
+
+    @Before
+    public void setUp() throws Exception {
+        mOrigin = new HttpProxyCacheOrigin(LENGTH);
+        mCacheSink = new MemorySink();
+        mCacheServer = new HttpProxyCacheServer.Builder()
+                .rootDir(mFolder.getRoot())
+                .cacheSink(mCacheSink)
+                .cacheSource(new PlainSource(new com.llew.file.cache.engine.core.HttpProxyCacheSource()))
+                .build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mCacheServer.shutdownProxy();
+        mOrigin.shutdown();
+    }
+
+    @Test
+    public void rangeIsServedByPlainSink() throws Exception {
+        String url = mOrigin.getUrl("range.mp4");
+        HttpURLConnection connection = open(url);
+        connection.setRequestProperty("Range", "bytes=" + OFFSET + "-");
+        assertEquals(206, connection.getResponseCode());
+        assertArrayEquals(HttpProxyCacheOrigin.bytes(OFFSET, LENGTH - OFFSET), readFully(connection));
+    }
+
+    @Test
+    public void wholeFileIsCachedByPlainSink() throws Exception {
+        String url = mOrigin.getUrl("whole.mp4");
+        byte[] expected = HttpProxyCacheOrigin.bytes(0, LENGTH);
+        HttpURLConnection connection = open(url);
+        assertEquals(200, connection.getResponseCode());
+        assertArrayEquals(expected, readFully(connection));
+
+        // the second request is served from the appended bytes of sink
+        connection = open(url);
+        connection.setRequestProperty("Range", "bytes=" + OFFSET + "-");
+        assertEquals(206, connection.getResponseCode());
+        assertArrayEquals(Arrays.copyOfRange(expected, OFFSET, LENGTH), readFully(connection));
+        assertArrayEquals(expected, mCacheSink.getBytes(url));
+    }
+
+    private HttpURLConnection open(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(mCacheServer.proxyUrl(url)).openConnection();
+        connection.setConnectTimeout(10000);
+        connection.setReadTimeout(10000);
+        return connection;
+    }
+
+    private static byte[] readFully(HttpURLConnection connection) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        InputStream inputStream = connection.getInputStream();
+        try {
+            byte[] buffer = new byte[8 * 1024];
+            int readBytes;
+            while (-1 != (readBytes = inputStream.read(buffer))) {
+                outputStream.write(buffer, 0, readBytes);
+            }
+        } finally {
+            inputStream.close();
+            connection.disconnect();
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * a sink which only appends to the bytes of url kept in memory, the clones share the bytes
+     */
+    private static class MemorySink implements HttpProxyCacheSink {
+
+        private final Map<String, ByteArrayOutputStream> mFiles;
+
+        private final Set<String> mCompletedUrls;
+
+        private ByteArrayOutputStream mData;
+
+        private String mUrl;
+
+        MemorySink() {
+            this(new ConcurrentHashMap<String, ByteArrayOutputStream>(), new HashSet<String>());
+        }
+
+        private MemorySink(Map<String, ByteArrayOutputStream> files, Set<String> completedUrls) {
+            this.mFiles = files;
+            this.mCompletedUrls = completedUrls;
+        }
+
+        byte[] getBytes(String url) {
+            ByteArrayOutputStream data = mFiles.get(url);
+            synchronized (data) {
+                return data.toByteArray();
+            }
+        }
+
+        @Override
+        public void init(HttpProxyCacheConfig config, String url) throws HttpProxyCacheException {
+            synchronized (mFiles) {
+                mData = mFiles.get(url);
+                if (null == mData) {
+                    mData = new ByteArrayOutputStream();
+                    mFiles.put(url, mData);
+                }
+            }
+            mUrl = url;
+        }
+
+        @Override
+        public long available() throws HttpProxyCacheException {
+            synchronized (mData) {
+                return mData.size();
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, long offset, int length) throws HttpProxyCacheException {
+            synchronized (mData) {
+                if (offset >= mData.size()) {
+                    return -1;
+                }
+                int readBytes = (int) Math.min(length, mData.size() - offset);
+                System.arraycopy(mData.toByteArray(), (int) offset, buffer, 0, readBytes);
+                return readBytes;
+            }
+        }
+
+        @Override
+        public void append(byte[] data, int length) throws HttpProxyCacheException {
+            synchronized (mData) {
+                mData.write(data, 0, length);
+            }
+        }
+
+        @Override
+        public void complete() throws HttpProxyCacheException {
+            synchronized (mCompletedUrls) {
+                mCompletedUrls.add(mUrl);
+            }
+        }
+
+        @Override
+        public boolean isCompleted() {
+            synchronized (mCompletedUrls) {
+                return mCompletedUrls.contains(mUrl);
+            }
+        }
+
+        @Override
+        public HttpProxyCacheSink clone(HttpProxyCacheConfig config) throws HttpProxyCacheException {
+            return new MemorySink(mFiles, mCompletedUrls);
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    /**
+     * a source which only implements the plain interface
+     */
+    private static class PlainSource implements HttpProxyCacheSource {
+
+        private final HttpProxyCacheSource mSource;
+
+        PlainSource(HttpProxyCacheSource source) {
+            this.mSource = source;
+        }
+
+        @Override
+        public void init(HttpProxyCacheConfig config, String url) throws HttpProxyCacheException {
+            mSource.init(config, url);
+        }
+
+        @Override
+        public void open() throws HttpProxyCacheException {
+            mSource.open();
+        }
+
+        @Override
+        public void open(long offset) throws HttpProxyCacheException {
+            mSource.open(offset);
+        }
+
+        @Override
+        public long length() throws HttpProxyCacheException {
+            return mSource.length();
+        }
+
+        @Override
+        public String mime() throws HttpProxyCacheException {
+            return mSource.mime();
+        }
+
+        @Override
+        public int read(byte[] buffer) throws HttpProxyCacheException {
+            return mSource.read(buffer);
+        }
+
+        @Override
+        public HttpProxyCacheSource clone(HttpProxyCacheConfig config) throws HttpProxyCacheException {
+            return new PlainSource(mSource.clone(config));
+        }
+
+        @Override
+        public void close() throws IOException {
+            mSource.close();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.llew.file.cache.engine.core;
+
+import com.llew.file.cache.engine.config.HttpProxyCacheConfig;
+import com.llew.file.cache.engine.config.HttpProxyCacheNameGenerator;
+import com.llew.file.cache.engine.utils.Constants;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * the files cached by old versions are named by a lossy md5, they are renamed to the murmur3 names when their urls
+ * are looked up, and the directory is marked as migrated once none of them is left
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/17
+ */
+
+public class HttpProxyCacheMigrationTest {
+
+    private static final String COMPLETED_URL = "http://localhost/completed.mp4";
+
+    private static final String DOWNLOADING_URL = "http://localhost/downloading.mp4";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void legacyFilesAreRenamed() throws Exception {
+        File rootDir = mFolder.getRoot();
+        String completedName = HttpProxyCacheNameGenerator.LEGACY.generateName(COMPLETED_URL);
+        String downloadingName = HttpProxyCacheNameGenerator.LEGACY.generateName(DOWNLOADING_URL) + Constants.DOWNLOAD_SUFFIX;
+        create(new File(rootDir, completedName), 1000);
+        create(new File(rootDir, downloadingName), 300);
+        create(new File(rootDir, downloadingName + Constants.SEGMENTS_SUFFIX), 12);
+
+        HttpProxyCacheConfig config = new HttpProxyCacheServer.Builder().rootDir(rootDir).buildConfig();
+        File completedFile = config.generateCacheFile(COMPLETED_URL);
+        assertEquals(HttpProxyCacheNameGenerator.MURMUR3.generateName(COMPLETED_URL), completedFile.getName());
+        assertNotEquals(completedName, completedFile.getName());
+        assertEquals(1000, completedFile.length());
+        assertFalse(new File(rootDir, completedName).exists());
+        // a legacy file is left, the migration goes on
+        assertFalse(new File(rootDir, Constants.MIGRATED_FILE).exists());
+
+        File downloadingFile = config.generateCacheFile(DOWNLOADING_URL);
+        File downloadFile = new File(rootDir, downloadingFile.getName() + Constants.DOWNLOAD_SUFFIX);
+        assertEquals(300, downloadFile.length());
+        assertEquals(12, new File(rootDir, downloadFile.getName() + Constants.SEGMENTS_SUFFIX).length());
+        assertFalse(new File(rootDir, downloadingName).exists());
+        assertFalse(new File(rootDir, downloadingName + Constants.SEGMENTS_SUFFIX).exists());
+        assertTrue(new File(rootDir, Constants.MIGRATED_FILE).exists());
+    }
+
+    @Test
+    public void migratedDirectoryIsNotScanned() throws Exception {
+        File rootDir = mFolder.getRoot();
+        String legacyName = HttpProxyCacheNameGenerator.LEGACY.generateName(COMPLETED_URL);
+        assertTrue(new File(rootDir, Constants.MIGRATED_FILE).createNewFile());
+        create(new File(rootDir, legacyName), 1000);
+
+        HttpProxyCacheConfig config = new HttpProxyCacheServer.Builder().rootDir(rootDir).buildConfig();
+        File cachedFile = config.generateCacheFile(COMPLETED_URL);
+        assertFalse(cachedFile.exists());
+        assertTrue(new File(rootDir, legacyName).exists());
+    }
+
+    private static void create(File file, int length) throws IOException {
+        FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(new byte[length]);
+        } finally {
+            outputStream.close();
+        }
+    }
+}
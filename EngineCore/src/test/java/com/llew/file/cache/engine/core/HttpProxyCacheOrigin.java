@@ -0,0 +1,169 @@
+package com.llew.file.cache.engine.core;
+
+import com.llew.file.cache.engine.utils.FileUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * a stub of origin for the tests, it serves a file whose byte at position <code>p</code> is {@link #byteAt(long)}
+ * and answers every request on its own connection. the way it answers a range is set by {@link #mode}
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/21
+ */
+
+final class HttpProxyCacheOrigin {
+
+    /**
+     * a range is answered by a <code>206</code> starting at the offset
+     */
+    static final int PARTIAL = 0;
+
+    /**
+     * a range is ignored, the whole file is answered by a <code>200</code>
+     */
+    static final int WHOLE = 1;
+
+    /**
+     * a range is answered by a <code>206</code> starting at the beginning of file
+     */
+    static final int WRONG_OFFSET = 2;
+
+    private final int mLength;
+    private final ServerSocket mServerSocket;
+    private final ExecutorService mExecutorService;
+
+    final AtomicInteger requestCount = new AtomicInteger();
+
+    volatile int mode = PARTIAL;
+    volatile String method;
+    volatile String range;
+    volatile String ifRange;
+
+    HttpProxyCacheOrigin(int length) throws IOException {
+        this.mLength = length;
+        this.mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        this.mExecutorService = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "HttpProxyCacheOrigin");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mExecutorService.submit(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        });
+    }
+
+    static byte byteAt(long position) {
+        return (byte) (position * 31 + 7);
+    }
+
+    static byte[] bytes(long offset, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = byteAt(offset + i);
+        }
+        return data;
+    }
+
+    /**
+     * the host isn't a loopback address literal, so the proxy accepts the url
+     */
+    String getUrl(String name) {
+        return "http://localhost:" + mServerSocket.getLocalPort() + "/" + name;
+    }
+
+    void shutdown() {
+        FileUtils.closeQuietly(mServerSocket);
+        mExecutorService.shutdownNow();
+    }
+
+    private void accept() {
+        while (!mServerSocket.isClosed()) {
+            try {
+                final Socket socket = mServerSocket.accept();
+                mExecutorService.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            respond(socket);
+                        } catch (IOException e) {
+                            // the client has gone
+                        } finally {
+                            FileUtils.closeQuietly(socket);
+                        }
+                    }
+                });
+            } catch (IOException e) {
+                // closed by shutdown
+            }
+        }
+    }
+
+    private void respond(Socket socket) throws IOException {
+        String header = readHeader(socket.getInputStream());
+        requestCount.incrementAndGet();
+        method = header.substring(0, header.indexOf(' '));
+        range = getHeader(header, "Range");
+        ifRange = getHeader(header, "If-Range");
+        int start = 0;
+        int end = mLength;
+        StringBuilder response = new StringBuilder();
+        if (null == range || WHOLE == mode) {
+            response.append("HTTP/1.1 200 OK\r\n");
+        } else {
+            String spec = range.substring("bytes=".length());
+            int index = spec.indexOf('-');
+            start = WRONG_OFFSET == mode ? 0 : Integer.parseInt(spec.substring(0, index));
+            end = index == spec.length() - 1 ? mLength : Math.min(mLength, Integer.parseInt(spec.substring(index + 1)) + 1);
+            response.append("HTTP/1.1 206 Partial Content\r\n");
+            response.append("Content-Range: bytes ").append(start).append('-').append(end - 1).append('/').append(mLength).append("\r\n");
+        }
+        response.append("Content-Type: video/mp4\r\n");
+        response.append("Content-Length: ").append(end - start).append("\r\n");
+        response.append("Connection: close\r\n\r\n");
+        OutputStream outputStream = socket.getOutputStream();
+        outputStream.write(response.toString().getBytes("US-ASCII"));
+        if (!"HEAD".equals(method)) {
+            outputStream.write(bytes(start, end - start));
+        }
+        outputStream.flush();
+    }
+
+    private static String readHeader(InputStream inputStream) throws IOException {
+        StringBuilder header = new StringBuilder();
+        int value;
+        while (-1 != (value = inputStream.read())) {
+            header.append((char) value);
+            if (header.length() >= 4 && header.lastIndexOf("\r\n\r\n") == header.length() - 4) {
+                break;
+            }
+        }
+        return header.toString();
+    }
+
+    private static String getHeader(String header, String name) {
+        for (String line : header.split("\r\n")) {
+            int index = line.indexOf(':');
+            if (index > 0 && line.substring(0, index).trim().equalsIgnoreCase(name)) {
+                return line.substring(index + 1).trim();
+            }
+        }
+        return null;
+    }
+}
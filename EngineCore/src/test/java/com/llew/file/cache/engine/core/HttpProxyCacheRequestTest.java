@@ -0,0 +1,145 @@
+package com.llew.file.cache.engine.core;
+
+import com.llew.file.cache.engine.utils.Constants;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * the range specs of a request resolved against the length of file, see RFC 7233
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/21
+ */
+
+public class HttpProxyCacheRequestTest {
+
+    private static final long LENGTH = 1000;
+
+    @Test
+    public void noRangeSendsWholeFile() throws IOException {
+        assertNull(request(null).getRanges(LENGTH));
+    }
+
+    @Test
+    public void openRangeFromZeroSendsWholeFile() throws IOException {
+        assertNull(request("bytes=0-").getRanges(LENGTH));
+    }
+
+    @Test
+    public void closedRange() throws IOException {
+        assertRanges(request("bytes=0-99").getRanges(LENGTH), new long[]{0, 100});
+    }
+
+    @Test
+    public void openRange() throws IOException {
+        assertRanges(request("bytes=100-").getRanges(LENGTH), new long[]{100, LENGTH});
+    }
+
+    @Test
+    public void suffixRange() throws IOException {
+        assertRanges(request("bytes=-100").getRanges(LENGTH), new long[]{900, LENGTH});
+        assertRanges(request("bytes=-2000").getRanges(LENGTH), new long[]{0, LENGTH});
+    }
+
+    @Test
+    public void lastBytePastEndIsClamped() throws IOException {
+        assertRanges(request("bytes=900-2000").getRanges(LENGTH), new long[]{900, LENGTH});
+    }
+
+    @Test
+    public void unsatisfiableRangeIsEmpty() throws IOException {
+        assertTrue(request("bytes=1000-").getRanges(LENGTH).isEmpty());
+        assertTrue(request("bytes=-0").getRanges(LENGTH).isEmpty());
+    }
+
+    @Test
+    public void multiRangeIsSorted() throws IOException {
+        assertRanges(request("bytes=500-599,0-99").getRanges(LENGTH), new long[]{0, 100}, new long[]{500, 600});
+    }
+
+    @Test
+    public void overlappedAndAdjacentRangesAreCoalesced() throws IOException {
+        assertRanges(request("bytes=0-99,50-149,150-199").getRanges(LENGTH), new long[]{0, 200});
+        assertRanges(request("bytes=0-99, -100").getRanges(LENGTH), new long[]{0, 100}, new long[]{900, LENGTH});
+    }
+
+    @Test
+    public void unknownLengthServesFirstRange() throws IOException {
+        assertRanges(request("bytes=100-199").getRanges(-1), new long[]{100, 200});
+        assertRanges(request("bytes=100-").getRanges(-1), new long[]{100, -1});
+        assertRanges(request("bytes=0-99,200-299").getRanges(-1), new long[]{0, 100});
+        assertNull(request("bytes=-100").getRanges(-1));
+        assertNull(request("bytes=0-").getRanges(-1));
+    }
+
+    @Test
+    public void invalidRangeIsIgnored() throws IOException {
+        assertNull(request("bytes=abc").getRanges(LENGTH));
+        assertNull(request("items=0-99").getRanges(LENGTH));
+    }
+
+    @Test
+    public void headerSplitByReadsIsFound() throws IOException {
+        byte[] bytes = (header("a.mp4", "bytes=0-99") + header("b.mp4", null)).getBytes("UTF-8");
+        // every read returns one byte, the empty line is split by the reads
+        InputStream inputStream = new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(byte[] buffer, int offset, int length) {
+                return super.read(buffer, offset, Math.min(1, length));
+            }
+        };
+        HttpProxyCacheRequest.Reader reader = new HttpProxyCacheRequest.Reader(inputStream);
+        assertEquals("http://localhost/a.mp4", reader.next().url);
+        assertEquals("http://localhost/b.mp4", reader.next().url);
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void pendingLargerThanBufferIsKept() throws IOException {
+        StringBuilder pipelined = new StringBuilder();
+        int total = 0;
+        while (pipelined.length() <= Constants.HEADER_SIZE) {
+            pipelined.append(header("video" + total++ + ".mp4", null));
+        }
+        byte[] pending = pipelined.toString().getBytes("UTF-8");
+        HttpProxyCacheRequest.Reader reader = new HttpProxyCacheRequest.Reader(new ByteArrayInputStream(new byte[0]), pending);
+        int count = 0;
+        HttpProxyCacheRequest request;
+        while (null != (request = reader.next())) {
+            assertEquals("http://localhost/video" + count++ + ".mp4", request.url);
+        }
+        assertEquals(total, count);
+    }
+
+    private static String header(String name, String range) {
+        return "GET /http%3A%2F%2Flocalhost%2F" + name + " HTTP/1.1\r\nHost: 127.0.0.1\r\n"
+                + (null == range ? "" : "Range: " + range + "\r\n") + "\r\n";
+    }
+
+    private static HttpProxyCacheRequest request(String range) throws IOException {
+        String header = "GET /http%3A%2F%2Flocalhost%2Fvideo.mp4 HTTP/1.1\r\nHost: 127.0.0.1\r\n"
+                + (null == range ? "" : "Range: " + range + "\r\n") + "\r\n";
+        byte[] buffer = header.getBytes("UTF-8");
+        HttpProxyCacheRequest request = HttpProxyCacheRequest.parse(buffer, 0, buffer.length);
+        assertEquals("http://localhost/video.mp4", request.url);
+        return request;
+    }
+
+    private static void assertRanges(List<long[]> actual, long[]... expected) {
+        assertEquals(expected.length, actual.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], actual.get(i));
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.llew.file.cache.engine.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Locale;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * the requests are proxied to the origin by the blocking server and by the non-blocking one, a connection is kept
+ * alive between the requests and the pipelined requests are answered in order
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/21
+ */
+
+@RunWith(Parameterized.class)
+public class HttpProxyCacheServerTest {
+
+    private static final int LENGTH = 300 * 1024;
+
+    private static final int OFFSET = 100 * 1024;
+
+    @Parameterized.Parameters(name = "nio = {0}")
+    public static Collection<Object[]> parameters() {
+        return Arrays.asList(new Object[]{false}, new Object[]{true});
+    }
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final boolean isNioServerEnabled;
+
+    private HttpProxyCacheOrigin mOrigin;
+
+    private HttpProxyCacheServer mCacheServer;
+
+    public HttpProxyCacheServerTest(boolean nioServerEnabled) {
+        this.isNioServerEnabled = nioServerEnabled;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        mOrigin = new HttpProxyCacheOrigin(LENGTH);
+        mCacheServer = new HttpProxyCacheServer.Builder()
+                .rootDir(mFolder.getRoot())
+                .nioServerEnabled(isNioServerEnabled)
+                .build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mCacheServer.shutdownProxy();
+        mOrigin.shutdown();
+    }
+
+    @Test
+    public void requestsAreProxied() throws Exception {
+        String url = mOrigin.getUrl("video.mp4");
+        String proxyUrl = mCacheServer.proxyUrl(url);
+        assertTrue(proxyUrl.startsWith("http://127.0.0.1:"));
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(proxyUrl).openConnection();
+        assertEquals(200, connection.getResponseCode());
+        assertEquals(LENGTH, connection.getContentLength());
+        assertArrayEquals(HttpProxyCacheOrigin.bytes(0, LENGTH), readFully(connection.getInputStream()));
+
+        connection = (HttpURLConnection) new URL(proxyUrl).openConnection();
+        connection.setRequestProperty("Range", "bytes=" + OFFSET + "-" + (2 * OFFSET - 1));
+        assertEquals(206, connection.getResponseCode());
+        assertEquals("bytes " + OFFSET + "-" + (2 * OFFSET - 1) + "/" + LENGTH, connection.getHeaderField("Content-Range"));
+        assertArrayEquals(HttpProxyCacheOrigin.bytes(OFFSET, OFFSET), readFully(connection.getInputStream()));
+    }
+
+    @Test
+    public void pipelinedRequestsShareConnection() throws Exception {
+        URL proxyUrl = new URL(mCacheServer.proxyUrl(mOrigin.getUrl("video.mp4")));
+        String path = proxyUrl.getFile();
+        Socket socket = new Socket(proxyUrl.getHost(), proxyUrl.getPort());
+        try {
+            socket.setSoTimeout(10000);
+            // both requests are written at once, the second one arrives with the first
+            String requests = String.format(Locale.US, "GET %s HTTP/1.1\r\nHost: 127.0.0.1\r\nRange: bytes=0-%d\r\n\r\n", path, OFFSET - 1)
+                    + String.format(Locale.US, "GET %s HTTP/1.1\r\nHost: 127.0.0.1\r\nRange: bytes=%d-\r\n\r\n", path, OFFSET);
+            OutputStream outputStream = socket.getOutputStream();
+            outputStream.write(requests.getBytes("US-ASCII"));
+            outputStream.flush();
+
+            InputStream inputStream = socket.getInputStream();
+            assertArrayEquals(HttpProxyCacheOrigin.bytes(0, OFFSET), readResponse(inputStream));
+            assertArrayEquals(HttpProxyCacheOrigin.bytes(OFFSET, LENGTH - OFFSET), readResponse(inputStream));
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void proxyIsSkippedAfterShutdown() throws Exception {
+        String url = mOrigin.getUrl("video.mp4");
+        assertTrue(mCacheServer.proxyUrl(url).startsWith("http://127.0.0.1:"));
+        mCacheServer.shutdownProxy();
+        assertEquals(url, mCacheServer.proxyUrl(url));
+        assertFalse(mCacheServer.isCached(url));
+    }
+
+    /**
+     * read a response with a <code>Content-Length</code>, the connection is left open for the next one
+     */
+    private static byte[] readResponse(InputStream inputStream) throws IOException {
+        StringBuilder header = new StringBuilder();
+        while (!header.toString().endsWith("\r\n\r\n")) {
+            int value = inputStream.read();
+            assertTrue("connection closed in header: " + header, -1 != value);
+            header.append((char) value);
+        }
+        assertTrue(header.toString(), header.toString().startsWith("HTTP/1.1 206"));
+        int contentLength = -1;
+        for (String line : header.toString().split("\r\n")) {
+            if (line.toLowerCase(Locale.US).startsWith("content-length:")) {
+                contentLength = Integer.parseInt(line.substring(line.indexOf(':') + 1).trim());
+            }
+        }
+        assertTrue(header.toString(), contentLength >= 0);
+        byte[] body = new byte[contentLength];
+        int position = 0;
+        while (position < contentLength) {
+            int readBytes = inputStream.read(body, position, contentLength - position);
+            assertTrue("connection closed in body", -1 != readBytes);
+            position += readBytes;
+        }
+        return body;
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            byte[] buffer = new byte[8 * 1024];
+            int readBytes;
+            while (-1 != (readBytes = inputStream.read(buffer))) {
+                outputStream.write(buffer, 0, readBytes);
+            }
+        } finally {
+            inputStream.close();
+        }
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,248 @@
+package com.llew.file.cache.engine.core;
+
+import com.llew.file.cache.engine.config.HttpProxyCacheConfig;
+import com.llew.file.cache.engine.info.HttpProxyCacheSourceInfo;
+import com.llew.file.cache.engine.utils.Constants;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * the segments of a sparse cached file are persisted in the bitmap and the download resumes from them
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/21
+ */
+
+public class HttpProxyCacheSinkTest {
+
+    private static final String URL = "http://localhost/video.mp4";
+
+    private static final int SEGMENT = Constants.SEGMENT_SIZE;
+
+    /**
+     * the last segment is a partial one
+     */
+    private static final long LENGTH = 6 * SEGMENT + 1000;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private HttpProxyCacheConfig mCacheConfig;
+
+    private HttpProxyCacheSink mCacheSink;
+
+    @Before
+    public void setUp() throws Exception {
+        mCacheConfig = new HttpProxyCacheServer.Builder().rootDir(mFolder.getRoot()).buildConfig();
+        mCacheConfig.getCacheStorage().put(URL, new HttpProxyCacheSourceInfo(URL, "video/mp4", LENGTH));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (null != mCacheSink) {
+            mCacheSink.close();
+        }
+    }
+
+    @Test
+    public void sparseSegmentsAreReloaded() throws Exception {
+        mCacheSink = open();
+        write(mCacheSink, 0, SEGMENT);
+        write(mCacheSink, 3 * SEGMENT, SEGMENT);
+        // half of a segment isn't recorded in the bitmap, it's fetched again after restart
+        write(mCacheSink, 5 * SEGMENT, SEGMENT / 2);
+        assertEquals(SEGMENT / 2, mCacheSink.available(5 * SEGMENT));
+        mCacheSink.close();
+
+        mCacheSink = open();
+        assertFalse(mCacheSink.isCompleted());
+        assertEquals(2 * SEGMENT, mCacheSink.available());
+        assertEquals(SEGMENT, mCacheSink.available(0));
+        assertEquals(SEGMENT - 100, mCacheSink.available(100));
+        assertEquals(0, mCacheSink.available(SEGMENT));
+        assertEquals(SEGMENT, mCacheSink.available(3 * SEGMENT));
+        assertEquals(0, mCacheSink.available(5 * SEGMENT));
+        assertBytes(mCacheSink, 3 * SEGMENT, SEGMENT);
+    }
+
+    @Test
+    public void resumedDownloadCompletes() throws Exception {
+        mCacheSink = open();
+        write(mCacheSink, 2 * SEGMENT, 2 * SEGMENT);
+        mCacheSink.close();
+
+        mCacheSink = open();
+        assertEquals(2 * SEGMENT, mCacheSink.available(2 * SEGMENT));
+        write(mCacheSink, 0, 2 * SEGMENT);
+        write(mCacheSink, 4 * SEGMENT, LENGTH - 4 * SEGMENT);
+        assertEquals(LENGTH, mCacheSink.available(0));
+        mCacheSink.complete();
+
+        File cachedFile = mCacheConfig.generateCacheFile(URL);
+        assertTrue(mCacheSink.isCompleted());
+        assertTrue(cachedFile.exists());
+        assertEquals(LENGTH, cachedFile.length());
+        assertFalse(new File(cachedFile.getParent(), cachedFile.getName() + Constants.DOWNLOAD_SUFFIX).exists());
+        assertFalse(new File(cachedFile.getParent(), cachedFile.getName() + Constants.DOWNLOAD_SUFFIX + Constants.SEGMENTS_SUFFIX).exists());
+        assertBytes(mCacheSink, 0, (int) LENGTH);
+    }
+
+    @Test
+    public void outdatedBitmapIsDiscarded() throws Exception {
+        mCacheSink = open();
+        write(mCacheSink, 0, 2 * SEGMENT);
+        mCacheSink.close();
+
+        DataOutputStream outputStream = new DataOutputStream(new FileOutputStream(getSegmentsFile()));
+        try {
+            outputStream.writeInt(Integer.MAX_VALUE);
+            outputStream.writeInt(SEGMENT);
+            outputStream.writeInt(0);
+        } finally {
+            outputStream.close();
+        }
+
+        mCacheSink = open();
+        assertEquals(0, mCacheSink.available());
+        assertEquals(0, mCacheSink.available(0));
+    }
+
+    @Test
+    public void downloadWithoutBitmapIsContinuous() throws Exception {
+        File downloadFile = getDownloadFile();
+        RandomAccessFile accessFile = new RandomAccessFile(downloadFile, "rw");
+        try {
+            byte[] data = new byte[SEGMENT + 100];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = at(i);
+            }
+            accessFile.write(data);
+        } finally {
+            accessFile.close();
+        }
+
+        mCacheSink = open();
+        assertEquals(SEGMENT + 100, mCacheSink.available(0));
+        assertTrue(getSegmentsFile().exists());
+        assertBytes(mCacheSink, 0, SEGMENT + 100);
+    }
+
+    @Test
+    public void bufferedBytesAreAvailableAfterFlush() throws Exception {
+        mCacheSink = open();
+        // less than a write buffer, the writer keeps it until its download flushes
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = at(i);
+        }
+        mCacheSink.write(data, 0, data.length);
+        assertEquals(0, mCacheSink.available(0));
+        mCacheSink.flush();
+        assertEquals(1000, mCacheSink.available(0));
+        assertBytes(mCacheSink, 0, 1000);
+    }
+
+    @Test
+    public void readsDontWaitForWriter() throws Exception {
+        mCacheSink = open();
+        final HttpProxyCacheSink cacheSink = mCacheSink;
+        final Throwable[] errors = new Throwable[1];
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (long position = 0; position < LENGTH; position += SEGMENT) {
+                        write(cacheSink, position, Math.min(SEGMENT, LENGTH - position));
+                    }
+                } catch (Throwable e) {
+                    errors[0] = e;
+                }
+            }
+        });
+        writer.start();
+        // the reader sees the published segments only, and every byte of them has been written
+        byte[] buffer = new byte[SEGMENT / 4];
+        long position = 0;
+        while (position < LENGTH) {
+            int readBytes = cacheSink.read(buffer, position, buffer.length);
+            if (readBytes <= 0) {
+                assertTrue("stalled at " + position, writer.isAlive() || cacheSink.available(position) > 0);
+                Thread.yield();
+                continue;
+            }
+            for (int i = 0; i < readBytes; i++) {
+                assertEquals(at(position + i), buffer[i]);
+            }
+            position += readBytes;
+        }
+        writer.join();
+        assertNull(errors[0]);
+    }
+
+    private HttpProxyCacheSink open() throws Exception {
+        HttpProxyCacheSink cacheSink = new HttpProxyCacheSink();
+        cacheSink.init(mCacheConfig, URL);
+        return cacheSink;
+    }
+
+    private File getDownloadFile() {
+        File cachedFile = mCacheConfig.generateCacheFile(URL);
+        return new File(cachedFile.getParent(), cachedFile.getName() + Constants.DOWNLOAD_SUFFIX);
+    }
+
+    private File getSegmentsFile() {
+        File downloadFile = getDownloadFile();
+        return new File(downloadFile.getParent(), downloadFile.getName() + Constants.SEGMENTS_SUFFIX);
+    }
+
+    private static void write(HttpProxyCacheSink cacheSink, long offset, long length) throws Exception {
+        byte[] data = new byte[8 * 1024];
+        for (long position = offset; position < offset + length; ) {
+            int count = (int) Math.min(data.length, offset + length - position);
+            for (int i = 0; i < count; i++) {
+                data[i] = at(position + i);
+            }
+            cacheSink.write(data, position, count);
+            position += count;
+        }
+        // the download flushes when it stops
+        cacheSink.flush();
+    }
+
+    private static void assertBytes(HttpProxyCacheSink cacheSink, long offset, int length) throws Exception {
+        byte[] expected = new byte[length];
+        byte[] actual = new byte[length];
+        for (int i = 0; i < length; i++) {
+            expected[i] = at(offset + i);
+        }
+        int position = 0;
+        while (position < length) {
+            byte[] buffer = new byte[length - position];
+            int readBytes = cacheSink.read(buffer, offset + position, buffer.length);
+            assertTrue(readBytes > 0);
+            System.arraycopy(buffer, 0, actual, position, readBytes);
+            position += readBytes;
+        }
+        assertArrayEquals(expected, actual);
+    }
+
+    private static byte at(long position) {
+        return (byte) (position * 31 + 7);
+    }
+}
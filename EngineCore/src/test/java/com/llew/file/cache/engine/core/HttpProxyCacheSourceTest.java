@@ -0,0 +1,164 @@
+package com.llew.file.cache.engine.core;
+
+import com.llew.file.cache.engine.config.HttpProxyCacheConfig;
+import com.llew.file.cache.engine.exception.HttpProxyCacheRangeIgnoredException;
+import com.llew.file.cache.engine.info.HttpProxyCacheSourceInfo;
+import com.llew.file.cache.engine.utils.FileUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * the source must reject a response which doesn't start at the requested offset, the engine falls back to
+ * a full request and skips the bytes before the offset then
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/21
+ */
+
+public class HttpProxyCacheSourceTest {
+
+    private static final int LENGTH = 1000;
+
+    private static final int OFFSET = 100;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final byte[] mData = HttpProxyCacheOrigin.bytes(0, LENGTH);
+
+    private String mUrl;
+
+    private HttpProxyCacheOrigin mOriginServer;
+
+    private HttpProxyCacheConfig mCacheConfig;
+
+    private HttpProxyCacheSource mCacheSource;
+
+    @Before
+    public void setUp() throws Exception {
+        mOriginServer = new HttpProxyCacheOrigin(LENGTH);
+        mUrl = mOriginServer.getUrl("video.mp4");
+        mCacheConfig = new HttpProxyCacheServer.Builder().rootDir(mFolder.getRoot()).buildConfig();
+        mCacheSource = new HttpProxyCacheSource();
+        mCacheSource.init(mCacheConfig, mUrl);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mCacheSource.close();
+        mOriginServer.shutdown();
+    }
+
+    @Test
+    public void partialResponseAtOffsetIsAccepted() throws Exception {
+        mOriginServer.mode = HttpProxyCacheOrigin.PARTIAL;
+        mCacheSource.open(OFFSET);
+        assertEquals("bytes=" + OFFSET + "-", mOriginServer.range);
+        assertArrayEquals(Arrays.copyOfRange(mData, OFFSET, LENGTH), readFully(mCacheSource));
+        assertEquals(LENGTH, mCacheConfig.getCacheStorage().get(mUrl).length);
+    }
+
+    @Test
+    public void wholeResponseForRangeIsRejected() throws Exception {
+        mOriginServer.mode = HttpProxyCacheOrigin.WHOLE;
+        try {
+            mCacheSource.open(OFFSET);
+            fail("a 200 response for a range must be rejected");
+        } catch (HttpProxyCacheRangeIgnoredException e) {
+            // the length of whole source is still learned
+            assertEquals(LENGTH, mCacheConfig.getCacheStorage().get(mUrl).length);
+        }
+    }
+
+    @Test
+    public void partialResponseAtWrongOffsetIsRejected() throws Exception {
+        mOriginServer.mode = HttpProxyCacheOrigin.WRONG_OFFSET;
+        try {
+            mCacheSource.open(OFFSET);
+            fail("a 206 response starting at another offset must be rejected");
+        } catch (HttpProxyCacheRangeIgnoredException e) {
+            assertTrue(e.getMessage().contains("206"));
+        }
+    }
+
+    @Test
+    public void wholeResponseWithoutRangeIsAccepted() throws Exception {
+        mOriginServer.mode = HttpProxyCacheOrigin.WHOLE;
+        mCacheSource.open(0);
+        assertNull(mOriginServer.range);
+        assertArrayEquals(mData, readFully(mCacheSource));
+    }
+
+    @Test
+    public void firstResponseTeachesLengthAndMime() throws Exception {
+        mOriginServer.mode = HttpProxyCacheOrigin.WHOLE;
+        mCacheSource.open(0);
+        assertEquals(LENGTH, mCacheSource.length());
+        assertEquals("video/mp4", mCacheSource.mime());
+        // no HEAD is needed for the response header of player
+        assertEquals(1, mOriginServer.requestCount.get());
+        assertEquals("GET", mOriginServer.method);
+    }
+
+    @Test
+    public void partialResponseTeachesTotalLength() throws Exception {
+        mOriginServer.mode = HttpProxyCacheOrigin.PARTIAL;
+        mCacheSource.open(OFFSET);
+        assertEquals(LENGTH, mCacheSource.length());
+        assertEquals("video/mp4", mCacheSource.mime());
+        assertEquals(1, mOriginServer.requestCount.get());
+    }
+
+    @Test
+    public void sourceInfoIsFetchedByOneRequest() throws Exception {
+        HttpProxyCacheSourceInfo sourceInfo = mCacheSource.sourceInfo(mUrl);
+        assertEquals(LENGTH, sourceInfo.length);
+        assertEquals("video/mp4", sourceInfo.mime);
+        assertEquals(1, mOriginServer.requestCount.get());
+        assertEquals("HEAD", mOriginServer.method);
+        // the stored info is used then
+        assertEquals(sourceInfo, mCacheSource.sourceInfo(mUrl));
+        assertEquals(1, mOriginServer.requestCount.get());
+    }
+
+    @Test
+    public void rangeIsConditionalOnStoredValidator() throws Exception {
+        mCacheConfig.getCacheStorage().put(mUrl, new HttpProxyCacheSourceInfo(mUrl, "video/mp4", LENGTH, "\"a\"", null, 0));
+        mOriginServer.mode = HttpProxyCacheOrigin.PARTIAL;
+        mCacheSource.open(OFFSET);
+        assertEquals("\"a\"", mOriginServer.ifRange);
+    }
+
+    @Test
+    public void rangeStartIsParsed() {
+        assertEquals(100, FileUtils.getRangeStart("bytes 100-999/1000"));
+        assertEquals(0, FileUtils.getRangeStart("bytes 0-99/*"));
+        assertEquals(-1, FileUtils.getRangeStart("bytes */1000"));
+        assertEquals(-1, FileUtils.getRangeStart(null));
+    }
+
+    private static byte[] readFully(HttpProxyCacheSource cacheSource) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        int readBytes;
+        while (-1 != (readBytes = cacheSource.read(buffer))) {
+            outputStream.write(buffer, 0, readBytes);
+        }
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,91 @@
+package com.llew.file.cache.engine.info;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * the validators of source decide whether the cached bytes can be combined with a new response
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/21
+ */
+
+public class HttpProxyCacheSourceInfoTest {
+
+    private static final String URL = "http://localhost/video.mp4";
+
+    private static final String DATE = "Sun, 21 Jan 2018 08:00:00 GMT";
+
+    private static final String OTHER_DATE = "Mon, 22 Jan 2018 08:00:00 GMT";
+
+    @Test
+    public void unknownResponseIsNotChanged() {
+        assertFalse(info(1000, "\"a\"", DATE).isChanged(null));
+    }
+
+    @Test
+    public void etagDecidesChange() {
+        assertFalse(info(1000, "\"a\"", DATE).isChanged(info(1000, "\"a\"", OTHER_DATE)));
+        assertTrue(info(1000, "\"a\"", DATE).isChanged(info(1000, "\"b\"", DATE)));
+    }
+
+    @Test
+    public void lastModifiedDecidesChangeWithoutEtag() {
+        assertFalse(info(1000, null, DATE).isChanged(info(1000, null, DATE)));
+        assertTrue(info(1000, null, DATE).isChanged(info(1000, null, OTHER_DATE)));
+        assertTrue(info(1000, "\"a\"", DATE).isChanged(info(1000, null, OTHER_DATE)));
+    }
+
+    @Test
+    public void missingValidatorsAreNotCompared() {
+        assertFalse(info(1000, "\"a\"", DATE).isChanged(info(1000, null, null)));
+        assertFalse(info(1000, null, null).isChanged(info(1000, "\"b\"", OTHER_DATE)));
+    }
+
+    @Test
+    public void lengthDecidesChangeIfKnown() {
+        assertTrue(info(1000, "\"a\"", DATE).isChanged(info(2000, "\"a\"", DATE)));
+        assertTrue(info(1000, null, null).isChanged(info(2000, null, null)));
+        assertFalse(info(-1, null, null).isChanged(info(2000, null, null)));
+        assertFalse(info(1000, null, null).isChanged(info(-1, null, null)));
+    }
+
+    @Test
+    public void strongEtagIsPreferredForIfRange() {
+        assertEquals("\"a\"", info(1000, "\"a\"", DATE).getIfRange());
+    }
+
+    @Test
+    public void weakEtagFallsBackToLastModified() {
+        assertEquals(DATE, info(1000, "W/\"a\"", DATE).getIfRange());
+        assertNull(info(1000, "W/\"a\"", null).getIfRange());
+        assertNull(info(1000, null, null).getIfRange());
+    }
+
+    @Test
+    public void validatedAtKeepsValidators() {
+        HttpProxyCacheSourceInfo info = info(1000, "\"a\"", DATE);
+        HttpProxyCacheSourceInfo validated = info.validatedAt(1234);
+        assertEquals(1234, validated.validatedTime);
+        assertEquals(info.etag, validated.etag);
+        assertEquals(info.lastModified, validated.lastModified);
+        assertFalse(info.isChanged(validated));
+    }
+
+    @Test
+    public void expiredAfterTtl() {
+        long now = System.currentTimeMillis();
+        assertFalse(info(1000, null, null).validatedAt(now - 10000).isExpired(0));
+        assertFalse(info(1000, null, null).validatedAt(now).isExpired(60000));
+        assertTrue(info(1000, null, null).validatedAt(now - 120000).isExpired(60000));
+    }
+
+    private static HttpProxyCacheSourceInfo info(long length, String etag, String lastModified) {
+        return new HttpProxyCacheSourceInfo(URL, "video/mp4", length, etag, lastModified, 0);
+    }
+}
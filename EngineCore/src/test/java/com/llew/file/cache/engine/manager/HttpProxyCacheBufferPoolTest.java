@@ -0,0 +1,77 @@
+package com.llew.file.cache.engine.manager;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * the pool reuses the recycled buffers of the same size and keeps no more bytes than its bound
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/10
+ */
+
+public class HttpProxyCacheBufferPoolTest {
+
+    private static final int SIZE = 1024;
+
+    @Test
+    public void recycledBufferIsReused() {
+        HttpProxyCacheBufferPool bufferPool = new HttpProxyCacheBufferPool(SIZE, 4 * SIZE);
+        byte[] buffer = bufferPool.obtain();
+        assertEquals(SIZE, buffer.length);
+        assertEquals(0, bufferPool.getHitCount());
+        assertEquals(1, bufferPool.getMissCount());
+
+        bufferPool.recycle(buffer);
+        assertSame(buffer, bufferPool.obtain());
+        assertEquals(1, bufferPool.getHitCount());
+        assertEquals(1, bufferPool.getMissCount());
+    }
+
+    @Test
+    public void buffersAreKeptBySize() {
+        HttpProxyCacheBufferPool bufferPool = new HttpProxyCacheBufferPool(SIZE, 4 * SIZE);
+        bufferPool.recycle(new byte[SIZE]);
+        byte[] buffer = bufferPool.obtain(2 * SIZE);
+        assertEquals(2 * SIZE, buffer.length);
+        assertEquals(0, bufferPool.getHitCount());
+        assertEquals(1, bufferPool.getMissCount());
+        assertEquals(SIZE, bufferPool.obtain().length);
+        assertEquals(1, bufferPool.getHitCount());
+    }
+
+    @Test
+    public void poolIsBounded() {
+        HttpProxyCacheBufferPool bufferPool = new HttpProxyCacheBufferPool(SIZE, 2 * SIZE);
+        byte[] first = new byte[SIZE];
+        byte[] second = new byte[SIZE];
+        byte[] third = new byte[SIZE];
+        bufferPool.recycle(first);
+        bufferPool.recycle(second);
+        // the pool is full, the buffer is dropped
+        bufferPool.recycle(third);
+
+        bufferPool.obtain();
+        bufferPool.obtain();
+        byte[] buffer = bufferPool.obtain();
+        assertNotSame(first, buffer);
+        assertNotSame(second, buffer);
+        assertNotSame(third, buffer);
+        assertEquals(2, bufferPool.getHitCount());
+        assertEquals(1, bufferPool.getMissCount());
+    }
+
+    @Test
+    public void emptyPoolKeepsNothing() {
+        HttpProxyCacheBufferPool bufferPool = new HttpProxyCacheBufferPool(SIZE, 0);
+        byte[] buffer = bufferPool.obtain();
+        bufferPool.recycle(buffer);
+        assertNotSame(buffer, bufferPool.obtain());
+        assertEquals(0, bufferPool.getHitCount());
+        assertEquals(2, bufferPool.getMissCount());
+    }
+}
@@ -0,0 +1,59 @@
+package com.llew.file.cache.engine.manager;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * a percentile of histogram is the upper bound of the bucket it falls in
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/19
+ */
+
+public class HttpProxyCacheStatsTest {
+
+    @Test
+    public void emptyHistogram() {
+        HttpProxyCacheStats.Histogram histogram = new HttpProxyCacheStats.Histogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMean(), 0);
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(0, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void percentilesFallInBuckets() {
+        HttpProxyCacheStats.Histogram histogram = new HttpProxyCacheStats.Histogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(10.9, histogram.getMean(), 1e-9);
+        // 1 ms is in [1, 2), 100 ms is in [64, 128)
+        assertEquals(90, histogram.getBucket(1));
+        assertEquals(10, histogram.getBucket(7));
+        assertEquals(2, histogram.getPercentile(50));
+        assertEquals(2, histogram.getPercentile(90));
+        assertEquals(128, histogram.getPercentile(91));
+        assertEquals(128, histogram.getPercentile(99));
+        assertEquals(128, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void boundsOfFirstAndLastBuckets() {
+        HttpProxyCacheStats.Histogram histogram = new HttpProxyCacheStats.Histogram();
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(500));
+        assertEquals(1, histogram.getPercentile(100));
+        histogram.record(TimeUnit.MINUTES.toNanos(5));
+        assertEquals(1, histogram.getBucket(histogram.getBucketCount() - 1));
+        assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+        assertEquals(1, histogram.getPercentile(50));
+    }
+}
@@ -0,0 +1,51 @@
+package com.llew.file.cache.engine.utils;
+
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * the known answers of MurmurHash3 x64 128-bit, the same vectors are checked by the reference implementation of smhasher
+ * and by Guava, so the cache file names match the ones of other implementations
+ * <br/><br/>
+ *
+ * @author llew
+ * @date 2018/1/17
+ */
+
+public class Murmur3Test {
+
+    @Test
+    public void emptyInput() throws Exception {
+        assertHash(0, 0L, 0L, "");
+    }
+
+    @Test
+    public void everyTailLength() throws Exception {
+        assertHash(0, 0x629942693e10f867L, 0x92db0b82baeb5347L, "hell");
+        assertHash(1, 0xa78ddff5adae8d10L, 0x128900ef20900135L, "hello");
+        assertHash(2, 0x8a486b23f422e826L, 0xf962a2c58947765fL, "hello ");
+        assertHash(3, 0x2ea59f466f6bed8cL, 0xc610990acc428a17L, "hello w");
+        assertHash(4, 0x79f6305a386c572cL, 0x46305aed3483b94eL, "hello wo");
+        assertHash(5, 0xc2219d213ec1f1b5L, 0xa1d8e2e0a52785bdL, "hello wor");
+    }
+
+    @Test
+    public void blocksAndTail() throws Exception {
+        assertHash(0, 0xe34bbc7bbc071b6cL, 0x7a433ca9c49a9347L, "The quick brown fox jumps over the lazy dog");
+        assertHash(0, 0x658ca970ff85269aL, 0x43fee3eaa68e5c3eL, "The quick brown fox jumps over the lazy cog");
+    }
+
+    @Test
+    public void nameIsBothHalvesInHex() {
+        assertEquals("e34bbc7bbc071b6c7a433ca9c49a9347", FileUtils.getMurmur3("The quick brown fox jumps over the lazy dog"));
+        assertEquals("00000000000000000000000000000000", FileUtils.getMurmur3(""));
+    }
+
+    private static void assertHash(int seed, long h1, long h2, String input) throws UnsupportedEncodingException {
+        assertArrayEquals(input, new long[]{h1, h2}, Murmur3.hash128(input.getBytes("UTF-8"), seed));
+    }
+}
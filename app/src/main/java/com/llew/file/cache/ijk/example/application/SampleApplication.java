@@ -2,6 +2,7 @@ package com.llew.file.cache.ijk.example.application;
 
 import android.app.Application;
 
+import com.llew.file.cache.engine.android.HttpProxyCacheAndroid;
 import com.llew.file.cache.engine.core.HttpProxyCacheServer;
 
 /**
@@ -29,7 +30,7 @@ public class SampleApplication extends Application {
 
     public HttpProxyCacheServer getProxyServer() {
         if (null == mCacheServer) {
-            mCacheServer = new HttpProxyCacheServer.Builder(getApplication())
+            mCacheServer = HttpProxyCacheAndroid.newBuilder(getApplication())
                     .build();
         }
         return mCacheServer;
@@ -2,18 +2,22 @@ package com.llew.file.cache.ijk.example.source;
 
 import android.text.TextUtils;
 
+import com.llew.file.cache.engine.config.BaseHttpProxyCacheSource;
 import com.llew.file.cache.engine.config.HttpProxyCacheConfig;
 import com.llew.file.cache.engine.config.HttpProxyCacheHeaders;
 import com.llew.file.cache.engine.config.HttpProxyCacheSource;
 import com.llew.file.cache.engine.exception.HttpProxyCacheException;
+import com.llew.file.cache.engine.exception.HttpProxyCacheRangeIgnoredException;
+import com.llew.file.cache.engine.exception.HttpProxyCacheSourceChangedException;
 import com.llew.file.cache.engine.info.HttpProxyCacheSourceInfo;
 import com.llew.file.cache.engine.utils.Constants;
 import com.llew.file.cache.engine.utils.FileUtils;
 import com.llew.file.cache.engine.utils.Logger;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -32,7 +36,7 @@ import okhttp3.ResponseBody;
  * @date 2018/1/3
  */
 
-public class HttpProxyCacheOkSource implements HttpProxyCacheSource {
+public class HttpProxyCacheOkSource extends BaseHttpProxyCacheSource {
 
     private static final int DEFAULT_TIME_OUT_SECONDS = 30;
 
@@ -44,12 +48,20 @@ public class HttpProxyCacheOkSource implements HttpProxyCacheSource {
     private InputStream mInputStream;
 
     public HttpProxyCacheOkSource() {
-        mClient = new OkHttpClient.Builder()
+        this(new OkHttpClient.Builder()
                 .hostnameVerifier(new HttpRequestHostnameVerifier())
                 .readTimeout(DEFAULT_TIME_OUT_SECONDS, TimeUnit.SECONDS)
                 .connectTimeout(DEFAULT_TIME_OUT_SECONDS, TimeUnit.SECONDS)
                 .writeTimeout(DEFAULT_TIME_OUT_SECONDS, TimeUnit.SECONDS)
-                .build();
+                .build());
+    }
+
+    /**
+     * @param client the client shared by every clone of this source, its connection pool, dispatcher,
+     *               TLS sessions and DNS results are reused by all the downloads
+     */
+    public HttpProxyCacheOkSource(OkHttpClient client) {
+        mClient = client;
     }
 
     private static class HttpRequestHostnameVerifier implements HostnameVerifier {
@@ -72,22 +84,87 @@ public class HttpProxyCacheOkSource implements HttpProxyCacheSource {
 
     @Override
     public void open(long offset) throws HttpProxyCacheException {
+        open(offset, -1);
+    }
+
+    @Override
+    public void open(long offset, long end) throws HttpProxyCacheException {
         try {
-            mResponse = openOkHttpConnection(offset);
+            mResponse = openOkHttpConnection(offset, end);
             ResponseBody body = mResponse.body();
             if (null != body && !mCacheConfig.isPingRequest(mUrl)) {
-                mInputStream = new BufferedInputStream(body.byteStream());
-                long length = mResponse.isRedirect() ? body.contentLength() + offset : body.contentLength();
-                String mime = null == body.contentType() ? "" : body.contentType().toString();
-                HttpProxyCacheSourceInfo info = new HttpProxyCacheSourceInfo(mUrl, mime, length);
+                mInputStream = body.byteStream();
+                long length = 206 == mResponse.code() ? getTotalLength(mResponse) : body.contentLength();
+                if (length < 0 && end < 0 && 206 == mResponse.code()) {
+                    length = body.contentLength() + offset;
+                }
+                HttpProxyCacheSourceInfo info = generateSourceInfo(mResponse, length);
+                HttpProxyCacheSourceInfo storedInfo = mCacheConfig.getCacheStorage().get(mUrl);
+                if (null != storedInfo && storedInfo.isChanged(info)) {
+                    mCacheConfig.getCacheStorage().put(mUrl, info);
+                    throw new HttpProxyCacheSourceChangedException("source has changed from " + storedInfo + " to " + info);
+                }
+                if ((offset > 0 || end > 0) && !(206 == mResponse.code() && FileUtils.getRangeStart(mResponse.header("Content-Range")) == offset)) {
+                    if (200 == mResponse.code() && length > 0) {
+                        // the whole source is responded, its length is still right
+                        mCacheConfig.getCacheStorage().put(mUrl, null == storedInfo ? info : info.validatedAt(storedInfo.validatedTime));
+                    }
+                    throw new HttpProxyCacheRangeIgnoredException("source responded " + mResponse.code() + " with Content-Range " + mResponse.header("Content-Range") + " for offset " + offset);
+                }
+                if (length < 0 && end > 0) {
+                    // the total length is unknown from a closed range, keep the stored one
+                    return;
+                }
+                info = null == storedInfo ? info : info.validatedAt(storedInfo.validatedTime);
                 mCacheConfig.getCacheStorage().put(mUrl, info);
                 Logger.e("cache source connection has opened with source info : " + info.toString() + " and offset = " + offset);
             }
+        } catch (HttpProxyCacheException e) {
+            throw e;
         } catch (Throwable e) {
             throw new HttpProxyCacheException(e);
         }
     }
 
+    @Override
+    public boolean revalidate() throws HttpProxyCacheException {
+        HttpProxyCacheSourceInfo storedInfo = mCacheConfig.getCacheStorage().get(mUrl);
+        if (null == storedInfo) {
+            return true;
+        }
+        Map<String, String> conditions = new HashMap<>();
+        if (!TextUtils.isEmpty(storedInfo.etag)) {
+            conditions.put("If-None-Match", storedInfo.etag);
+        }
+        if (!TextUtils.isEmpty(storedInfo.lastModified)) {
+            conditions.put("If-Modified-Since", storedInfo.lastModified);
+        }
+        // only the first byte is asked in case the conditions are ignored by source
+        Response response = generateConnection(0, 1, "GET", conditions);
+        try {
+            long nowTime = System.currentTimeMillis();
+            if (304 != response.code()) {
+                ResponseBody body = response.body();
+                long length = 206 == response.code() ? getTotalLength(response) : null == body ? -1 : body.contentLength();
+                HttpProxyCacheSourceInfo info = generateSourceInfo(response, length);
+                if (storedInfo.isChanged(info)) {
+                    mCacheConfig.getCacheStorage().put(mUrl, info.validatedAt(nowTime));
+                    return false;
+                }
+            }
+            mCacheConfig.getCacheStorage().put(mUrl, storedInfo.validatedAt(nowTime));
+            return true;
+        } finally {
+            FileUtils.closeQuietly(response);
+        }
+    }
+
+    private HttpProxyCacheSourceInfo generateSourceInfo(Response response, long length) {
+        ResponseBody body = response.body();
+        String mime = null == body || null == body.contentType() ? "" : body.contentType().toString();
+        return new HttpProxyCacheSourceInfo(mUrl, mime, length, response.header("ETag"), response.header("Last-Modified"), System.currentTimeMillis());
+    }
+
     @Override
     public long length() throws HttpProxyCacheException {
         if (mCacheConfig.isPingRequest(mUrl)) {
@@ -115,6 +192,23 @@ public class HttpProxyCacheOkSource implements HttpProxyCacheSource {
         return mime;
     }
 
+    @Override
+    public HttpProxyCacheSourceInfo sourceInfo(String url) throws HttpProxyCacheException {
+        if (mCacheConfig.isPingRequest(mUrl)) {
+            return new HttpProxyCacheSourceInfo(mUrl, "", 0);
+        }
+        HttpProxyCacheSourceInfo info = mCacheConfig.getCacheStorage().get(mUrl);
+        if (null != info && info.length > 0 && !TextUtils.isEmpty(info.mime)) {
+            return info;
+        }
+        // the length and mime are learned from one HEAD request, its timeouts are the ones of client
+        info = fetchSourceInfo(fetchOkHttpConnection());
+        if (null == info) {
+            throw new HttpProxyCacheException("source can't fetch source info for url : " + mUrl);
+        }
+        return info;
+    }
+
     @Override
     public int read(byte[] buffer) throws HttpProxyCacheException {
         try {
@@ -126,7 +220,7 @@ public class HttpProxyCacheOkSource implements HttpProxyCacheSource {
 
     @Override
     public HttpProxyCacheSource clone(HttpProxyCacheConfig config) throws HttpProxyCacheException {
-        return new HttpProxyCacheOkSource();
+        return new HttpProxyCacheOkSource(mClient);
     }
 
     @Override
@@ -154,20 +248,37 @@ public class HttpProxyCacheOkSource implements HttpProxyCacheSource {
                 }
             } catch (Throwable e) {
                 throw new HttpProxyCacheException(e);
+            } finally {
+                // give the connection back to the pool
+                FileUtils.closeQuietly(response);
             }
         }
         return null;
     }
 
-    private Response openOkHttpConnection(long offset) throws HttpProxyCacheException {
-        return generateConnection(offset, "GET");
+    private long getTotalLength(Response response) {
+        String contentRange = response.header("Content-Range");
+        int index = null == contentRange ? -1 : contentRange.lastIndexOf('/');
+        String totalLength = index < 0 ? null : contentRange.substring(index + 1).trim();
+        return !TextUtils.isEmpty(totalLength) && TextUtils.isDigitsOnly(totalLength) ? Long.parseLong(totalLength) : -1;
+    }
+
+    private Response openOkHttpConnection(long offset, long end) throws HttpProxyCacheException {
+        Map<String, String> conditions = null;
+        HttpProxyCacheSourceInfo storedInfo = offset > 0 || end > 0 ? mCacheConfig.getCacheStorage().get(mUrl) : null;
+        String ifRange = null == storedInfo ? null : storedInfo.getIfRange();
+        if (null != ifRange) {
+            // the whole source is responded instead of the range if it has changed
+            conditions = Collections.singletonMap("If-Range", ifRange);
+        }
+        return generateConnection(offset, end, "GET", conditions);
     }
 
     private Response fetchOkHttpConnection() throws HttpProxyCacheException {
-        return generateConnection(0, "HEAD");
+        return generateConnection(0, -1, "HEAD", null);
     }
 
-    private Response generateConnection(long offset, String method) throws HttpProxyCacheException {
+    private Response generateConnection(long offset, long end, String method, Map<String, String> conditions) throws HttpProxyCacheException {
         try {
             int redirectCount = 0;
             String sourUrl = mUrl;
@@ -177,7 +288,14 @@ public class HttpProxyCacheOkSource implements HttpProxyCacheSource {
                 builder.url(sourUrl);
                 builder.method(method, null);
                 appendHttpHeaders(builder, mUrl);
-                if (offset > 0) {
+                if (null != conditions) {
+                    for (Map.Entry<String, String> condition : conditions.entrySet()) {
+                        builder.header(condition.getKey(), condition.getValue());
+                    }
+                }
+                if (end > 0) {
+                    builder.addHeader("Range", "bytes=" + offset + "-" + (end - 1));
+                } else if (offset > 0) {
                     builder.addHeader("Range", "bytes=" + offset + "-");
                 }
                 Response response = mClient.newCall(builder.build()).execute();